@@ -0,0 +1,744 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import java.awt.Dimension;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.fop.Version;
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.apps.PageSequenceResults;
+import org.apache.fop.datatypes.URISpecification;
+import org.apache.fop.fo.extensions.xmp.XMPMetadata;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFDocumentNavigationHandler;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFParser;
+import org.apache.fop.render.intermediate.IFSerializer;
+import org.apache.fop.render.intermediate.IFUtil;
+import org.apache.fop.render.intermediate.extensions.AbstractAction;
+import org.apache.fop.render.intermediate.extensions.Bookmark;
+import org.apache.fop.render.intermediate.extensions.BookmarkTree;
+import org.apache.fop.render.intermediate.extensions.GoToXYAction;
+import org.apache.fop.render.intermediate.extensions.Link;
+import org.apache.fop.render.intermediate.extensions.NamedDestination;
+import org.apache.fop.render.intermediate.extensions.URIAction;
+import org.apache.fop.render.intermediate.util.IFDocumentHandlerProxy;
+import org.apache.maven.doxia.docrenderer.DocumentRendererException;
+import org.apache.maven.doxia.document.DocumentModel;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.FileUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Render an aggregated FO document to PDF by laying out its top-level chapters in parallel, see
+ * {@link FoSplitter}, and merging the laid out chapters into one PDF.
+ * <br>
+ * The chapters are laid out by FOP to its intermediate format. As the page numbers of a chapter depend on the
+ * page count of the previous ones, and the page number citations of the TOC on the pages of the chapters,
+ * the chapters whose page numbers turn out wrong are laid out again until all page numbers are known. The merge
+ * then renumbers the pages, and resolves the bookmarks and the links between chapters, so that the PDF is the
+ * same as if the document was rendered in one pass.
+ * <br>
+ * The laid out chapters are kept with the fingerprint of their FO document and of their resources: with
+ * incremental rendering, the chapters that did not change since the previous build are not laid out again,
+ * as long as their page numbers did not change either, and are only merged into the new PDF.
+ *
+ * @since 1.6.2
+ */
+class ChunkedPdfRenderer {
+    /**
+     * The default maximum number of layout rounds, the page numbers are usually known after the second one.
+     */
+    private static final int MAX_LAYOUT_ROUNDS = 10;
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    private final FopFactory fopFactory;
+
+    private final DocumentModel documentModel;
+
+    /** The FOP configuration of the factory, the layout depends on it. */
+    private final String configuration;
+
+    private final int threads;
+
+    /** Reuse the chapters laid out by a previous build. */
+    private final boolean incremental;
+
+    private final Logger logger;
+
+    /** The maximum number of layout rounds before rendering the document in one pass. */
+    private int maxLayoutRounds = MAX_LAYOUT_ROUNDS;
+
+    /** The chunks laid out by this build. */
+    private final Set<FoChunk> laidOut = Collections.synchronizedSet(new HashSet<FoChunk>());
+
+    /**
+     * @param fopFactory the FOP factory, not null.
+     * @param configuration the FOP configuration of the factory, not null.
+     * @param documentModel the document model to take the PDF meta data from, may be null.
+     * @param threads the number of chapters to lay out in parallel.
+     * @param incremental <code>true</code> to reuse the chapters laid out by a previous build.
+     * @param logger not null
+     */
+    ChunkedPdfRenderer(
+            FopFactory fopFactory,
+            String configuration,
+            DocumentModel documentModel,
+            int threads,
+            boolean incremental,
+            Logger logger) {
+        this.fopFactory = fopFactory;
+        this.configuration = configuration;
+        this.documentModel = documentModel;
+        this.threads = threads;
+        this.incremental = incremental;
+        this.logger = logger;
+    }
+
+    /**
+     * @param maxLayoutRounds the maximum number of layout rounds before rendering the document in one pass.
+     */
+    void setMaxLayoutRounds(int maxLayoutRounds) {
+        this.maxLayoutRounds = maxLayoutRounds;
+    }
+
+    /**
+     * Render an aggregated FO document to PDF, if it can be split.
+     *
+     * @param foFile the aggregated FO document, not null.
+     * @param pdfFile the target PDF file, not null.
+     * @param chunkDirectory the directory for the chapters, not null.
+     * @return <code>false</code> if the document has less than two chapters, can not be split or the page numbers
+     * of its chapters do not settle, and has to be rendered in one pass.
+     * @throws DocumentRendererException if any
+     */
+    boolean render(File foFile, File pdfFile, File chunkDirectory) throws DocumentRendererException {
+        List<FoChunk> chunks;
+        try {
+            if (!incremental) {
+                FileUtils.deleteDirectory(chunkDirectory);
+            }
+            chunks = FoSplitter.split(foFile, chunkDirectory);
+        } catch (IOException | SAXException e) {
+            throw new DocumentRendererException("Error splitting " + foFile + ": " + e.getMessage(), e);
+        }
+
+        if (chunks.size() < 2) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to split " + foFile + " into chapters, rendering it in one pass.");
+            }
+            return false;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rendering " + foFile + " as " + chunks.size() + " chapters with " + threads + " threads.");
+        }
+
+        try {
+            Set<String> fingerprints = new HashSet<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                FoChunk chunk = chunks.get(i);
+                String fingerprint = getFingerprint(chunk);
+                // identical chapters are laid out with their own page numbers
+                chunk.setFingerprint(fingerprints.add(fingerprint) ? fingerprint : fingerprint + "-" + i);
+
+                if (incremental) {
+                    chunk.loadLayout();
+                }
+            }
+        } catch (IOException e) {
+            throw new DocumentRendererException("Error reading chapters of " + foFile + ": " + e.getMessage(), e);
+        }
+
+        if (!layout(chunks)) {
+            logger.warn("Unable to compute the page numbers of the chapters of " + foFile + " after " + maxLayoutRounds
+                    + " layouts, rendering it in one pass.");
+            return false;
+        }
+        merge(chunks, pdfFile);
+
+        if (incremental) {
+            logger.info("Laid out " + laidOut.size() + " of " + chunks.size()
+                    + " chapters, kept the others from the previous build.");
+            deleteStaleChunks(chunks, chunkDirectory);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param chunk not null
+     * @return the fingerprint of the FO document of the chunk, of its resources and of the FOP configuration.
+     * @throws IOException if any
+     */
+    private String getFingerprint(FoChunk chunk) throws IOException {
+        StringBuilder settings = new StringBuilder(configuration).append(Version.getVersion());
+        for (String resource : chunk.getResources()) {
+            settings.append('\n').append(resource);
+
+            File file = getFile(resource);
+            if (file != null && file.isFile()) {
+                settings.append(' ').append(ContentHashHelper.getContentHash(Files.readAllBytes(file.toPath()), null));
+            }
+        }
+
+        return ContentHashHelper.getContentHash(
+                Files.readAllBytes(chunk.getFoFile().toPath()), settings.toString());
+    }
+
+    /**
+     * @param resource a resource URI attribute value, i.e. an URI or an <code>url(...)</code> specification.
+     * @return the local file of the resource, or <code>null</code> if it is not a file.
+     */
+    private static File getFile(String resource) {
+        try {
+            URI uri = new URI(URISpecification.getURL(resource).trim());
+            if (!"file".equals(uri.getScheme())) {
+                return null;
+            }
+            return new File(new URI("file", uri.getSchemeSpecificPart(), null));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Delete the laid out chunks of the previous builds that are not used anymore.
+     *
+     * @param chunks the current chunks, not null.
+     * @param chunkDirectory not null
+     */
+    private void deleteStaleChunks(List<FoChunk> chunks, File chunkDirectory) {
+        Set<File> files = new HashSet<>();
+        for (FoChunk chunk : chunks) {
+            files.add(chunk.getFoFile());
+            files.add(chunk.getIntermediateFile());
+            files.add(chunk.getLayoutFile());
+        }
+
+        File[] existing = chunkDirectory.listFiles();
+        if (existing != null) {
+            for (File file : existing) {
+                if (!files.contains(file) && !file.delete() && logger.isDebugEnabled()) {
+                    logger.debug("Unable to delete " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lay out the chunks until their page numbers are all consistent.
+     *
+     * @param chunks not null
+     * @return <code>false</code> if the page numbers are still not consistent after the maximum number of rounds.
+     * @throws DocumentRendererException if any
+     */
+    private boolean layout(List<FoChunk> chunks) throws DocumentRendererException {
+        Map<String, FoChunk> chunkOfDestination = new HashMap<>();
+        for (FoChunk chunk : chunks) {
+            for (String id : chunk.getDestinations()) {
+                chunkOfDestination.put(id, chunk);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, chunks.size())));
+        try {
+            for (int round = 1; ; round++) {
+                List<Callable<Void>> layouts = new ArrayList<>();
+                List<Callable<Void>> waiting = new ArrayList<>();
+
+                int pageNumber = 0;
+                for (final FoChunk chunk : chunks) {
+                    final Integer initialPageNumber = chunk.getInitialPageNumber(pageNumber);
+                    final Map<String, String> citations = new HashMap<>();
+                    boolean ready = true;
+                    for (String id : chunk.getCitations()) {
+                        FoChunk target = chunkOfDestination.get(id);
+                        GoToXYAction destination = target.getDestinationAction(id);
+                        if (!target.isLaidOut()) {
+                            ready = false;
+                        } else if (destination != null) {
+                            citations.put(id, target.getPageNames().get(destination.getPageIndex()));
+                        }
+                    }
+
+                    if (!chunk.isLaidOutWith(initialPageNumber, citations)) {
+                        Callable<Void> layout = new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                layout(chunk, initialPageNumber, citations);
+                                return null;
+                            }
+                        };
+                        if (ready) {
+                            layouts.add(layout);
+                        } else {
+                            waiting.add(layout);
+                        }
+                    }
+
+                    pageNumber = chunk.getLastPageNumber(pageNumber);
+                }
+
+                if (layouts.isEmpty() && waiting.isEmpty()) {
+                    return true;
+                }
+                if (round > maxLayoutRounds) {
+                    return false;
+                }
+                if (layouts.isEmpty()) {
+                    // chunks citing each other: lay them out with the known page numbers first
+                    layouts.addAll(waiting);
+                }
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Layout round " + round + ": " + layouts.size() + " chapters.");
+                }
+
+                for (Future<Void> future : executor.invokeAll(layouts)) {
+                    future.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentRendererException("Interrupted while rendering chapters", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DocumentRendererException) {
+                throw (DocumentRendererException) e.getCause();
+            }
+            throw new DocumentRendererException(
+                    "Error rendering chapters: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lay out a chunk to the FOP intermediate format.
+     *
+     * @param chunk not null
+     * @param initialPageNumber the initial page number of the first page sequence, may be null to keep it.
+     * @param citations the page numbers of the citations of other chunks, not null.
+     * @throws DocumentRendererException if any
+     */
+    private void layout(FoChunk chunk, Integer initialPageNumber, Map<String, String> citations)
+            throws DocumentRendererException {
+        File foFile = chunk.getFoFile();
+
+        // the layout of a previous build does not match the intermediate document anymore
+        chunk.getLayoutFile().delete();
+
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(chunk.getIntermediateFile().toPath()))) {
+            FOUserAgent userAgent = newUserAgent();
+
+            // lay out for the PDF fonts
+            IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+            serializer.mimicDocumentHandler(newPdfDocumentHandler(userAgent));
+            RecordingDocumentHandler recorder = new RecordingDocumentHandler(serializer);
+            userAgent.setDocumentHandlerOverride(recorder);
+
+            Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+
+            FoSplitter.ChunkFilter filter = new FoSplitter.ChunkFilter(initialPageNumber, citations);
+            filter.setParent(newXMLReader());
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(
+                    new SAXSource(filter, new InputSource(foFile.toURI().toString())),
+                    new SAXResult(fop.getDefaultHandler()));
+
+            List<Integer> pageCounts = new ArrayList<>();
+            for (Object results : fop.getResults().getPageSequences()) {
+                pageCounts.add(((PageSequenceResults) results).getPageCount());
+            }
+
+            chunk.setLaidOut(initialPageNumber, citations, recorder.pageNames, pageCounts, recorder.destinations);
+            chunk.saveLayout();
+            laidOut.add(chunk);
+        } catch (TransformerException | IOException | SAXException e) {
+            throw new DocumentRendererException("Error rendering " + foFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Merge the laid out chunks into a PDF.
+     *
+     * @param chunks not null
+     * @param pdfFile the target PDF file, not null.
+     * @throws DocumentRendererException if any
+     */
+    private void merge(List<FoChunk> chunks, File pdfFile) throws DocumentRendererException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Generating: " + pdfFile);
+        }
+
+        // the destinations of the links between chunks, in the merged document
+        Map<String, GoToXYAction> destinations = new HashMap<>();
+        int offset = 0;
+        for (FoChunk chunk : chunks) {
+            for (String id : chunk.getDestinations()) {
+                GoToXYAction action = chunk.getDestinationAction(id);
+                if (action != null) {
+                    destinations.put(id, move(action, offset));
+                }
+            }
+            offset += chunk.getPageNames().size();
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(pdfFile.toPath()))) {
+            FOUserAgent userAgent = newUserAgent();
+
+            IFDocumentHandler pdfHandler = newPdfDocumentHandler(userAgent);
+            IFUtil.setupFonts(pdfHandler);
+            pdfHandler.setResult(new StreamResult(out));
+
+            pdfHandler.startDocument();
+            pdfHandler.startDocumentHeader();
+
+            BookmarkTree bookmarks = new BookmarkTree();
+            Map<String, GoToXYAction> links = new LinkedHashMap<>();
+            offset = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                FoChunk chunk = chunks.get(i);
+
+                ChunkDocumentHandler chunkHandler =
+                        new ChunkDocumentHandler(pdfHandler, i == 0, offset, destinations, bookmarks, links);
+                new IFParser().parse(new StreamSource(chunk.getIntermediateFile()), chunkHandler, userAgent);
+                offset += chunk.getPageNames().size();
+            }
+
+            pdfHandler.startDocumentTrailer();
+            IFDocumentNavigationHandler navigation = pdfHandler.getDocumentNavigationHandler();
+            for (GoToXYAction action : links.values()) {
+                navigation.addResolvedAction(action);
+            }
+            if (!bookmarks.getBookmarks().isEmpty()) {
+                navigation.renderBookmarkTree(bookmarks);
+            }
+            pdfHandler.endDocumentTrailer();
+            pdfHandler.endDocument();
+        } catch (TransformerException | IFException | IOException | FOPException e) {
+            throw new DocumentRendererException("Error creating PDF " + pdfFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private FOUserAgent newUserAgent() {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        FopPdfRenderer.prepareUserAgent(userAgent, documentModel);
+        return userAgent;
+    }
+
+    private static IFDocumentHandler newPdfDocumentHandler(FOUserAgent userAgent) throws FOPException {
+        return userAgent.getRendererFactory().createDocumentHandler(userAgent, MimeConstants.MIME_PDF);
+    }
+
+    private static XMLReader newXMLReader() throws SAXException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * @param action not null
+     * @param offset the index of the first page of the chunk in the merged document.
+     * @return the action moved to the merged document.
+     */
+    private static GoToXYAction move(GoToXYAction action, int offset) {
+        GoToXYAction moved =
+                new GoToXYAction(action.getID(), action.getPageIndex() + offset, action.getTargetLocation(), null);
+        moved.setStructureTreeElement(action.getStructureTreeElement());
+        return moved;
+    }
+
+    /**
+     * A document handler keeping the page numbers and the destinations of a chunk while FOP lays it out.
+     */
+    private static final class RecordingDocumentHandler extends IFDocumentHandlerProxy {
+        private final List<String> pageNames = new ArrayList<>();
+
+        private final Map<String, GoToXYAction> destinations = new HashMap<>();
+
+        RecordingDocumentHandler(IFDocumentHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void startPage(int index, String name, String pageMasterName, Dimension size) throws IFException {
+            pageNames.add(name);
+            super.startPage(index, name, pageMasterName, size);
+        }
+
+        @Override
+        public IFDocumentNavigationHandler getDocumentNavigationHandler() {
+            final IFDocumentNavigationHandler delegate = super.getDocumentNavigationHandler();
+            if (delegate == null) {
+                return null;
+            }
+
+            return new IFDocumentNavigationHandler() {
+                @Override
+                public void renderNamedDestination(NamedDestination destination) {
+                    // only the fox:destination of the splitter, kept for the merge
+                    if (destination.getAction() instanceof GoToXYAction) {
+                        GoToXYAction action = (GoToXYAction) destination.getAction();
+                        destinations.put(
+                                destination.getName(),
+                                new GoToXYAction(
+                                        action.getID(), action.getPageIndex(), action.getTargetLocation(), null));
+                    }
+                }
+
+                @Override
+                public void renderBookmarkTree(BookmarkTree tree) throws IFException {
+                    delegate.renderBookmarkTree(tree);
+                }
+
+                @Override
+                public void renderLink(Link link) throws IFException {
+                    delegate.renderLink(link);
+                }
+
+                @Override
+                public void addResolvedAction(AbstractAction action) throws IFException {
+                    delegate.addResolvedAction(action);
+                }
+
+                @Override
+                public int getPageIndex() {
+                    return delegate.getPageIndex();
+                }
+            };
+        }
+    }
+
+    /**
+     * A document handler appending the pages of a chunk to the merged document, and moving its navigation
+     * to the merged document.
+     */
+    private static final class ChunkDocumentHandler extends IFDocumentHandlerProxy {
+        private final boolean first;
+
+        private final int offset;
+
+        private final Map<String, GoToXYAction> destinations;
+
+        private final BookmarkTree bookmarks;
+
+        private final Map<String, GoToXYAction> links;
+
+        private boolean inPageSequence;
+
+        /**
+         * @param delegate the handler of the merged document, not null.
+         * @param first <code>true</code> for the first chunk, which gives the document header.
+         * @param offset the index of the first page of the chunk in the merged document.
+         * @param destinations the destinations of the links between chunks, not null.
+         * @param bookmarks the bookmarks of the merged document, not null.
+         * @param links the links between chunks to resolve at the end of the document, not null.
+         */
+        ChunkDocumentHandler(
+                IFDocumentHandler delegate,
+                boolean first,
+                int offset,
+                Map<String, GoToXYAction> destinations,
+                BookmarkTree bookmarks,
+                Map<String, GoToXYAction> links) {
+            super(delegate);
+            this.first = first;
+            this.offset = offset;
+            this.destinations = destinations;
+            this.bookmarks = bookmarks;
+            this.links = links;
+        }
+
+        @Override
+        public void startDocument() {
+            // nop
+        }
+
+        @Override
+        public void startDocumentHeader() {
+            // nop
+        }
+
+        @Override
+        public void endDocumentHeader() throws IFException {
+            if (first) {
+                super.endDocumentHeader();
+            }
+        }
+
+        @Override
+        public void setDocumentLocale(Locale locale) {
+            if (first) {
+                super.setDocumentLocale(locale);
+            }
+        }
+
+        @Override
+        public void startPageSequence(String id) throws IFException {
+            inPageSequence = true;
+            super.startPageSequence(id);
+        }
+
+        @Override
+        public void endPageSequence() throws IFException {
+            super.endPageSequence();
+            inPageSequence = false;
+        }
+
+        @Override
+        public void startPage(int index, String name, String pageMasterName, Dimension size) throws IFException {
+            super.startPage(index + offset, name, pageMasterName, size);
+        }
+
+        @Override
+        public void startDocumentTrailer() {
+            // nop
+        }
+
+        @Override
+        public void endDocumentTrailer() {
+            // nop
+        }
+
+        @Override
+        public void endDocument() {
+            // nop
+        }
+
+        @Override
+        public void handleExtensionObject(Object extension) throws IFException {
+            // the default metadata of the merged document is generated by the PDF handler, so that a chunk
+            // laid out by a previous build does not give its dates
+            if (inPageSequence || (first && !(extension instanceof XMPMetadata))) {
+                super.handleExtensionObject(extension);
+            }
+        }
+
+        @Override
+        public IFDocumentNavigationHandler getDocumentNavigationHandler() {
+            final IFDocumentNavigationHandler delegate = super.getDocumentNavigationHandler();
+
+            return new IFDocumentNavigationHandler() {
+                @Override
+                public void renderNamedDestination(NamedDestination destination) {
+                    // only the fox:destination of the splitter
+                }
+
+                @Override
+                public void renderBookmarkTree(BookmarkTree tree) {
+                    for (Object bookmark : tree.getBookmarks()) {
+                        bookmarks.addBookmark(move((Bookmark) bookmark));
+                    }
+                }
+
+                @Override
+                public void renderLink(Link link) throws IFException {
+                    AbstractAction action = link.getAction();
+                    if (action instanceof URIAction) {
+                        String id = FoSplitter.getLinkId(((URIAction) action).getURI());
+                        if (id != null) {
+                            GoToXYAction destination = destinations.get(id);
+                            if (destination == null) {
+                                return;
+                            }
+
+                            // the target page may not be rendered yet: resolved at the end of the document
+                            links.put(destination.getID(), destination);
+                            action = new GoToXYAction(destination.getID());
+                        }
+                    }
+
+                    delegate.renderLink(new Link(move(action), link.getTargetRect()));
+                }
+
+                @Override
+                public void addResolvedAction(AbstractAction action) throws IFException {
+                    delegate.addResolvedAction(move(action));
+                }
+
+                @Override
+                public int getPageIndex() {
+                    // so that the parser keeps the page indexes of the chunk
+                    return -1;
+                }
+            };
+        }
+
+        private Bookmark move(Bookmark bookmark) {
+            Bookmark moved = new Bookmark(bookmark.getTitle(), bookmark.isShown(), move(bookmark.getAction()));
+            for (Object child : bookmark.getChildBookmarks()) {
+                moved.addChildBookmark(move((Bookmark) child));
+            }
+            return moved;
+        }
+
+        private AbstractAction move(AbstractAction action) {
+            if (action instanceof GoToXYAction && action.isComplete()) {
+                return ChunkedPdfRenderer.move((GoToXYAction) action, offset);
+            }
+            return action;
+        }
+    }
+}
@@ -89,7 +89,7 @@ public class DateBean {
      * @return the year in format "yyyy".
      */
     public String getYear() {
-        synchronized (this) {
+        synchronized (YEAR) {
             return YEAR.format(date);
         }
     }
@@ -98,7 +98,7 @@ public class DateBean {
      * @return the month in format "MM".
      */
     public String getMonth() {
-        synchronized (this) {
+        synchronized (MONTH) {
             return MONTH.format(date);
         }
     }
@@ -107,7 +107,7 @@ public class DateBean {
      * @return the day in format "dd".
      */
     public String getDay() {
-        synchronized (this) {
+        synchronized (DAY) {
             return DAY.format(date);
         }
     }
@@ -116,7 +116,7 @@ public class DateBean {
      * @return the hour in format "HH".
      */
     public String getHour() {
-        synchronized (this) {
+        synchronized (HOUR) {
             return HOUR.format(date);
         }
     }
@@ -125,7 +125,7 @@ public class DateBean {
      * @return the minute in format "mm".
      */
     public String getMinute() {
-        synchronized (this) {
+        synchronized (MINUTE) {
             return MINUTE.format(date);
         }
     }
@@ -134,7 +134,7 @@ public class DateBean {
      * @return the second in format "ss".
      */
     public String getSecond() {
-        synchronized (this) {
+        synchronized (SECOND) {
             return SECOND.format(date);
         }
     }
@@ -143,7 +143,7 @@ public class DateBean {
      * @return the millisecond in format "SSS".
      */
     public String getMillisecond() {
-        synchronized (this) {
+        synchronized (MILLI_SECOND) {
             return MILLI_SECOND.format(date);
         }
     }
@@ -152,7 +152,7 @@ public class DateBean {
      * @return the date using the ISO 8601 format, i.e. <code>yyyy-MM-dd</code>.
      */
     public String getDate() {
-        synchronized (this) {
+        synchronized (DATE) {
             return DATE.format(date);
         }
     }
@@ -161,7 +161,7 @@ public class DateBean {
      * @return the time using the ISO 8601 format and UTC time zone, i.e. <code>HH:mm:ss'Z'</code>.
      */
     public String getTime() {
-        synchronized (this) {
+        synchronized (TIME) {
             return TIME.format(date);
         }
     }
@@ -170,7 +170,7 @@ public class DateBean {
      * @return the datetime using the ISO 8601 format, i.e. <code>yyyy-MM-dd'T'HH:mm:ss'Z'</code>.
      */
     public String getDateTime() {
-        synchronized (this) {
+        synchronized (DATE_TIME) {
             return DATE_TIME.format(date);
         }
     }
@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageContext;
+import org.apache.xmlgraphics.image.loader.ImageException;
+import org.apache.xmlgraphics.image.loader.ImageFlavor;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.image.loader.impl.AbstractImageLoaderFactory;
+import org.apache.xmlgraphics.image.loader.impl.ImageRendered;
+import org.apache.xmlgraphics.image.loader.spi.ImageImplRegistry;
+import org.apache.xmlgraphics.image.loader.spi.ImageLoader;
+import org.apache.xmlgraphics.image.loader.spi.ImageLoaderFactory;
+import org.apache.xmlgraphics.image.loader.util.Penalty;
+
+/**
+ * A cache of decoded images for a FopFactory, bounded in bytes with LRU eviction.
+ * <br>
+ * The image cache of FOP only holds soft references, by URI. As each locale is rendered from its own copy
+ * of the site resources, the same image was decoded again for each locale. This cache holds the decoded
+ * images by content hash, so that an image is decoded once for all the documents rendered with the factory,
+ * as long as it fits in the cache.
+ * <br>
+ * It is plugged in front of the image loaders that decode images, in the image registry of its factory,
+ * see {@link #newFopFactory(FopFactoryBuilder, DecodedImageCache)}.
+ *
+ * @since 1.6.2
+ */
+class DecodedImageCache {
+    /** The image types decoded by the loaders to wrap. */
+    private static final String[] MIME_TYPES = {"image/png", "image/jpeg", "image/gif", "image/tiff", "image/bmp"};
+
+    /** The decoded flavors that are cached. */
+    private static final ImageFlavor[] DECODED_FLAVORS = {ImageFlavor.BUFFERED_IMAGE, ImageFlavor.RENDERED_IMAGE};
+
+    /** The caches, by FopFactory. */
+    private static final Map<ImageContext, DecodedImageCache> CACHES = new WeakHashMap<>();
+
+    /** The image registries with the caching loaders. */
+    private static final Map<ImageImplRegistry, Boolean> REGISTRIES = new WeakHashMap<>();
+
+    /** The maximum size in bytes of the cached images. */
+    private final long maxSize;
+
+    /** The cached images, in access order. */
+    private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The size in bytes of the cached images, by key. */
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+
+    /** The content hash of the image files, by path, size and modification time. */
+    private final Map<String, String> contentHashes = new HashMap<>();
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * @param maxSize the maximum size in bytes of the cached images.
+     */
+    DecodedImageCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create a FopFactory decoding its images through the given cache.
+     * <br>
+     * The caching loaders are registered once in the image registry of the factory, and look up the cache of the
+     * factory loading the image: the factories without a cache decode their images as before.
+     *
+     * @param builder the builder of the factory, not null.
+     * @param cache not null
+     * @return a new FopFactory
+     */
+    static FopFactory newFopFactory(FopFactoryBuilder builder, DecodedImageCache cache) {
+        FopFactory fopFactory = builder.build();
+        synchronized (CACHES) {
+            ImageImplRegistry registry = fopFactory.getImageManager().getRegistry();
+            if (REGISTRIES.put(registry, Boolean.TRUE) == null) {
+                registerCachingLoaders(registry);
+            }
+            CACHES.put(fopFactory, cache);
+        }
+        return fopFactory;
+    }
+
+    /**
+     * @param context the context of an image session, may be null.
+     * @return the cache of the factory of the session, or <code>null</code> if it has none.
+     */
+    private static DecodedImageCache getCache(ImageContext context) {
+        synchronized (CACHES) {
+            return CACHES.get(context);
+        }
+    }
+
+    /**
+     * @param key not null
+     * @return the cached image, or <code>null</code>.
+     */
+    synchronized Image get(String key) {
+        Image image = images.get(key);
+        if (image == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Cache an image, evicting the least recently used ones to stay below the maximum size.
+     * Images that can not be cached or are larger than the cache are ignored.
+     *
+     * @param key not null
+     * @param image not null
+     */
+    synchronized void put(String key, Image image) {
+        long imageSize = getSize(image);
+        if (!image.isCacheable() || imageSize < 0 || imageSize > maxSize || images.containsKey(key)) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Image>> eldest = images.entrySet().iterator();
+        while (size + imageSize > maxSize && eldest.hasNext()) {
+            String evicted = eldest.next().getKey();
+            eldest.remove();
+            size -= sizes.remove(evicted);
+        }
+
+        images.put(key, image);
+        sizes.put(key, imageSize);
+        size += imageSize;
+    }
+
+    /**
+     * @return the number of images found in the cache.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of images not found in the cache.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the size in bytes of the cached images.
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @param image not null
+     * @return the memory size in bytes of a decoded image, or <code>-1</code> if it is not a decoded image.
+     */
+    static long getSize(Image image) {
+        if (!(image instanceof ImageRendered)) {
+            return -1;
+        }
+
+        RenderedImage rendered = ((ImageRendered) image).getRenderedImage();
+        if (rendered instanceof BufferedImage) {
+            DataBuffer buffer = ((BufferedImage) rendered).getRaster().getDataBuffer();
+            return (long) buffer.getSize()
+                    * buffer.getNumBanks()
+                    * DataBuffer.getDataTypeSize(buffer.getDataType())
+                    / 8;
+        }
+
+        return (long) rendered.getWidth() * rendered.getHeight() * 4;
+    }
+
+    /**
+     * @param info not null
+     * @param flavor the decoded flavor, not null
+     * @param hints the loading hints, may be null.
+     * @return the key of the image, by content for files, or <code>null</code> if it could not be read.
+     */
+    String getKey(ImageInfo info, ImageFlavor flavor, Map<?, ?> hints) {
+        try {
+            URI uri = new URI(info.getOriginalURI());
+            StringBuilder key = new StringBuilder();
+            if ("file".equals(uri.getScheme())) {
+                key.append(getContentHash(new File(new URI("file", uri.getSchemeSpecificPart(), null))));
+                if (uri.getFragment() != null) {
+                    // sub-image, like a page of a TIFF
+                    key.append('#').append(uri.getFragment());
+                }
+            } else {
+                key.append(uri);
+            }
+            return key.append(' ')
+                    .append(flavor)
+                    .append(' ')
+                    .append(getHintsKey(hints))
+                    .toString();
+        } catch (IOException | IllegalArgumentException | URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param file not null
+     * @return the content hash of the file, only computed when its path, size or modification time changed.
+     * @throws IOException if any
+     */
+    private String getContentHash(File file) throws IOException {
+        String fileKey = file.getAbsolutePath() + " " + file.length() + " " + file.lastModified();
+        synchronized (contentHashes) {
+            String hash = contentHashes.get(fileKey);
+            if (hash == null) {
+                hash = ContentHashHelper.getContentHash(Files.readAllBytes(file.toPath()), null);
+                contentHashes.put(fileKey, hash);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * @param hints the loading hints, may be null.
+     * @return the hints with a value, like the resolutions or the color profile handling, sorted by name.
+     * The others, like the image session or manager, are the context of the loading rather than parameters.
+     */
+    private static String getHintsKey(Map<?, ?> hints) {
+        Map<String, Object> values = new TreeMap<>();
+        if (hints != null) {
+            for (Map.Entry<?, ?> hint : hints.entrySet()) {
+                Object value = hint.getValue();
+                if (value instanceof CharSequence
+                        || value instanceof Number
+                        || value instanceof Boolean
+                        || value instanceof Enum) {
+                    values.put(String.valueOf(hint.getKey()), value);
+                }
+            }
+        }
+        return values.toString();
+    }
+
+    /**
+     * Register a caching loader factory in front of each factory decoding images.
+     *
+     * @param registry the registry of the FopFactory, not null.
+     */
+    private static void registerCachingLoaders(ImageImplRegistry registry) {
+        Map<ImageLoaderFactory, Boolean> decoders = new IdentityHashMap<>();
+        for (String mimeType : MIME_TYPES) {
+            for (ImageLoaderFactory factory : registry.getImageLoaderFactories(mimeType)) {
+                for (ImageFlavor flavor : factory.getSupportedFlavors(mimeType)) {
+                    if (isDecoded(flavor)) {
+                        decoders.put(factory, Boolean.TRUE);
+                    }
+                }
+            }
+        }
+
+        for (ImageLoaderFactory factory : decoders.keySet()) {
+            registry.registerLoaderFactory(new CachingImageLoaderFactory(factory));
+        }
+        // preferred over the wrapped loaders
+        registry.setAdditionalPenalty(CachingImageLoader.class.getName(), Penalty.toPenalty(-1));
+    }
+
+    private static boolean isDecoded(ImageFlavor flavor) {
+        for (ImageFlavor decoded : DECODED_FLAVORS) {
+            if (decoded.equals(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A loader factory serving the decoded flavors of another factory through the caches.
+     */
+    private static final class CachingImageLoaderFactory extends AbstractImageLoaderFactory {
+        private final ImageLoaderFactory delegate;
+
+        CachingImageLoaderFactory(ImageLoaderFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getSupportedMIMETypes() {
+            return delegate.getSupportedMIMETypes();
+        }
+
+        @Override
+        public ImageFlavor[] getSupportedFlavors(String mime) {
+            List<ImageFlavor> flavors = new ArrayList<>();
+            for (ImageFlavor flavor : delegate.getSupportedFlavors(mime)) {
+                if (isDecoded(flavor)) {
+                    flavors.add(flavor);
+                }
+            }
+            return flavors.toArray(new ImageFlavor[0]);
+        }
+
+        @Override
+        public boolean isSupported(ImageInfo imageInfo) {
+            return delegate.isSupported(imageInfo);
+        }
+
+        @Override
+        public ImageLoader newImageLoader(ImageFlavor targetFlavor) {
+            return new CachingImageLoader(delegate.newImageLoader(targetFlavor));
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return delegate.isAvailable();
+        }
+    }
+
+    /**
+     * A loader looking up the cache of the FopFactory of the session before decoding an image.
+     */
+    private static final class CachingImageLoader implements ImageLoader {
+        private final ImageLoader delegate;
+
+        CachingImageLoader(ImageLoader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Image loadImage(ImageInfo info, Map hints, ImageSessionContext session)
+                throws ImageException, IOException {
+            DecodedImageCache cache = session == null ? null : getCache(session.getParentContext());
+            String key = cache == null ? null : cache.getKey(info, getTargetFlavor(), hints);
+
+            Image image = key == null ? null : cache.get(key);
+            if (image == null) {
+                image = hints == null ? delegate.loadImage(info, session) : delegate.loadImage(info, hints, session);
+                if (key != null) {
+                    cache.put(key, image);
+                }
+            }
+            return image;
+        }
+
+        @Override
+        public Image loadImage(ImageInfo info, ImageSessionContext session) throws ImageException, IOException {
+            return loadImage(info, null, session);
+        }
+
+        @Override
+        public ImageFlavor getTargetFlavor() {
+            return delegate.getTargetFlavor();
+        }
+
+        @Override
+        public int getUsagePenalty() {
+            return delegate.getUsagePenalty();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.doxia.parser.ParseException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Validates the XML source documents without network access, like the Doxia validation of the
+ * <code>validate</code> parameter: documents declaring a schema location are validated against the schema,
+ * documents with a DOCTYPE against their DTD, and the other ones are only checked to be well-formed.
+ * <br>
+ * The schemas and DTDs are resolved from the plugin classpath by file name, i.e. the <code>xml.xsd</code>
+ * bundled with the plugin and the <code>xdoc-2.0.xsd</code> or <code>fml-1.0.1.xsd</code> of the Doxia modules,
+ * then from a cache directory, where the other ones are downloaded once unless offline. The schemas are
+ * compiled once, and shared by the validations running in parallel.
+ *
+ * @since 1.6.2
+ */
+class DocumentValidator implements EntityResolver, LSResourceResolver {
+    /**
+     * The first element of a document, to look for its schema location like Doxia.
+     */
+    private static final Pattern ROOT_TAG = Pattern.compile("<[A-Za-z][^>]*>");
+
+    private static final Pattern SCHEMA_LOCATION =
+            Pattern.compile("(noNamespaceSchemaLocation|schemaLocation)\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private static final Pattern DOCTYPE = Pattern.compile("<!DOCTYPE\\s");
+
+    /**
+     * The connect and read timeout in milliseconds of the entities downloaded.
+     */
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * Fails on the first error, warnings being ignored.
+     */
+    private static final ErrorHandler ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException e) {
+            // not an error
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    };
+
+    /**
+     * The directory keeping the entities not found in the classpath.
+     */
+    private final File cacheDirectory;
+
+    /**
+     * <code>true</code> to fail on the entities not found locally instead of downloading them.
+     */
+    private final boolean offline;
+
+    /**
+     * The content of the resolved entities, by system id.
+     */
+    private final ConcurrentMap<String, byte[]> entities = new ConcurrentHashMap<>();
+
+    /**
+     * The compiled schemas, by schema locations.
+     */
+    private final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheDirectory the directory keeping the entities not found in the classpath, not null.
+     * @param offline <code>true</code> to fail on the entities not found locally instead of downloading them.
+     */
+    DocumentValidator(File cacheDirectory, boolean offline) {
+        this.cacheDirectory = cacheDirectory;
+        this.offline = offline;
+    }
+
+    /**
+     * Validate documents in parallel.
+     *
+     * @param documents the XML documents, not null.
+     * @param threads the maximum number of documents validated at the same time.
+     * @throws ParseException if a document is not valid, the first one in the given order.
+     * @throws IOException if any
+     */
+    void validate(List<File> documents, int threads) throws ParseException, IOException {
+        if (documents.size() <= 1 || threads <= 1) {
+            for (File document : documents) {
+                validate(document);
+            }
+            return;
+        }
+
+        List<Callable<Void>> validations = new ArrayList<>();
+        for (final File document : documents) {
+            validations.add(() -> {
+                validate(document);
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, documents.size()));
+        try {
+            for (Future<Void> validation : executor.invokeAll(validations)) {
+                validation.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param document an XML document, not null.
+     * @throws ParseException if the document is not valid
+     * @throws IOException if any
+     */
+    void validate(File document) throws ParseException, IOException {
+        String content;
+        try (Reader reader = ReaderFactory.newXmlReader(document)) {
+            content = IOUtil.toString(reader);
+        }
+        validate(content, document.toURI().toString());
+    }
+
+    /**
+     * @param content the content of an XML document, like the output of a Velocity template, not null.
+     * @param systemId the location of the document, to resolve its relative references, not null.
+     * @throws ParseException if the document is not valid
+     * @throws IOException if any
+     */
+    void validate(String content, String systemId) throws ParseException, IOException {
+        List<String> schemaLocations = new ArrayList<>();
+        Matcher rootTag = ROOT_TAG.matcher(content);
+        if (rootTag.find()) {
+            Matcher matcher = SCHEMA_LOCATION.matcher(rootTag.group());
+            while (matcher.find()) {
+                String[] values = matcher.group(2).trim().split("\\s+");
+                // the schema location lists namespace and location pairs
+                for (int i = "schemaLocation".equals(matcher.group(1)) ? 1 : 0; i < values.length; i += 2) {
+                    schemaLocations.add(resolve(systemId, values[i]));
+                }
+            }
+        }
+
+        InputSource source = new InputSource(new StringReader(content));
+        source.setSystemId(systemId);
+        try {
+            if (!schemaLocations.isEmpty()) {
+                Validator validator = getSchema(schemaLocations).newValidator();
+                validator.setErrorHandler(ERROR_HANDLER);
+                validator.setResourceResolver(this);
+                validator.validate(new SAXSource(newXmlReader(false), source));
+            } else {
+                newXmlReader(DOCTYPE.matcher(content).find()).parse(source);
+            }
+        } catch (SAXParseException e) {
+            throw new ParseException(
+                    "Error validating the model: " + e.getMessage(), e, e.getLineNumber(), e.getColumnNumber());
+        } catch (SAXException e) {
+            throw new ParseException("Error validating the model: " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            // an entity of a schema is not available
+            throw e.getCause();
+        }
+    }
+
+    private XMLReader newXmlReader(boolean validating) throws SAXException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(validating);
+        try {
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setErrorHandler(ERROR_HANDLER);
+            reader.setEntityResolver(this);
+            return reader;
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private Schema getSchema(List<String> schemaLocations) throws SAXException, IOException {
+        String key = String.join(" ", schemaLocations);
+        Schema schema = schemas.get(key);
+        if (schema == null) {
+            // compiled once, even when several documents use it at the same time
+            synchronized (schemas) {
+                schema = schemas.get(key);
+                if (schema == null) {
+                    Source[] sources = new Source[schemaLocations.size()];
+                    for (int i = 0; i < sources.length; i++) {
+                        String systemId = schemaLocations.get(i);
+                        byte[] entity = getEntity(systemId);
+                        sources[i] = entity == null
+                                ? new StreamSource(systemId)
+                                : new StreamSource(new ByteArrayInputStream(entity), systemId);
+                    }
+
+                    SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                    factory.setErrorHandler(ERROR_HANDLER);
+                    factory.setResourceResolver(this);
+                    schema = factory.newSchema(sources);
+                    schemas.put(key, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+        byte[] entity = getEntity(systemId);
+        if (entity == null) {
+            return null;
+        }
+
+        InputSource source = new InputSource(new ByteArrayInputStream(entity));
+        source.setPublicId(publicId);
+        source.setSystemId(systemId);
+        return source;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public LSInput resolveResource(String type, String namespaceUri, String publicId, String systemId, String baseUri) {
+        if (systemId == null) {
+            return null;
+        }
+
+        String resolved = resolve(baseUri, systemId);
+        byte[] entity;
+        try {
+            entity = getEntity(resolved);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (entity == null) {
+            return null;
+        }
+
+        try {
+            DOMImplementationLS ls = (DOMImplementationLS)
+                    DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+            LSInput input = ls.createLSInput();
+            input.setByteStream(new ByteArrayInputStream(entity));
+            input.setPublicId(publicId);
+            input.setSystemId(resolved);
+            input.setBaseURI(baseUri);
+            return input;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param systemId the system id of an entity, may be null.
+     * @return the content of a remote entity, or <code>null</code> to let the parser read a local one.
+     * @throws IOException if the entity is not available
+     */
+    private byte[] getEntity(String systemId) throws IOException {
+        if (systemId == null || !systemId.toLowerCase(Locale.ENGLISH).matches("https?:.*")) {
+            return null;
+        }
+
+        byte[] entity = entities.get(systemId);
+        if (entity != null) {
+            return entity;
+        }
+
+        String name = systemId.substring(systemId.lastIndexOf('/') + 1);
+        URL resource = name.isEmpty() ? null : DocumentValidator.class.getResource("schemas/" + name);
+        if (resource == null && !name.isEmpty()) {
+            resource = DocumentValidator.class.getResource("/" + name);
+        }
+
+        File cached = new File(
+                cacheDirectory,
+                ContentHashHelper.getContentHash(systemId.getBytes(StandardCharsets.UTF_8), null) + "-"
+                        + name.replaceAll("[^A-Za-z0-9._-]", "_"));
+        if (resource != null) {
+            entity = read(resource);
+        } else if (cached.isFile()) {
+            entity = Files.readAllBytes(cached.toPath());
+        } else if (offline) {
+            throw new IOException("The entity " + systemId + " is not available offline, you could copy it to "
+                    + cached.getAbsolutePath());
+        } else {
+            entity = read(new URL(systemId));
+
+            // concurrent builds may share the cache
+            cacheDirectory.mkdirs();
+            File tmp = File.createTempFile(cached.getName(), ".tmp", cacheDirectory);
+            Files.write(tmp.toPath(), entity);
+            Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        byte[] previous = entities.putIfAbsent(systemId, entity);
+        return previous == null ? entity : previous;
+    }
+
+    private static byte[] read(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtil.toByteArray(in);
+        }
+    }
+
+    private static String resolve(String baseUri, String systemId) {
+        if (baseUri == null) {
+            return systemId;
+        }
+        try {
+            return new URI(baseUri).resolve(new URI(systemId)).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return systemId;
+        }
+    }
+}
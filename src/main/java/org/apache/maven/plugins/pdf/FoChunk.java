@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.fop.render.intermediate.extensions.GoToXYAction;
+
+/**
+ * A chunk of an aggregated FO document, laid out by FOP independently of the other chunks,
+ * see {@link FoSplitter} and {@link ChunkedPdfRenderer}.
+ *
+ * @since 1.6.2
+ */
+class FoChunk {
+    /**
+     * The FO document of the chunk.
+     */
+    private final File foFile;
+
+    /**
+     * The <code>initial-page-number</code> of the page sequences of the chunk, <code>null</code> if not set.
+     */
+    private final List<String> initialPageNumbers;
+
+    /**
+     * The ids cited by the page number citations of the chunk and declared by another chunk.
+     */
+    private final Set<String> citations;
+
+    /**
+     * The ids of the chunk that are referenced by another chunk.
+     */
+    private final Set<String> destinations;
+
+    /**
+     * The URIs of the resources used by the chunk, like images.
+     */
+    private final Set<String> resources;
+
+    /** The fingerprint of the chunk and of what its layout depends on, <code>null</code> if not computed. */
+    private String fingerprint;
+
+    /** The initial page number of the first page sequence used for the layout, <code>null</code> if not set. */
+    private Integer laidOutInitialPageNumber;
+
+    /** The page numbers of the citations used for the layout. */
+    private Map<String, String> laidOutCitations;
+
+    /** The formatted page numbers of the laid out pages. */
+    private List<String> pageNames;
+
+    /** The page count of each page sequence. */
+    private List<Integer> pageCounts;
+
+    /** The location of the destinations in the laid out pages. */
+    private Map<String, GoToXYAction> destinationActions;
+
+    /**
+     * @param foFile the FO document of the chunk, not null.
+     * @param initialPageNumbers the <code>initial-page-number</code> of the page sequences, not null.
+     * @param citations the ids cited by the chunk and declared by another chunk, not null.
+     * @param destinations the ids of the chunk that are referenced by another chunk, not null.
+     * @param resources the URIs of the resources used by the chunk, not null.
+     */
+    FoChunk(
+            File foFile,
+            List<String> initialPageNumbers,
+            Set<String> citations,
+            Set<String> destinations,
+            Set<String> resources) {
+        this.foFile = foFile;
+        this.initialPageNumbers = initialPageNumbers;
+        this.citations = citations;
+        this.destinations = destinations;
+        this.resources = resources;
+    }
+
+    File getFoFile() {
+        return foFile;
+    }
+
+    /**
+     * @return the FOP intermediate format document of the laid out chunk, named after its fingerprint
+     * so that it can be reused by a later build.
+     */
+    File getIntermediateFile() {
+        return new File(foFile.getParentFile(), "chapter-" + fingerprint + ".if");
+    }
+
+    /**
+     * @return the file keeping the page numbers of the laid out chunk, next to its intermediate format document.
+     */
+    File getLayoutFile() {
+        return new File(foFile.getParentFile(), "chapter-" + fingerprint + ".properties");
+    }
+
+    Set<String> getResources() {
+        return resources;
+    }
+
+    void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    Set<String> getCitations() {
+        return citations;
+    }
+
+    Set<String> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * @param previousPageNumber the last page number of the previous chunk, <code>0</code> for the first chunk.
+     * @return the initial page number to set on the first page sequence so that the page numbers continue
+     * the previous chunk, or <code>null</code> if it is already explicit.
+     */
+    Integer getInitialPageNumber(int previousPageNumber) {
+        String initialPageNumber = initialPageNumbers.get(0);
+        if (isExplicit(initialPageNumber)) {
+            return null;
+        }
+
+        return getStartingPageNumber(initialPageNumber, previousPageNumber);
+    }
+
+    /**
+     * @param previousPageNumber the last page number of the previous chunk, <code>0</code> for the first chunk.
+     * @return the last page number of this chunk, as far as it is known.
+     */
+    int getLastPageNumber(int previousPageNumber) {
+        int pageNumber = previousPageNumber;
+        for (int i = 0; i < initialPageNumbers.size(); i++) {
+            int pageCount = pageCounts == null || i >= pageCounts.size() ? 0 : pageCounts.get(i);
+            pageNumber = getStartingPageNumber(initialPageNumbers.get(i), pageNumber) + pageCount - 1;
+        }
+        return pageNumber;
+    }
+
+    /**
+     * @return <code>true</code> if the chunk has been laid out.
+     */
+    boolean isLaidOut() {
+        return pageNames != null;
+    }
+
+    /**
+     * @param initialPageNumber the initial page number of the first page sequence, may be null.
+     * @param citationPageNumbers the page numbers of the citations, not null.
+     * @return <code>true</code> if the chunk has been laid out with these page numbers.
+     */
+    boolean isLaidOutWith(Integer initialPageNumber, Map<String, String> citationPageNumbers) {
+        return isLaidOut()
+                && Objects.equals(laidOutInitialPageNumber, initialPageNumber)
+                && laidOutCitations.equals(citationPageNumbers);
+    }
+
+    /**
+     * Keep the result of a layout.
+     *
+     * @param initialPageNumber the initial page number set on the first page sequence, may be null.
+     * @param citationPageNumbers the page numbers of the citations, not null.
+     * @param pageNames the formatted page numbers of the pages, not null.
+     * @param pageCounts the page count of each page sequence, not null.
+     * @param destinationActions the location of the destinations, not null.
+     */
+    void setLaidOut(
+            Integer initialPageNumber,
+            Map<String, String> citationPageNumbers,
+            List<String> pageNames,
+            List<Integer> pageCounts,
+            Map<String, GoToXYAction> destinationActions) {
+        this.laidOutInitialPageNumber = initialPageNumber;
+        this.laidOutCitations = citationPageNumbers;
+        this.pageNames = pageNames;
+        this.pageCounts = pageCounts;
+        this.destinationActions = destinationActions;
+    }
+
+    /**
+     * @return the formatted page numbers of the laid out pages, not null.
+     */
+    List<String> getPageNames() {
+        return pageNames == null ? Collections.<String>emptyList() : pageNames;
+    }
+
+    /**
+     * @param id a destination of the chunk
+     * @return the location of the destination in the laid out pages, or <code>null</code> if not found.
+     */
+    GoToXYAction getDestinationAction(String id) {
+        return destinationActions == null ? null : destinationActions.get(id);
+    }
+
+    /**
+     * Save the result of the layout next to the intermediate format document.
+     *
+     * @throws IOException if any
+     */
+    void saveLayout() throws IOException {
+        Properties properties = new Properties();
+        if (laidOutInitialPageNumber != null) {
+            properties.setProperty("initialPageNumber", laidOutInitialPageNumber.toString());
+        }
+        for (Map.Entry<String, String> citation : laidOutCitations.entrySet()) {
+            properties.setProperty("citation." + citation.getKey(), citation.getValue());
+        }
+        properties.setProperty("pages", String.valueOf(pageNames.size()));
+        for (int i = 0; i < pageNames.size(); i++) {
+            properties.setProperty("page." + i, pageNames.get(i));
+        }
+        properties.setProperty("sequences", String.valueOf(pageCounts.size()));
+        for (int i = 0; i < pageCounts.size(); i++) {
+            properties.setProperty("sequence." + i, pageCounts.get(i).toString());
+        }
+        for (Map.Entry<String, GoToXYAction> destination : destinationActions.entrySet()) {
+            GoToXYAction action = destination.getValue();
+            Point location = action.getTargetLocation();
+            properties.setProperty(
+                    "destination." + destination.getKey(),
+                    action.getPageIndex() + (location == null ? "" : " " + location.x + " " + location.y));
+        }
+
+        try (OutputStream out = Files.newOutputStream(getLayoutFile().toPath())) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * Restore the result of the layout of a previous build with the same fingerprint.
+     *
+     * @return <code>true</code> if the layout has been restored.
+     * @throws IOException if any
+     */
+    boolean loadLayout() throws IOException {
+        File layoutFile = getLayoutFile();
+        if (!layoutFile.isFile() || !getIntermediateFile().isFile()) {
+            return false;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(layoutFile.toPath())) {
+            properties.load(in);
+        }
+        if (properties.getProperty("pages") == null || properties.getProperty("sequences") == null) {
+            return false;
+        }
+
+        try {
+            String initialPageNumber = properties.getProperty("initialPageNumber");
+            Map<String, String> citationPageNumbers = new HashMap<>();
+            Map<String, GoToXYAction> actions = new HashMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith("citation.")) {
+                    citationPageNumbers.put(key.substring("citation.".length()), properties.getProperty(key));
+                } else if (key.startsWith("destination.")) {
+                    String id = key.substring("destination.".length());
+                    String[] location = properties.getProperty(key).split(" ");
+                    Point point = location.length < 3
+                            ? null
+                            : new Point(Integer.parseInt(location[1]), Integer.parseInt(location[2]));
+                    actions.put(id, new GoToXYAction(id, Integer.parseInt(location[0]), point, null));
+                }
+            }
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < Integer.parseInt(properties.getProperty("pages")); i++) {
+                names.add(properties.getProperty("page." + i));
+            }
+            List<Integer> counts = new ArrayList<>();
+            for (int i = 0; i < Integer.parseInt(properties.getProperty("sequences")); i++) {
+                counts.add(Integer.valueOf(properties.getProperty("sequence." + i)));
+            }
+
+            setLaidOut(
+                    initialPageNumber == null ? null : Integer.valueOf(initialPageNumber),
+                    citationPageNumbers,
+                    names,
+                    counts,
+                    actions);
+            return true;
+        } catch (NumberFormatException e) {
+            // corrupted, lay out the chunk again
+            return false;
+        }
+    }
+
+    /**
+     * @param initialPageNumber an <code>initial-page-number</code> value
+     * @return <code>true</code> if the value is a page number.
+     */
+    static boolean isExplicit(String initialPageNumber) {
+        return initialPageNumber != null && initialPageNumber.trim().matches("[+-]?\\d+");
+    }
+
+    /**
+     * @param initialPageNumber an <code>initial-page-number</code> value, may be null.
+     * @return <code>true</code> if the value is supported by the chunked layout.
+     */
+    static boolean isSupported(String initialPageNumber) {
+        return initialPageNumber == null
+                || isExplicit(initialPageNumber)
+                || "auto".equals(initialPageNumber)
+                || "auto-odd".equals(initialPageNumber)
+                || "auto-even".equals(initialPageNumber);
+    }
+
+    /**
+     * Compute the starting page number of a page sequence the same way as FOP.
+     *
+     * @param initialPageNumber the <code>initial-page-number</code> of the page sequence, may be null.
+     * @param previousPageNumber the last page number of the previous page sequence.
+     * @return the starting page number of the page sequence.
+     */
+    static int getStartingPageNumber(String initialPageNumber, int previousPageNumber) {
+        if (isExplicit(initialPageNumber)) {
+            return Math.max(1, Integer.parseInt(initialPageNumber.trim().replace("+", "")));
+        }
+
+        int pageNumber = previousPageNumber + 1;
+        if ("auto-odd".equals(initialPageNumber) && pageNumber % 2 == 0) {
+            pageNumber++;
+        } else if ("auto-even".equals(initialPageNumber) && pageNumber % 2 != 0) {
+            pageNumber++;
+        }
+        return pageNumber;
+    }
+}
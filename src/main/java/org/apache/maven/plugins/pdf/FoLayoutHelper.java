@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.swing.text.AttributeSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.doxia.module.fo.FoConfiguration;
+
+/**
+ * Helper to read the page geometry of the XSL-FO layout, as configured by the <code>pdf-config.xml</code>
+ * of the site, or by default by <code>fo-styles.xslt</code> in doxia-module-fo.
+ *
+ * @since 1.6.2
+ */
+class FoLayoutHelper {
+    /** An absolute XSL-FO length. */
+    private static final Pattern LENGTH_PATTERN = Pattern.compile("\\s*([0-9.]+)\\s*(in|cm|mm|pt|pc|px)\\s*");
+
+    /**
+     * @param siteDirectory the staged site directory, not null.
+     * @return the attributes of the base page master of the layout.
+     * @throws IOException if the configuration cannot be read.
+     */
+    static AttributeSet getPageMaster(File siteDirectory) throws IOException {
+        FoConfiguration config = new FoConfiguration();
+        File pdfConfig = new File(siteDirectory, "resources/pdf-config.xml");
+        if (pdfConfig.exists()) {
+            config.load(pdfConfig);
+        }
+        return config.getAttributeSet("layout.master.set.base");
+    }
+
+    /**
+     * @param page the attributes of a page master, not null.
+     * @return the width of the page body in inches.
+     */
+    static double getBodyWidth(AttributeSet page) {
+        return getInches(page, "page-width", 8.27)
+                - getInches(page, "margin-left", 1)
+                - getInches(page, "margin-right", 1);
+    }
+
+    /**
+     * @param page the attributes of a page master, not null.
+     * @return the height of the page body in inches.
+     */
+    static double getBodyHeight(AttributeSet page) {
+        return getInches(page, "page-height", 11.7)
+                - getInches(page, "margin-top", 0.625)
+                - getInches(page, "margin-bottom", 0.6);
+    }
+
+    /**
+     * @param attributes not null
+     * @param name the name of a length attribute
+     * @param defaultValue the value in inches if the attribute is not defined or has no absolute unit.
+     * @return the length in inches.
+     */
+    static double getInches(AttributeSet attributes, String name, double defaultValue) {
+        Object value = attributes.getAttribute(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        Matcher m = LENGTH_PATTERN.matcher(value.toString());
+        if (!m.matches()) {
+            return defaultValue;
+        }
+
+        double length = Double.parseDouble(m.group(1));
+        switch (m.group(2)) {
+            case "cm":
+                return length / 2.54;
+            case "mm":
+                return length / 25.4;
+            case "pt":
+                return length / 72;
+            case "pc":
+                return length / 6;
+            case "px":
+                return length / 96;
+            default:
+                return length;
+        }
+    }
+}
@@ -0,0 +1,665 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Split an aggregated FO document into chunks that FOP can lay out independently: a chunk starts with each
+ * page sequence holding the target of a top-level bookmark, i.e. with each top-level chapter of the TOC.
+ * <br>
+ * Each chunk is a complete FO document with the page masters of the aggregated document, the bookmarks
+ * of its chapters and its page sequences. The references between chunks are rewritten:
+ * <ul>
+ * <li>a link to another chunk becomes an external link, see {@link #getLinkDestination(String)},</li>
+ * <li>an id referenced by another chunk gets a <code>fox:destination</code>, so that FOP reports its page,</li>
+ * <li>the last page sequence of a chunk gets the page count FOP would force from the next chunk,</li>
+ * <li>the first page number and the citations of other chunks are set at layout time, see
+ * {@link ChunkFilter}.</li>
+ * </ul>
+ *
+ * @since 1.6.2
+ */
+class FoSplitter {
+    static final String FO_NAMESPACE = "http://www.w3.org/1999/XSL/Format";
+
+    static final String FOX_NAMESPACE = "http://xmlgraphics.apache.org/fop/extensions";
+
+    /**
+     * The prefix of the external destinations standing for a link to another chunk.
+     */
+    private static final String LINK_PREFIX = "fo-chunk:";
+
+    private static final SAXTransformerFactory TRANSFORMER_FACTORY =
+            (SAXTransformerFactory) TransformerFactory.newInstance();
+
+    private FoSplitter() {
+        // nop
+    }
+
+    /**
+     * Split an aggregated FO document.
+     *
+     * @param foFile the aggregated FO document, not null.
+     * @param chunkDirectory the directory to write the chunks to, not null.
+     * @return the chunks, in document order, or an empty list if the document has a structure that can not be
+     * split.
+     * @throws IOException if any
+     * @throws SAXException if the document could not be parsed
+     */
+    static List<FoChunk> split(File foFile, File chunkDirectory) throws IOException, SAXException {
+        Scanner scanner = new Scanner();
+        newXMLReader(scanner).parse(new InputSource(foFile.toURI().toString()));
+
+        List<Sequence> sequences = scanner.sequences;
+        if (!scanner.supported || sequences.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // a chunk starts with each top-level chapter
+        Set<String> chapters = new LinkedHashSet<>(scanner.bookmarks);
+        int[] chunkOfSequence = new int[sequences.size()];
+        Map<String, Integer> chunkOfId = new HashMap<>();
+        int chunkCount = 0;
+        for (int i = 0; i < sequences.size(); i++) {
+            Sequence sequence = sequences.get(i);
+            if (i == 0 || chapters.isEmpty() || !Collections.disjoint(sequence.ids, chapters)) {
+                chunkCount++;
+            }
+            chunkOfSequence[i] = chunkCount - 1;
+            for (String id : sequence.ids) {
+                if (!chunkOfId.containsKey(id)) {
+                    chunkOfId.put(id, chunkCount - 1);
+                }
+            }
+        }
+
+        List<Set<String>> citations = newSets(chunkCount);
+        List<Set<String>> links = newSets(chunkCount);
+        List<Set<String>> destinations = newSets(chunkCount);
+        for (int i = 0; i < sequences.size(); i++) {
+            int chunk = chunkOfSequence[i];
+            Sequence sequence = sequences.get(i);
+
+            for (String id : sequence.citations) {
+                Integer target = chunkOfId.get(id);
+                if (target != null && target != chunk) {
+                    citations.get(chunk).add(id);
+                    destinations.get(target).add(id);
+                }
+            }
+            for (String id : sequence.links) {
+                Integer target = chunkOfId.get(id);
+                if (target != null && target != chunk) {
+                    links.get(chunk).add(id);
+                    destinations.get(target).add(id);
+                }
+            }
+            for (String id : sequence.lastCitations) {
+                Integer target = chunkOfId.get(id);
+                if (target != null && target != chunk) {
+                    // the destination only gives the first page of an id
+                    return Collections.emptyList();
+                }
+            }
+        }
+
+        // bookmarks go with their target, unresolved ones with the first chunk
+        int[] chunkOfBookmark = new int[scanner.bookmarks.size()];
+        for (int i = 0; i < chunkOfBookmark.length; i++) {
+            Integer chunk = chunkOfId.get(scanner.bookmarks.get(i));
+            chunkOfBookmark[i] = chunk == null ? 0 : chunk;
+        }
+
+        // without the next chunk, FOP does not know the page count to force
+        String[] forcePageCounts = new String[sequences.size()];
+        for (int i = 0; i < sequences.size() - 1; i++) {
+            String forcePageCount = sequences.get(i).forcePageCount;
+            if (chunkOfSequence[i] != chunkOfSequence[i + 1]
+                    && (forcePageCount == null || "auto".equals(forcePageCount))) {
+                forcePageCounts[i] = getForcePageCount(sequences.get(i + 1).initialPageNumber);
+            }
+        }
+
+        chunkDirectory.mkdirs();
+        List<Set<String>> resources = newSets(chunkCount);
+        List<FoChunk> chunks = new ArrayList<>();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            List<String> initialPageNumbers = new ArrayList<>();
+            for (int i = 0; i < sequences.size(); i++) {
+                if (chunkOfSequence[i] == chunk) {
+                    initialPageNumbers.add(sequences.get(i).initialPageNumber);
+                }
+            }
+
+            String name = String.format(Locale.ROOT, "chunk-%03d", chunk + 1);
+            chunks.add(new FoChunk(
+                    new File(chunkDirectory, name + ".fo"),
+                    initialPageNumbers,
+                    citations.get(chunk),
+                    destinations.get(chunk),
+                    resources.get(chunk)));
+        }
+
+        List<OutputStream> outputs = new ArrayList<>();
+        try {
+            TransformerHandler[] handlers = new TransformerHandler[chunkCount];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                OutputStream out = new BufferedOutputStream(
+                        Files.newOutputStream(chunks.get(chunk).getFoFile().toPath()));
+                outputs.add(out);
+                handlers[chunk] = TRANSFORMER_FACTORY.newTransformerHandler();
+                handlers[chunk].setResult(new StreamResult(out));
+            }
+
+            ChunkWriter writer = new ChunkWriter(
+                    handlers, chunkOfSequence, chunkOfBookmark, forcePageCounts, links, destinations, resources);
+
+            // the chunks are written in another directory
+            ResourceUriResolvingFilter filter = new ResourceUriResolvingFilter(
+                    foFile.getAbsoluteFile().getParentFile().toURI());
+            filter.setParent(newXMLReader(null));
+            filter.setContentHandler(writer);
+            filter.parse(new InputSource(foFile.toURI().toString()));
+        } catch (TransformerConfigurationException e) {
+            throw new SAXException(e);
+        } finally {
+            for (OutputStream out : outputs) {
+                out.close();
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * @param id an id of another chunk
+     * @return the external destination standing for a link to this id.
+     */
+    static String getLinkDestination(String id) {
+        try {
+            return LINK_PREFIX + URLEncoder.encode(id, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param uri the URI of a link, not null.
+     * @return the id of another chunk the link stands for, or <code>null</code> if it is a real external link.
+     */
+    static String getLinkId(String uri) {
+        if (!uri.startsWith(LINK_PREFIX)) {
+            return null;
+        }
+
+        try {
+            return URLDecoder.decode(uri.substring(LINK_PREFIX.length()), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param nextInitialPageNumber the <code>initial-page-number</code> of the next page sequence, may be null.
+     * @return the <code>force-page-count</code> FOP uses for <code>auto</code> before this page sequence,
+     * or <code>null</code> if no page count is forced.
+     */
+    static String getForcePageCount(String nextInitialPageNumber) {
+        if ("auto-odd".equals(nextInitialPageNumber)) {
+            return "end-on-even";
+        } else if ("auto-even".equals(nextInitialPageNumber)) {
+            return "end-on-odd";
+        } else if (FoChunk.isExplicit(nextInitialPageNumber)) {
+            return FoChunk.getStartingPageNumber(nextInitialPageNumber, 0) % 2 == 0 ? "end-on-odd" : "end-on-even";
+        }
+
+        return null;
+    }
+
+    private static List<Set<String>> newSets(int count) {
+        List<Set<String>> sets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sets.add(new LinkedHashSet<String>());
+        }
+        return sets;
+    }
+
+    /**
+     * @param contentHandler the content handler, may be null.
+     * @return a namespace aware XML reader
+     * @throws SAXException if any
+     */
+    private static XMLReader newXMLReader(ContentHandler contentHandler) throws SAXException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            if (contentHandler != null) {
+                reader.setContentHandler(contentHandler);
+            }
+            return reader;
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private static boolean isFo(String uri, String localName, String name) {
+        return FO_NAMESPACE.equals(uri) && name.equals(localName);
+    }
+
+    /**
+     * A page sequence of the aggregated document.
+     */
+    private static final class Sequence {
+        private final String initialPageNumber;
+
+        private final String forcePageCount;
+
+        private final Set<String> ids = new LinkedHashSet<>();
+
+        private final Set<String> citations = new LinkedHashSet<>();
+
+        private final Set<String> lastCitations = new LinkedHashSet<>();
+
+        private final Set<String> links = new LinkedHashSet<>();
+
+        Sequence(String initialPageNumber, String forcePageCount) {
+            this.initialPageNumber = initialPageNumber;
+            this.forcePageCount = forcePageCount;
+        }
+    }
+
+    /**
+     * Collect the page sequences, their ids and references, and the targets of the top-level bookmarks.
+     */
+    private static final class Scanner extends DefaultHandler {
+        private final List<Sequence> sequences = new ArrayList<>();
+
+        private final List<String> bookmarks = new ArrayList<>();
+
+        private boolean supported = true;
+
+        private int depth;
+
+        private Sequence sequence;
+
+        private boolean inBookmarkTree;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            depth++;
+            if (depth == 1) {
+                supported &= isFo(uri, localName, "root");
+            } else if (depth == 2) {
+                if (isFo(uri, localName, "page-sequence")) {
+                    sequence = new Sequence(
+                            atts.getValue("", "initial-page-number"), atts.getValue("", "force-page-count"));
+                    sequences.add(sequence);
+                    supported &= FoChunk.isSupported(sequence.initialPageNumber);
+                } else if (isFo(uri, localName, "bookmark-tree")) {
+                    inBookmarkTree = true;
+                } else {
+                    // page sequence wrappers, extensions, etc.
+                    supported &= isFo(uri, localName, "layout-master-set") || isFo(uri, localName, "declarations");
+                }
+            } else if (depth == 3 && inBookmarkTree && isFo(uri, localName, "bookmark")) {
+                bookmarks.add(atts.getValue("", "internal-destination"));
+            }
+
+            if (sequence != null) {
+                String id = atts.getValue("", "id");
+                if (id != null) {
+                    sequence.ids.add(id);
+                }
+
+                if (isFo(uri, localName, "page-number-citation")) {
+                    sequence.citations.add(atts.getValue("", "ref-id"));
+                } else if (isFo(uri, localName, "page-number-citation-last")) {
+                    sequence.lastCitations.add(atts.getValue("", "ref-id"));
+                } else if (isFo(uri, localName, "basic-link") && atts.getValue("", "internal-destination") != null) {
+                    sequence.links.add(atts.getValue("", "internal-destination"));
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (depth == 2) {
+                sequence = null;
+                inBookmarkTree = false;
+            }
+            depth--;
+        }
+    }
+
+    /**
+     * Write the events of the aggregated document to the handlers of the chunks.
+     */
+    private static final class ChunkWriter extends DefaultHandler {
+        private final List<ContentHandler> handlers;
+
+        private final int[] chunkOfSequence;
+
+        private final int[] chunkOfBookmark;
+
+        private final String[] forcePageCounts;
+
+        private final List<Set<String>> links;
+
+        private final List<Set<String>> destinations;
+
+        private final List<Set<String>> resources;
+
+        /** The handlers of the open elements. */
+        private final Deque<List<ContentHandler>> targets = new ArrayDeque<>();
+
+        /** The prefix mappings of the next element. */
+        private final List<String[]> prefixMappings = new ArrayList<>();
+
+        /** The handlers of the last closed element, for its prefix mappings. */
+        private List<ContentHandler> closed = Collections.emptyList();
+
+        private int depth;
+
+        private int sequence = -1;
+
+        private int bookmark = -1;
+
+        private boolean inSequence;
+
+        private boolean inBookmarkTree;
+
+        ChunkWriter(
+                ContentHandler[] handlers,
+                int[] chunkOfSequence,
+                int[] chunkOfBookmark,
+                String[] forcePageCounts,
+                List<Set<String>> links,
+                List<Set<String>> destinations,
+                List<Set<String>> resources) {
+            List<ContentHandler> list = new ArrayList<>();
+            Collections.addAll(list, handlers);
+            this.handlers = Collections.unmodifiableList(list);
+            this.chunkOfSequence = chunkOfSequence;
+            this.chunkOfBookmark = chunkOfBookmark;
+            this.forcePageCounts = forcePageCounts;
+            this.links = links;
+            this.destinations = destinations;
+            this.resources = resources;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            for (ContentHandler handler : handlers) {
+                handler.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            for (ContentHandler handler : handlers) {
+                handler.endDocument();
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            prefixMappings.add(new String[] {prefix, uri});
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            for (ContentHandler handler : closed) {
+                handler.endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            depth++;
+
+            List<ContentHandler> to;
+            Attributes attributes = atts;
+            if (depth == 1) {
+                to = handlers;
+            } else if (depth == 2 && isFo(uri, localName, "page-sequence")) {
+                if (sequence < 0) {
+                    writeDestinations();
+                }
+                sequence++;
+                inSequence = true;
+                to = Collections.singletonList(handlers.get(chunkOfSequence[sequence]));
+                if (forcePageCounts[sequence] != null) {
+                    attributes = setAttribute(atts, "force-page-count", forcePageCounts[sequence]);
+                }
+            } else if (depth == 2 && isFo(uri, localName, "bookmark-tree")) {
+                inBookmarkTree = true;
+                Set<ContentHandler> bookmarked = new LinkedHashSet<>();
+                for (int chunk : chunkOfBookmark) {
+                    bookmarked.add(handlers.get(chunk));
+                }
+                to = new ArrayList<>(bookmarked);
+            } else if (depth == 2) {
+                to = handlers;
+            } else if (depth == 3 && inBookmarkTree && isFo(uri, localName, "bookmark")) {
+                bookmark++;
+                to = Collections.singletonList(handlers.get(chunkOfBookmark[bookmark]));
+            } else {
+                to = targets.peek();
+            }
+
+            if (inSequence) {
+                for (String name : ResourceUriResolvingFilter.URI_ATTRIBUTES) {
+                    String resource = atts.getValue("", name);
+                    if (resource != null) {
+                        resources.get(chunkOfSequence[sequence]).add(resource);
+                    }
+                }
+            }
+
+            if (inSequence && isFo(uri, localName, "basic-link")) {
+                String id = atts.getValue("", "internal-destination");
+                if (id != null && links.get(chunkOfSequence[sequence]).contains(id)) {
+                    AttributesImpl link = new AttributesImpl(atts);
+                    link.removeAttribute(link.getIndex("", "internal-destination"));
+                    attributes = setAttribute(link, "external-destination", getLinkDestination(id));
+                }
+            }
+
+            for (ContentHandler handler : to) {
+                for (String[] mapping : prefixMappings) {
+                    handler.startPrefixMapping(mapping[0], mapping[1]);
+                }
+                handler.startElement(uri, localName, qName, attributes);
+            }
+            prefixMappings.clear();
+            targets.push(to);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            closed = targets.pop();
+            for (ContentHandler handler : closed) {
+                handler.endElement(uri, localName, qName);
+            }
+
+            if (depth == 2) {
+                inSequence = false;
+                inBookmarkTree = false;
+            }
+            depth--;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (!targets.isEmpty()) {
+                for (ContentHandler handler : targets.peek()) {
+                    handler.characters(ch, start, length);
+                }
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            if (!targets.isEmpty()) {
+                for (ContentHandler handler : targets.peek()) {
+                    handler.processingInstruction(target, data);
+                }
+            }
+        }
+
+        /**
+         * Write a <code>fox:destination</code> for each id of a chunk referenced by another chunk.
+         *
+         * @throws SAXException if any
+         */
+        private void writeDestinations() throws SAXException {
+            for (int chunk = 0; chunk < handlers.size(); chunk++) {
+                ContentHandler handler = handlers.get(chunk);
+                for (String id : destinations.get(chunk)) {
+                    AttributesImpl atts = new AttributesImpl();
+                    atts.addAttribute("", "internal-destination", "internal-destination", "CDATA", id);
+
+                    handler.startPrefixMapping("fox", FOX_NAMESPACE);
+                    handler.startElement(FOX_NAMESPACE, "destination", "fox:destination", atts);
+                    handler.endElement(FOX_NAMESPACE, "destination", "fox:destination");
+                    handler.endPrefixMapping("fox");
+                }
+            }
+        }
+    }
+
+    /**
+     * @param atts not null
+     * @param name the local name of an attribute without namespace
+     * @param value not null
+     * @return the attributes with the given attribute added or replaced
+     */
+    private static AttributesImpl setAttribute(Attributes atts, String name, String value) {
+        AttributesImpl attributes = new AttributesImpl(atts);
+        int index = attributes.getIndex("", name);
+        if (index < 0) {
+            attributes.addAttribute("", name, name, "CDATA", value);
+        } else {
+            attributes.setValue(index, value);
+        }
+        return attributes;
+    }
+
+    /**
+     * A SAX filter setting the page numbers of a chunk at layout time: the initial page number of its first page
+     * sequence, and the page number citations of the other chunks that are replaced by their value.
+     */
+    static class ChunkFilter extends XMLFilterImpl {
+        private final Integer initialPageNumber;
+
+        private final Map<String, String> citations;
+
+        private boolean firstSequence = true;
+
+        private boolean inCitation;
+
+        /**
+         * @param initialPageNumber the initial page number of the first page sequence, may be null to keep it.
+         * @param citations the page numbers to write instead of the citations of these ids, not null.
+         */
+        ChunkFilter(Integer initialPageNumber, Map<String, String> citations) {
+            this.initialPageNumber = initialPageNumber;
+            this.citations = citations;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if (firstSequence && isFo(uri, localName, "page-sequence")) {
+                firstSequence = false;
+                if (initialPageNumber != null) {
+                    atts = setAttribute(atts, "initial-page-number", initialPageNumber.toString());
+                }
+            } else if (isFo(uri, localName, "page-number-citation")
+                    && citations.containsKey(atts.getValue("", "ref-id"))) {
+                String pageNumber = citations.get(atts.getValue("", "ref-id"));
+
+                AttributesImpl inline = new AttributesImpl(atts);
+                inline.removeAttribute(inline.getIndex("", "ref-id"));
+                String inlineName =
+                        qName.contains(":") ? qName.substring(0, qName.indexOf(':') + 1) + "inline" : "inline";
+                super.startElement(uri, "inline", inlineName, inline);
+                super.characters(pageNumber.toCharArray(), 0, pageNumber.length());
+                super.endElement(uri, "inline", inlineName);
+                inCitation = true;
+                return;
+            }
+
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (inCitation) {
+                // a citation is empty
+                inCitation = false;
+                return;
+            }
+
+            super.endElement(uri, localName, qName);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+
+/**
+ * A font file registered with FOP, with the font triplet used to reference it from the FO.
+ *
+ * @since 1.6.2
+ */
+public class Font {
+    /** The TrueType, OpenType or Type 1 font file. */
+    private File file;
+
+    /** The font family name. */
+    private String family;
+
+    /** The font style, <code>normal</code> or <code>italic</code>. */
+    private String style = "normal";
+
+    /** The font weight, <code>normal</code>, <code>bold</code> or a value from 100 to 900. */
+    private String weight = "normal";
+
+    /** Whether to use the kerning information of the font. */
+    private boolean kerning = true;
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    public String getFamily() {
+        return family;
+    }
+
+    public void setFamily(String family) {
+        this.family = family;
+    }
+
+    public String getStyle() {
+        return style;
+    }
+
+    public void setStyle(String style) {
+        this.style = style;
+    }
+
+    public String getWeight() {
+        return weight;
+    }
+
+    public void setWeight(String weight) {
+        this.weight = weight;
+    }
+
+    public boolean isKerning() {
+        return kerning;
+    }
+
+    public void setKerning(boolean kerning) {
+        this.kerning = kerning;
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return family + " (" + style + ", " + weight + "): " + file;
+    }
+}
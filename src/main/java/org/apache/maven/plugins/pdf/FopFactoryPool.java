@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.fop.apps.FopConfParser;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+import org.xml.sax.SAXException;
+
+/**
+ * The FOP factories of a build session, by FOP configuration.
+ * <br>
+ * A FopFactory holds the expensive FOP environment: font metrics, hyphenation patterns and images, see
+ * also {@link DecodedImageCache}. It is thread-safe, so one factory per configuration is shared by all
+ * locales and all modules of the build, including parallel builds. Relative resources are not resolved against the base URI of the factory
+ * but against the FO file, see {@link FopPdfRenderer}.
+ *
+ * @since 1.6.2
+ */
+public class FopFactoryPool {
+    /**
+     * The key of the pool in the session data. The class is used as key, so that different versions
+     * of the plugin in one build do not share their FOP classes.
+     */
+    private static final Object KEY = FopFactoryPool.class;
+
+    /**
+     * The base URI of the created factories.
+     */
+    private final URI baseURI;
+
+    /**
+     * The created factories, by configuration.
+     */
+    private final ConcurrentMap<String, FopFactory> factories = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseDirectory the base directory of the created factories, not null.
+     */
+    public FopFactoryPool(File baseDirectory) {
+        this.baseURI = baseDirectory.getAbsoluteFile().toURI();
+    }
+
+    /**
+     * Get the pool of the build session, creating it if needed.
+     *
+     * @param session the current build session, not null.
+     * @return the pool shared by all executions of the session.
+     */
+    public static FopFactoryPool getInstance(MavenSession session) {
+        SessionData data = session.getRepositorySession().getData();
+
+        FopFactoryPool pool = (FopFactoryPool) data.get(KEY);
+        while (pool == null) {
+            File baseDirectory = session.getExecutionRootDirectory() == null
+                    ? new File("")
+                    : new File(session.getExecutionRootDirectory());
+            data.set(KEY, null, new FopFactoryPool(baseDirectory));
+            pool = (FopFactoryPool) data.get(KEY);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Get the factory for a configuration, creating it on first use.
+     *
+     * @param fonts the fonts to register, not null.
+     * @param fontCacheFile the FOP font cache file, may be null to use the FOP default one. A factory keeps
+     * using the font cache file it was created with, i.e. the one of the first execution with this configuration.
+     * @param decodedImageCacheSize the maximum size in bytes of the decoded images kept in memory,
+     * <code>0</code> to only use the FOP image cache.
+     * @return the shared factory for this configuration, not null.
+     * @throws IOException if any
+     * @throws SAXException if the generated configuration could not be parsed
+     */
+    public FopFactory getFopFactory(List<Font> fonts, File fontCacheFile, long decodedImageCacheSize)
+            throws IOException, SAXException {
+        String configuration = FopPdfRenderer.getFopConfiguration(fonts);
+        // not the font cache file: it only keeps the metrics of the same fonts, and defaults to one per module
+        String key = configuration + ' ' + decodedImageCacheSize;
+
+        FopFactory factory = factories.get(key);
+        if (factory == null) {
+            synchronized (factories) {
+                factory = factories.get(key);
+                if (factory == null) {
+                    factory =
+                            newFopFactory(fonts.isEmpty() ? null : configuration, fontCacheFile, decodedImageCacheSize);
+                    factories.put(key, factory);
+                }
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Create a FopFactory with the given configuration and font cache.
+     *
+     * @param configuration the FOP configuration, may be null to use the FOP defaults.
+     * @param fontCacheFile the FOP font cache file, may be null to use the FOP default one.
+     * @param decodedImageCacheSize the maximum size in bytes of the decoded images kept in memory,
+     * <code>0</code> to only use the FOP image cache.
+     * @return a new FopFactory
+     * @throws IOException if any
+     * @throws SAXException if the configuration could not be parsed
+     */
+    private FopFactory newFopFactory(String configuration, File fontCacheFile, long decodedImageCacheSize)
+            throws IOException, SAXException {
+        FopFactoryBuilder builder;
+        if (configuration == null) {
+            builder = new FopFactoryBuilder(baseURI);
+        } else {
+            byte[] bytes = configuration.getBytes(StandardCharsets.UTF_8);
+            builder = new FopConfParser(new ByteArrayInputStream(bytes), baseURI).getFopFactoryBuilder();
+        }
+
+        if (fontCacheFile != null) {
+            fontCacheFile.getAbsoluteFile().getParentFile().mkdirs();
+            builder.getFontManager().setCacheFile(fontCacheFile.toURI());
+        }
+
+        if (decodedImageCacheSize > 0) {
+            return DecodedImageCache.newFopFactory(builder, new DecodedImageCache(decodedImageCacheSize));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,883 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.maven.doxia.docrenderer.DocumentRendererContext;
+import org.apache.maven.doxia.docrenderer.DocumentRendererException;
+import org.apache.maven.doxia.docrenderer.pdf.fo.FoPdfRenderer;
+import org.apache.maven.doxia.document.DocumentModel;
+import org.apache.maven.doxia.document.DocumentTOCItem;
+import org.apache.maven.doxia.logging.PlexusLoggerWrapper;
+import org.apache.maven.doxia.module.fo.FoAggregateSink;
+import org.apache.maven.doxia.module.fo.FoSink;
+import org.apache.maven.doxia.module.fo.FoSinkFactory;
+import org.apache.maven.doxia.parser.ParseException;
+import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
+import org.apache.maven.doxia.parser.module.ParserModule;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.util.XmlValidator;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
+import org.codehaus.plexus.util.xml.XMLWriter;
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * The FO renderer of the PDF plugin. It renders the Doxia sources like the Doxia FO renderer, but converts
+ * the FO to PDF with a FOP instance configured by the plugin: fonts are registered explicitly instead of
+ * being detected, and their metrics are kept in a persistent font cache.
+ *
+ * @since 1.6.2
+ */
+public class FopPdfRenderer extends FoPdfRenderer {
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    /**
+     * The size in characters of the pipe between the FO sink and FOP.
+     */
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    /**
+     * The FOP font cache file, <code>null</code> to use the FOP default one.
+     */
+    private File fontCacheFile;
+
+    /**
+     * The fonts to register.
+     */
+    private List<Font> fonts = Collections.emptyList();
+
+    /**
+     * The maximum size in bytes of the decoded images kept in memory, <code>0</code> to disable.
+     */
+    private long decodedImageCacheSize;
+
+    /**
+     * The FOP factories to use, by default owned by this renderer.
+     */
+    private FopFactoryPool fopFactoryPool;
+
+    /**
+     * The number of chapters of an aggregated document laid out in parallel, <code>1</code> to render it in one pass.
+     */
+    private int renderThreads = 1;
+
+    /**
+     * Reuse the chapters of an aggregated document laid out by a previous build, when they did not change.
+     */
+    private boolean incrementalRendering;
+
+    /**
+     * Stream the aggregated FO document to FOP while it is written, instead of writing it to a file first.
+     */
+    private boolean streamFo;
+
+    /**
+     * Let FOP keep the pages with unresolved references on disk instead of in memory.
+     */
+    private boolean conserveMemory;
+
+    /**
+     * The number of top-level sections of a document per page sequence, <code>0</code> for one page sequence
+     * per document.
+     */
+    private int sectionsPerPageSequence;
+
+    /**
+     * The cache of the sink events of the parsed documents.
+     */
+    private SinkEventCache sinkEventCache = new SinkEventCache(null);
+
+    /**
+     * The compiled Velocity templates of the execution.
+     */
+    private final VelocityTemplates velocityTemplates = new VelocityTemplates();
+
+    /**
+     * The validator of the XML documents, <code>null</code> to let Doxia validate them.
+     */
+    private DocumentValidator documentValidator;
+
+    /**
+     * The documents of the current rendering already validated.
+     */
+    private final Set<File> validatedDocuments = new HashSet<>();
+
+    /**
+     * @param fontCacheFile the FOP font cache file, may be null to use the FOP default one.
+     */
+    public void setFontCacheFile(File fontCacheFile) {
+        this.fontCacheFile = fontCacheFile;
+    }
+
+    /**
+     * @param fonts the fonts to register, may be null.
+     */
+    public void setFonts(List<Font> fonts) {
+        this.fonts = fonts == null ? Collections.<Font>emptyList() : fonts;
+    }
+
+    /**
+     * @param decodedImageCacheSize the maximum size in bytes of the decoded images kept in memory,
+     * <code>0</code> to only use the FOP image cache.
+     */
+    public void setDecodedImageCacheSize(long decodedImageCacheSize) {
+        this.decodedImageCacheSize = decodedImageCacheSize;
+    }
+
+    /**
+     * @param fopFactoryPool the FOP factories to share, may be null to create them for this renderer only.
+     */
+    public void setFopFactoryPool(FopFactoryPool fopFactoryPool) {
+        this.fopFactoryPool = fopFactoryPool;
+    }
+
+    /**
+     * @param renderThreads the number of chapters of an aggregated document laid out in parallel,
+     * <code>1</code> to render it in one pass.
+     */
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
+    /**
+     * @param incrementalRendering <code>true</code> to reuse the chapters of an aggregated document laid out
+     * by a previous build, when they did not change.
+     */
+    public void setIncrementalRendering(boolean incrementalRendering) {
+        this.incrementalRendering = incrementalRendering;
+    }
+
+    /**
+     * @param streamFo <code>true</code> to stream the aggregated FO document to FOP while it is written,
+     * instead of writing it to a file first. Not used when the chapters are laid out separately.
+     */
+    public void setStreamFo(boolean streamFo) {
+        this.streamFo = streamFo;
+    }
+
+    /**
+     * @param conserveMemory <code>true</code> to let FOP keep the pages with unresolved references on disk
+     * instead of in memory.
+     */
+    public void setConserveMemory(boolean conserveMemory) {
+        this.conserveMemory = conserveMemory;
+    }
+
+    /**
+     * @param sectionsPerPageSequence the number of top-level sections of a document per page sequence,
+     * <code>0</code> for one page sequence per document.
+     */
+    public void setSectionsPerPageSequence(int sectionsPerPageSequence) {
+        this.sectionsPerPageSequence = sectionsPerPageSequence;
+    }
+
+    /**
+     * @param sinkEventCache the cache of the sink events of the parsed documents, may be null to parse them
+     * each time.
+     */
+    void setSinkEventCache(SinkEventCache sinkEventCache) {
+        this.sinkEventCache = sinkEventCache == null ? new SinkEventCache(null) : sinkEventCache;
+    }
+
+    /**
+     * @param documentValidator the validator of the XML documents, may be null to let Doxia validate them.
+     */
+    void setDocumentValidator(DocumentValidator documentValidator) {
+        this.documentValidator = documentValidator;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void generatePdf(File inputFile, File pdfFile) throws DocumentRendererException {
+        generatePdf(inputFile, pdfFile, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void render(
+            Map<String, ParserModule> filesToProcess,
+            File outputDirectory,
+            DocumentModel documentModel,
+            DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        // copy resources, images, etc.
+        copyResources(outputDirectory);
+        validateDocuments(filesToProcess, context);
+
+        if (documentModel == null) {
+            getLogger().debug("No document model, generating all documents individually.");
+
+            renderIndividual(filesToProcess, outputDirectory, context);
+            return;
+        }
+
+        String outputName = getOutputName(documentModel);
+
+        File outputFOFile = new File(outputDirectory, outputName + ".fo");
+        outputFOFile.getParentFile().mkdirs();
+
+        File pdfOutputFile = new File(outputDirectory, outputName + ".pdf");
+        pdfOutputFile.getParentFile().mkdirs();
+
+        boolean chunked = renderThreads > 1 || incrementalRendering;
+        if (streamFo && !chunked) {
+            // not a stale document of a previous build
+            outputFOFile.delete();
+            streamPdf(filesToProcess, outputDirectory, documentModel, context, outputFOFile, pdfOutputFile);
+            return;
+        }
+
+        try (Writer writer = WriterFactory.newXmlWriter(outputFOFile)) {
+            writeAggregatedFo(writer, filesToProcess, outputDirectory, documentModel, context);
+        }
+
+        if (chunked && generateChunkedPdf(outputFOFile, pdfOutputFile, documentModel)) {
+            return;
+        }
+
+        generatePdf(outputFOFile, pdfOutputFile, documentModel);
+    }
+
+    /**
+     * Write the aggregated FO document of the given document model.
+     *
+     * @param writer the writer of the FO document, not null.
+     * @param filesToProcess the Doxia sources, not null.
+     * @param outputDirectory the output directory, not null.
+     * @param documentModel the document model, not null.
+     * @param context the render context, may be null.
+     * @throws DocumentRendererException if a source could not be rendered
+     * @throws IOException if any
+     */
+    private void writeAggregatedFo(
+            Writer writer,
+            Map<String, ParserModule> filesToProcess,
+            File outputDirectory,
+            DocumentModel documentModel,
+            DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        FoAggregateSink sink = sectionsPerPageSequence > 0
+                ? new SectionPageSequenceSink(writer, sectionsPerPageSequence)
+                : new FoAggregateSink(writer);
+
+        File fOConfigFile = new File(outputDirectory, "pdf-config.xml");
+        if (fOConfigFile.exists()) {
+            sink.load(fOConfigFile);
+            getLogger().debug("Loaded pdf config file: " + fOConfigFile.getAbsolutePath());
+        }
+
+        String generateTOC = (context != null && context.get("generateTOC") != null)
+                ? context.get("generateTOC").toString().trim()
+                : "start";
+        int tocPosition;
+        if ("start".equalsIgnoreCase(generateTOC)) {
+            tocPosition = FoAggregateSink.TOC_START;
+        } else if ("end".equalsIgnoreCase(generateTOC)) {
+            tocPosition = FoAggregateSink.TOC_END;
+        } else {
+            tocPosition = FoAggregateSink.TOC_NONE;
+        }
+
+        sink.setDocumentModel(documentModel, tocPosition);
+        sink.beginDocument();
+        sink.coverPage();
+
+        if (tocPosition == FoAggregateSink.TOC_START) {
+            sink.toc();
+        }
+
+        if (documentModel.getToc() == null || documentModel.getToc().getItems() == null) {
+            getLogger().info("No TOC is defined in the document descriptor. Merging all documents.");
+
+            mergeAllSources(filesToProcess, sink, context);
+        } else {
+            getLogger().debug("Using TOC defined in the document descriptor.");
+
+            parseTocItems(documentModel.getToc().getItems(), sink, context);
+        }
+
+        if (tocPosition == FoAggregateSink.TOC_END) {
+            sink.toc();
+        }
+
+        sink.endDocument();
+    }
+
+    /**
+     * Render the aggregated FO document of the given document model to PDF while it is written, without
+     * writing it to a file: the Doxia sources are parsed in the calling thread while FOP lays out
+     * the FO document in another one.
+     *
+     * @param filesToProcess the Doxia sources, not null.
+     * @param outputDirectory the output directory, not null.
+     * @param documentModel the document model, not null.
+     * @param context the render context, may be null.
+     * @param foFile the FO file that would have been written, to resolve its resources, not null.
+     * @param pdfFile the target PDF file, not null.
+     * @throws DocumentRendererException if any
+     * @throws IOException if any
+     */
+    private void streamPdf(
+            Map<String, ParserModule> filesToProcess,
+            File outputDirectory,
+            final DocumentModel documentModel,
+            DocumentRendererContext context,
+            final File foFile,
+            final File pdfFile)
+            throws DocumentRendererException, IOException {
+        final PipedReader reader = new PipedReader(PIPE_SIZE);
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        // set before the pipe is closed, the rendering not being done yet when the writer sees it closed
+        final AtomicBoolean renderingFailed = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Void> rendering;
+            try (Writer writer = new PipedWriter(reader)) {
+                rendering = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Thread.currentThread().setContextClassLoader(classLoader);
+                        try {
+                            generatePdf(
+                                    new StreamSource(reader, foFile.toURI().toString()),
+                                    foFile,
+                                    pdfFile,
+                                    documentModel);
+                        } catch (Throwable e) {
+                            renderingFailed.set(true);
+                            throw e;
+                        } finally {
+                            // unblock the writer if FOP stopped reading
+                            reader.close();
+                        }
+                        return null;
+                    }
+                });
+
+                try {
+                    writeAggregatedFo(writer, filesToProcess, outputDirectory, documentModel, context);
+                } catch (IOException | DocumentRendererException | RuntimeException e) {
+                    boolean fopFailed = renderingFailed.get();
+                    writer.close();
+                    try {
+                        waitFor(rendering);
+                    } catch (DocumentRendererException fopError) {
+                        if (fopFailed) {
+                            // FOP closed the pipe: its error is the one to report
+                            fopError.addSuppressed(e);
+                            throw fopError;
+                        }
+                        // FOP fails on the truncated document: the source error is the one to report
+                        e.addSuppressed(fopError);
+                    }
+                    throw e;
+                }
+            }
+
+            waitFor(rendering);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param rendering the rendering of a streamed FO document, not null.
+     * @throws DocumentRendererException if the rendering failed
+     */
+    private static void waitFor(Future<Void> rendering) throws DocumentRendererException {
+        try {
+            rendering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentRendererException("Interrupted while creating PDF", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DocumentRendererException) {
+                throw (DocumentRendererException) e.getCause();
+            }
+            throw new DocumentRendererException(
+                    "Error creating PDF: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderIndividual(
+            Map<String, ParserModule> filesToProcess, File outputDirectory, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        for (Map.Entry<String, ParserModule> entry : filesToProcess.entrySet()) {
+            String key = entry.getKey();
+            ParserModule module = entry.getValue();
+            File fullDoc = new File(getBaseDir(), module.getSourceDirectory() + File.separator + key);
+
+            String output = key;
+            for (String extension : module.getExtensions()) {
+                String lowerCaseExtension = extension.toLowerCase(Locale.ENGLISH);
+                if (output.toLowerCase(Locale.ENGLISH).contains("." + lowerCaseExtension)) {
+                    output = output.substring(
+                            0, output.toLowerCase(Locale.ENGLISH).indexOf("." + lowerCaseExtension));
+                }
+            }
+
+            File outputFOFile = new File(outputDirectory, output + ".fo");
+            outputFOFile.getParentFile().mkdirs();
+
+            File pdfOutputFile = new File(outputDirectory, output + ".pdf");
+            pdfOutputFile.getParentFile().mkdirs();
+
+            FoSink sink = (FoSink) new FoSinkFactory().createSink(outputFOFile.getParentFile(), outputFOFile.getName());
+            sink.beginDocument();
+            parse(fullDoc.getAbsolutePath(), module.getParserId(), sink, context);
+            sink.endDocument();
+
+            generatePdf(outputFOFile, pdfOutputFile, null);
+        }
+    }
+
+    /**
+     * Validate the XML documents to render in parallel, without network access, instead of validating each one
+     * when it is parsed. The Velocity templates are validated once evaluated.
+     *
+     * @param filesToProcess the Doxia sources, not null.
+     * @param context the render context, may be null.
+     * @throws DocumentRendererException if a document is not valid
+     * @throws IOException if any
+     */
+    private void validateDocuments(Map<String, ParserModule> filesToProcess, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        validatedDocuments.clear();
+        if (documentValidator == null || context == null || !Boolean.TRUE.equals(context.get("validate"))) {
+            return;
+        }
+
+        List<File> documents = new ArrayList<>();
+        for (Map.Entry<String, ParserModule> entry : filesToProcess.entrySet()) {
+            ParserModule module = entry.getValue();
+            File fullDoc = new File(getBaseDir(), module.getSourceDirectory() + File.separator + entry.getKey());
+            if (!isVelocityFile(fullDoc.getPath())
+                    && getParser(module.getParserId(), fullDoc.getPath()).getType() == Parser.XML_TYPE) {
+                documents.add(fullDoc);
+            }
+        }
+
+        try {
+            documentValidator.validate(documents, Runtime.getRuntime().availableProcessors());
+        } catch (ParseException e) {
+            throw new DocumentRendererException("Error validating Doxia source: " + e.getMessage(), e);
+        }
+        validatedDocuments.addAll(documents);
+    }
+
+    /**
+     * Replay the cached sink events of the document if it did not change, else parse it and record them.
+     * Velocity templates are evaluated first, their output depending on the context.
+     */
+    @Override
+    protected void parse(String fullDocPath, String parserId, Sink sink, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        File source = new File(fullDocPath);
+        boolean validate = context != null && Boolean.TRUE.equals(context.get("validate"));
+        if (isVelocityFile(fullDocPath)) {
+            parseVelocity(source, parserId, sink, context, validate);
+            return;
+        }
+
+        // validated with the other documents before rendering
+        boolean validated = validate && validatedDocuments.contains(source);
+        Parser parser = getParser(parserId, fullDocPath);
+        String key = sinkEventCache.getKey(
+                source,
+                parser,
+                (parser.getType() == Parser.XML_TYPE ? "xml" : context == null ? null : context.getInputEncoding())
+                        + (validate && !validated ? " validate" : ""));
+
+        if (key != null && sinkEventCache.replay(key, sink)) {
+            getLogger().debug("Replayed the cached sink events of " + fullDocPath);
+            return;
+        }
+
+        SinkEventCache.Recorder recorder = key == null ? null : new SinkEventCache.Recorder(sink);
+        if (validated) {
+            context.put("validate", Boolean.FALSE);
+        }
+        try {
+            super.parse(fullDocPath, parserId, recorder == null ? sink : recorder.getSink(), context);
+        } finally {
+            if (validated) {
+                context.put("validate", Boolean.TRUE);
+            }
+        }
+        if (recorder != null) {
+            sinkEventCache.put(key, recorder);
+        }
+    }
+
+    /**
+     * Evaluate a Velocity template, compiled once for all locales, like Doxia, then parse its output or replay
+     * the cached sink events of the same output.
+     */
+    private void parseVelocity(
+            File source, String parserId, Sink sink, DocumentRendererContext context, boolean validate)
+            throws DocumentRendererException, IOException {
+        Parser parser = getParser(parserId, source.getPath());
+        boolean xml = parser.getType() == Parser.XML_TYPE;
+        String encoding = context == null ? null : context.getInputEncoding();
+        if (xml) {
+            try (XmlStreamReader reader = ReaderFactory.newXmlReader(source)) {
+                encoding = reader.getEncoding();
+            }
+        }
+        String content = velocityTemplates.merge(source, encoding, context);
+
+        try {
+            if (xml && validate && documentValidator != null) {
+                documentValidator.validate(content, source.toURI().toString());
+            } else if (xml && validate) {
+                new XmlValidator(new PlexusLoggerWrapper(getLogger())).validate(content);
+            }
+
+            String key = sinkEventCache.getKey(content.getBytes(StandardCharsets.UTF_8), parser, "velocity");
+            if (key != null && sinkEventCache.replay(key, sink)) {
+                getLogger().debug("Replayed the cached sink events of " + source);
+                return;
+            }
+
+            SinkEventCache.Recorder recorder = key == null ? null : new SinkEventCache.Recorder(sink);
+            Sink target = recorder == null ? sink : recorder.getSink();
+            target.enableLogging(new PlexusLoggerWrapper(getLogger()));
+            try {
+                doxia.parse(new StringReader(content), parserId, target);
+            } finally {
+                target.flush();
+            }
+            if (recorder != null) {
+                sinkEventCache.put(key, recorder);
+            }
+        } catch (ParserNotFoundException e) {
+            throw new DocumentRendererException(
+                    "No parser '" + parserId + "' found for " + source + ": " + e.getMessage(), e);
+        } catch (ParseException e) {
+            throw new DocumentRendererException("Error parsing " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isVelocityFile(String fullDocPath) {
+        return "vm".equals(FileUtils.getExtension(fullDocPath).toLowerCase(Locale.ENGLISH));
+    }
+
+    private Parser getParser(String parserId, String fullDocPath) throws DocumentRendererException {
+        try {
+            return doxia.getParser(parserId);
+        } catch (ParserNotFoundException e) {
+            throw new DocumentRendererException("No parser '" + parserId + "' found for " + fullDocPath, e);
+        }
+    }
+
+    private void mergeAllSources(
+            Map<String, ParserModule> filesToProcess, FoAggregateSink sink, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        for (Map.Entry<String, ParserModule> entry : filesToProcess.entrySet()) {
+            String key = entry.getKey();
+            ParserModule module = entry.getValue();
+            sink.setDocumentName(key);
+            File fullDoc = new File(getBaseDir(), module.getSourceDirectory() + File.separator + key);
+
+            parse(fullDoc.getAbsolutePath(), module.getParserId(), sink, context);
+        }
+    }
+
+    private void parseTocItems(List<DocumentTOCItem> items, FoAggregateSink sink, DocumentRendererContext context)
+            throws IOException, DocumentRendererException {
+        for (DocumentTOCItem tocItem : items) {
+            if (tocItem.getRef() == null) {
+                if (getLogger().isInfoEnabled()) {
+                    getLogger().info("No ref defined for tocItem " + tocItem.getName());
+                }
+
+                continue;
+            }
+
+            String href = StringUtils.replace(tocItem.getRef(), "\\", "/");
+            if (href.lastIndexOf('.') != -1) {
+                href = href.substring(0, href.lastIndexOf('.'));
+            }
+
+            renderModules(href, sink, tocItem, context);
+
+            if (tocItem.getItems() != null) {
+                parseTocItems(tocItem.getItems(), sink, context);
+            }
+        }
+    }
+
+    private void renderModules(
+            String href, FoAggregateSink sink, DocumentTOCItem tocItem, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        for (ParserModule module : parserModuleManager.getParserModules()) {
+            File moduleBasedir = new File(getBaseDir(), module.getSourceDirectory());
+
+            if (!moduleBasedir.exists()) {
+                continue;
+            }
+
+            for (String extension : module.getExtensions()) {
+                String doc = href + "." + extension;
+                File source = new File(moduleBasedir, doc);
+
+                // velocity file?
+                if (!source.exists()) {
+                    if (href.contains("." + extension)) {
+                        doc = href + ".vm";
+                    } else {
+                        doc = href + "." + extension + ".vm";
+                    }
+                    source = new File(moduleBasedir, doc);
+                }
+
+                if (source.exists()) {
+                    sink.setDocumentName(doc);
+                    sink.setDocumentTitle(tocItem.getName());
+
+                    parse(source.getPath(), module.getParserId(), sink, context);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert an FO file to PDF with FOP.
+     *
+     * @param inputFile the FO file, not null.
+     * @param pdfFile the target PDF file, not null.
+     * @param documentModel the document model to take the PDF meta data from, may be null.
+     * @throws DocumentRendererException if any
+     */
+    private void generatePdf(File inputFile, File pdfFile, DocumentModel documentModel)
+            throws DocumentRendererException {
+        generatePdf(new StreamSource(inputFile), inputFile, pdfFile, documentModel);
+    }
+
+    /**
+     * Convert an FO document to PDF with FOP.
+     *
+     * @param source the FO document, not null.
+     * @param inputFile the FO file, to resolve the resources of the document, not null.
+     * @param pdfFile the target PDF file, not null.
+     * @param documentModel the document model to take the PDF meta data from, may be null.
+     * @throws DocumentRendererException if any
+     */
+    private void generatePdf(Source source, File inputFile, File pdfFile, DocumentModel documentModel)
+            throws DocumentRendererException {
+        if (getLogger().isDebugEnabled()) {
+            getLogger().debug("Generating: " + pdfFile);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(pdfFile.toPath()))) {
+            FopFactory fopFactory = getFopFactoryPool().getFopFactory(fonts, fontCacheFile, decodedImageCacheSize);
+
+            FOUserAgent userAgent = fopFactory.newFOUserAgent();
+            prepareUserAgent(userAgent, documentModel);
+            userAgent.setConserveMemoryPolicy(conserveMemory);
+
+            Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
+
+            // the factory is shared, so resolve the resources against the FO file instead of the factory base
+            ResourceUriResolvingFilter filter = new ResourceUriResolvingFilter(
+                    inputFile.getAbsoluteFile().getParentFile().toURI());
+            filter.setContentHandler(fop.getDefaultHandler());
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(source, new SAXResult(filter));
+        } catch (TransformerException e) {
+            if (e.getCause() instanceof SAXParseException) {
+                SAXParseException sax = (SAXParseException) e.getCause();
+
+                throw new DocumentRendererException("Error creating PDF from " + inputFile.getAbsolutePath() + ":"
+                        + sax.getLineNumber() + ":" + sax.getColumnNumber() + "\n" + e.getMessage());
+            }
+
+            throw new DocumentRendererException("Error creating PDF from " + inputFile + ": " + e.getMessage());
+        } catch (IOException | SAXException e) {
+            throw new DocumentRendererException("Error creating PDF from " + inputFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convert an aggregated FO file to PDF with FOP, laying out its chapters in parallel or incrementally.
+     *
+     * @param inputFile the FO file, not null.
+     * @param pdfFile the target PDF file, not null.
+     * @param documentModel the document model to take the PDF meta data from, may be null.
+     * @return <code>false</code> if the FO file could not be split into chapters.
+     * @throws DocumentRendererException if any
+     * @see ChunkedPdfRenderer
+     */
+    private boolean generateChunkedPdf(File inputFile, File pdfFile, DocumentModel documentModel)
+            throws DocumentRendererException {
+        FopFactory fopFactory;
+        String configuration;
+        try {
+            fopFactory = getFopFactoryPool().getFopFactory(fonts, fontCacheFile, decodedImageCacheSize);
+            configuration = getFopConfiguration(fonts);
+        } catch (IOException | SAXException e) {
+            throw new DocumentRendererException("Error creating PDF from " + inputFile + ": " + e.getMessage(), e);
+        }
+
+        String name = inputFile.getName().substring(0, inputFile.getName().lastIndexOf('.'));
+        File chunkDirectory = new File(inputFile.getParentFile(), name + "-chapters");
+
+        return new ChunkedPdfRenderer(
+                        fopFactory, configuration, documentModel, renderThreads, incrementalRendering, getLogger())
+                .render(inputFile, pdfFile, chunkDirectory);
+    }
+
+    /**
+     * @return the FOP factories to use, not null.
+     */
+    private synchronized FopFactoryPool getFopFactoryPool() {
+        if (fopFactoryPool == null) {
+            fopFactoryPool = new FopFactoryPool(new File(getBaseDir() == null ? "" : getBaseDir()));
+        }
+
+        return fopFactoryPool;
+    }
+
+    /**
+     * Write a FOP configuration registering the given fonts for the PDF output. Font auto-detection
+     * is not enabled, so that only these fonts are loaded.
+     *
+     * @param fonts the fonts to register, not null.
+     * @return the FOP configuration
+     * @throws FOPException if a font is not fully defined
+     */
+    static String getFopConfiguration(List<Font> fonts) throws FOPException {
+        StringWriter sw = new StringWriter();
+        XMLWriter w = new PrettyPrintXMLWriter(sw, "UTF-8", null);
+
+        w.startElement("fop");
+        w.addAttribute("version", "1.0");
+        w.startElement("renderers");
+        w.startElement("renderer");
+        w.addAttribute("mime", MimeConstants.MIME_PDF);
+        w.startElement("fonts");
+        for (Font font : fonts) {
+            if (font.getFile() == null || StringUtils.isEmpty(font.getFamily())) {
+                throw new FOPException("A font requires a file and a family: " + font);
+            }
+
+            w.startElement("font");
+            w.addAttribute("embed-url", font.getFile().getAbsoluteFile().toURI().toString());
+            w.addAttribute("kerning", font.isKerning() ? "yes" : "no");
+            w.startElement("font-triplet");
+            w.addAttribute("name", font.getFamily());
+            w.addAttribute("style", font.getStyle());
+            w.addAttribute("weight", font.getWeight());
+            w.endElement();
+            w.endElement();
+        }
+        w.endElement();
+        w.endElement();
+        w.endElement();
+        w.endElement();
+
+        return sw.toString();
+    }
+
+    /**
+     * Set the PDF meta data from the document model, see <code>FoUtils</code>.
+     *
+     * @param userAgent not null
+     * @param documentModel may be null
+     */
+    static void prepareUserAgent(FOUserAgent userAgent, DocumentModel documentModel) {
+        if (documentModel != null && documentModel.getMeta() != null) {
+            String authors = documentModel.getMeta().getAllAuthorNames();
+            if (StringUtils.isNotEmpty(authors)) {
+                userAgent.setAuthor(authors);
+            }
+            if (StringUtils.isNotEmpty(documentModel.getMeta().getTitle())) {
+                userAgent.setTitle(documentModel.getMeta().getTitle());
+            }
+            String keywords = documentModel.getMeta().getAllKeyWords();
+            if (StringUtils.isNotEmpty(keywords)) {
+                userAgent.setKeywords(keywords);
+            }
+            if (StringUtils.isNotEmpty(documentModel.getMeta().getCreator())) {
+                userAgent.setCreator(documentModel.getMeta().getCreator());
+            }
+            if (StringUtils.isNotEmpty(documentModel.getMeta().getGenerator())) {
+                userAgent.setProducer(documentModel.getMeta().getGenerator());
+            }
+            if (documentModel.getMeta().getCreationDate() != null) {
+                userAgent.setCreationDate(documentModel.getMeta().getCreationDate());
+            }
+        }
+
+        if (userAgent.getCreator() == null) {
+            userAgent.setCreator(System.getProperty("user.name"));
+        }
+        if (userAgent.getCreationDate() == null) {
+            userAgent.setCreationDate(new Date());
+        }
+    }
+}
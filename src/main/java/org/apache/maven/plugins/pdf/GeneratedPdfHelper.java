@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.model.ReportSet;
+import org.apache.maven.model.Reporting;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Helper to record the PDFs generated in a working directory, with the fingerprint of their inputs,
+ * so that the aggregate goal and later builds can reuse them.
+ *
+ * @since 1.6.2
+ */
+class GeneratedPdfHelper {
+    /**
+     * The file recording the generated PDF of each language.
+     */
+    private static final String GENERATED_PDFS_FILE = "pdf.properties";
+
+    /**
+     * The file keeping the fingerprint of the inputs of the generated PDFs.
+     */
+    private static final String FINGERPRINT_FILE = "pdf.fingerprint";
+
+    /**
+     * The file recording the checksum algorithms written for each PDF.
+     */
+    private static final String CHECKSUMS_FILE = "pdf.checksums";
+
+    /**
+     * The size of the buffer to transfer a PDF through the checksums.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Record the location of the PDF generated for the given locale.
+     *
+     * @param workingDirectory not null
+     * @param locale not null
+     * @param pdf the generated PDF, not null.
+     * @throws IOException if any
+     */
+    static void recordGeneratedPdf(File workingDirectory, Locale locale, File pdf) throws IOException {
+        Properties generatedPdfs = loadProperties(getGeneratedPdfsFile(workingDirectory));
+        generatedPdfs.setProperty(locale.getLanguage(), pdf.getAbsolutePath());
+        storeProperties(generatedPdfs, getGeneratedPdfsFile(workingDirectory));
+    }
+
+    /**
+     * @param workingDirectory not null
+     * @param locale not null
+     * @return the PDF recorded for the language of the locale, or <code>null</code> if none or if it does not
+     * exist anymore.
+     * @throws IOException if any
+     */
+    static File getGeneratedPdf(File workingDirectory, Locale locale) throws IOException {
+        String pdf = loadProperties(getGeneratedPdfsFile(workingDirectory)).getProperty(locale.getLanguage());
+        return pdf == null || !new File(pdf).isFile() ? null : new File(pdf);
+    }
+
+    private static Properties loadProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void storeProperties(Properties properties, File file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            properties.store(out, null);
+        }
+    }
+
+    private static File getGeneratedPdfsFile(File workingDirectory) {
+        return new File(workingDirectory, GENERATED_PDFS_FILE);
+    }
+
+    /**
+     * @param workingDirectory not null
+     * @return the fingerprint of the inputs of the generated PDFs, or <code>null</code> if none.
+     * @throws IOException if any
+     */
+    static String loadFingerprint(File workingDirectory) throws IOException {
+        File file = getFingerprintFile(workingDirectory);
+        return file.isFile() ? FileUtils.fileRead(file, "UTF-8") : null;
+    }
+
+    /**
+     * @param workingDirectory not null
+     * @param fingerprint the fingerprint of the inputs of the generated PDFs, not null.
+     * @throws IOException if any
+     */
+    static void saveFingerprint(File workingDirectory, String fingerprint) throws IOException {
+        FileUtils.fileWrite(getFingerprintFile(workingDirectory), "UTF-8", fingerprint);
+    }
+
+    /**
+     * @param workingDirectory not null
+     */
+    static void deleteFingerprint(File workingDirectory) {
+        getFingerprintFile(workingDirectory).delete();
+    }
+
+    private static File getFingerprintFile(File workingDirectory) {
+        return new File(workingDirectory, FINGERPRINT_FILE);
+    }
+
+    /**
+     * Append the path, size and modification time of a file, or of all the files of a directory.
+     *
+     * @param inputs not null
+     * @param file may be null
+     */
+    static void appendFingerprint(StringBuilder inputs, File file) {
+        if (file == null || !file.exists()) {
+            return;
+        }
+
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    appendFingerprint(inputs, child);
+                }
+            }
+        } else {
+            inputs.append(file.getAbsolutePath() + " " + file.length() + " " + file.lastModified())
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Append the path and the content hash of a file, for the inputs which may be replaced by another version
+     * with the same size and modification time, like fonts.
+     *
+     * @param inputs not null
+     * @param file may be null
+     * @throws IOException if any
+     */
+    static void appendContentFingerprint(StringBuilder inputs, File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+
+        String hash = ContentHashHelper.getContentHash(Files.readAllBytes(file.toPath()), null);
+        inputs.append(file.getAbsolutePath() + " " + hash).append('\n');
+    }
+
+    /**
+     * Append the report plugins of an effective reporting section, i.e. with the ones inherited from the
+     * parent POMs, with their versions and configuration.
+     *
+     * @param inputs not null
+     * @param reporting may be null
+     */
+    static void appendFingerprint(StringBuilder inputs, Reporting reporting) {
+        if (reporting == null) {
+            return;
+        }
+
+        inputs.append("reporting=" + reporting.getOutputDirectory() + " " + reporting.isExcludeDefaults())
+                .append('\n');
+        for (ReportPlugin plugin : reporting.getPlugins()) {
+            inputs.append(plugin.getKey() + ":" + plugin.getVersion() + " " + plugin.getConfiguration())
+                    .append('\n');
+            for (ReportSet reportSet : plugin.getReportSets()) {
+                inputs.append(reportSet.getId() + " " + reportSet.getReports() + " " + reportSet.getConfiguration())
+                        .append('\n');
+            }
+        }
+    }
+
+    /**
+     * Move a generated PDF to its output directory, atomically when both are on the same file system,
+     * and compute the checksums of its content.
+     * <br>
+     * Across file systems, the PDF is transferred to a temporary file next to the target, then renamed.
+     * The checksums are computed while the content is transferred, else in one pass for all algorithms.
+     *
+     * @param source the generated PDF, not null.
+     * @param target the PDF in the output directory, not null.
+     * @param algorithms the checksum algorithms, like <code>SHA-256</code>, not null.
+     * @return the checksums in hexadecimal, by algorithm.
+     * @throws IOException if any
+     */
+    static Map<String, String> move(File source, File target, List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = getDigests(algorithms);
+        target.getAbsoluteFile().getParentFile().mkdirs();
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return digest(target, algorithms);
+        } catch (AtomicMoveNotSupportedException e) {
+            // other file system
+        }
+
+        File tmp = File.createTempFile(
+                target.getName(), ".tmp", target.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                if (digests.isEmpty()) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                } else {
+                    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                    while (in.read(buffer) >= 0) {
+                        buffer.flip();
+                        update(digests, buffer);
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        Files.delete(source.toPath());
+
+        return toHex(algorithms, digests);
+    }
+
+    /**
+     * @param file not null
+     * @param algorithms the checksum algorithms, like <code>SHA-256</code>, not null.
+     * @return the checksums of the file in hexadecimal, by algorithm, computed in one pass.
+     * @throws IOException if any
+     */
+    static Map<String, String> digest(File file, List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = getDigests(algorithms);
+        if (!digests.isEmpty()) {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    update(digests, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return toHex(algorithms, digests);
+    }
+
+    /**
+     * Write the checksums of a PDF next to it, like <code>doc.pdf.sha256</code>, and delete the checksum files
+     * written by a previous build for the digest algorithms which are not configured anymore. The algorithms
+     * written are recorded in the working directory, so that no other file is deleted.
+     *
+     * @param workingDirectory not null
+     * @param pdf not null
+     * @param checksums the checksums in hexadecimal, by algorithm, not null.
+     * @throws IOException if any
+     */
+    static void writeChecksums(File workingDirectory, File pdf, Map<String, String> checksums) throws IOException {
+        Set<File> checksumFiles = new HashSet<>();
+        for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+            File checksumFile = getChecksumFile(pdf, checksum.getKey());
+            FileUtils.fileWrite(checksumFile, "UTF-8", checksum.getValue());
+            checksumFiles.add(checksumFile);
+        }
+
+        File checksumsFile = new File(workingDirectory, CHECKSUMS_FILE);
+        Properties writtenAlgorithms = loadProperties(checksumsFile);
+        String key = pdf.getAbsolutePath();
+        for (String algorithm : StringUtils.split(writtenAlgorithms.getProperty(key, ""), ",")) {
+            File checksumFile = getChecksumFile(pdf, algorithm);
+            if (!checksumFiles.contains(checksumFile)) {
+                Files.deleteIfExists(checksumFile.toPath());
+            }
+        }
+
+        if (checksums.isEmpty()) {
+            writtenAlgorithms.remove(key);
+        } else {
+            writtenAlgorithms.setProperty(
+                    key, StringUtils.join(checksums.keySet().iterator(), ","));
+        }
+        storeProperties(writtenAlgorithms, checksumsFile);
+    }
+
+    private static File getChecksumFile(File pdf, String algorithm) {
+        return new File(
+                pdf.getPath() + "." + algorithm.toLowerCase(Locale.ENGLISH).replace("-", ""));
+    }
+
+    private static List<MessageDigest> getDigests(List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            try {
+                digests.add(MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("Unknown checksum algorithm: " + algorithm, e);
+            }
+        }
+        return digests;
+    }
+
+    private static void update(List<MessageDigest> digests, ByteBuffer buffer) {
+        for (MessageDigest digest : digests) {
+            buffer.mark();
+            digest.update(buffer);
+            buffer.reset();
+        }
+    }
+
+    private static Map<String, String> toHex(List<String> algorithms, List<MessageDigest> digests) {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        for (int i = 0; i < digests.size(); i++) {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digests.get(i).digest()) {
+                hex.append(String.format(Locale.ROOT, "%02x", b & 0xff));
+            }
+            checksums.put(algorithms.get(i), hex.toString());
+        }
+        return checksums;
+    }
+}
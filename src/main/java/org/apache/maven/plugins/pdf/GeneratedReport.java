@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/**
+ * A report whose xdoc has been generated for one locale: only its output name and its name in that locale
+ * are kept, to add it to the TOC, so that the report itself and its plugin class loader can be released.
+ *
+ * @since 1.6.2
+ */
+class GeneratedReport {
+    private final String outputName;
+
+    private final String name;
+
+    /**
+     * @param outputName the output name of the report, not null.
+     * @param name the name of the report in the locale of its xdoc, not null.
+     */
+    GeneratedReport(String outputName, String name) {
+        this.outputName = outputName;
+        this.name = name;
+    }
+
+    /**
+     * @return the output name of the report.
+     */
+    String getOutputName() {
+        return outputName;
+    }
+
+    /**
+     * @return the name of the report in the locale of its xdoc.
+     */
+    String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.w3c.dom.NodeList;
+
+/**
+ * Optimizes the PNG and JPEG images of the staged site for the PDF: images with more pixels than needed
+ * to print them at the target resolution in the page body are downscaled, all images are re-encoded without
+ * their metadata, and the result is kept only if it is smaller. Images with an ICC color profile or an EXIF
+ * orientation are kept as is, as re-encoding would lose them.
+ * <br>
+ * The printed size of the images is preserved: a downscaled image gets a lower resolution, so that FOP
+ * lays it out exactly as the original one.
+ * <br>
+ * Results are cached by content hash, so that unchanged images are only processed once.
+ *
+ * @since 1.6.2
+ */
+class ImageOptimizer {
+    /** The extensions of the image files to optimize. */
+    private static final List<String> EXTENSIONS = Arrays.asList("png", "jpg", "jpeg");
+
+    /** The size in millimeters of a pixel of an image without resolution, FOP's default of 72 dpi. */
+    private static final double DEFAULT_PIXEL_SIZE = 25.4 / 72;
+
+    /** The native metadata format of the JDK PNG plugin. */
+    private static final String PNG_FORMAT = "javax_imageio_png_1.0";
+
+    /** The native metadata format of the JDK JPEG plugin. */
+    private static final String JPEG_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    /** The header of the EXIF APP1 segments. */
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    /** The TIFF tag of the EXIF orientation. */
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private final File cacheDirectory;
+
+    /** The width available to an image, in inches. */
+    private final double maxWidth;
+
+    /** The height available to an image, in inches. */
+    private final double maxHeight;
+
+    /** The target resolution in dpi. */
+    private final int resolution;
+
+    /** The JPEG compression quality, between 0 and 1. */
+    private final float jpegQuality;
+
+    private final Log log;
+
+    /**
+     * @param cacheDirectory the directory to cache optimized images in, not null.
+     * @param maxWidth the width of the page body in inches.
+     * @param maxHeight the height of the page body in inches.
+     * @param resolution the target resolution in dpi.
+     * @param jpegQuality the JPEG compression quality, between 0 and 1.
+     * @param log not null
+     */
+    ImageOptimizer(File cacheDirectory, double maxWidth, double maxHeight, int resolution, float jpegQuality, Log log) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.resolution = resolution;
+        this.jpegQuality = jpegQuality;
+        this.log = log;
+    }
+
+    /**
+     * Optimize the given image, or all images in the given directory.
+     *
+     * @param file a staged image or directory, not null.
+     * @throws IOException if any
+     */
+    void optimize(File file) throws IOException {
+        if (file.isDirectory()) {
+            @SuppressWarnings("unchecked")
+            List<File> files = FileUtils.getFiles(file, "**/*", null);
+            for (File image : files) {
+                if (isImage(image)) {
+                    optimizeImage(image);
+                }
+            }
+        } else if (file.isFile() && isImage(file)) {
+            optimizeImage(file);
+        }
+    }
+
+    /**
+     * @param file not null
+     * @return <code>true</code> if the file is a PNG or JPEG image, by extension.
+     */
+    private static boolean isImage(File file) {
+        return EXTENSIONS.contains(FileUtils.getExtension(file.getName()).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param image a staged image, not null.
+     * @throws IOException if any
+     */
+    private void optimizeImage(File image) throws IOException {
+        byte[] content = Files.readAllBytes(image.toPath());
+        String extension = FileUtils.getExtension(image.getName()).toLowerCase(Locale.ENGLISH);
+
+        File cached = new File(cacheDirectory, getCacheKey(content) + '.' + extension);
+        if (!cached.exists()) {
+            byte[] optimized = optimizeImage(content, "png".equals(extension) ? "png" : "jpeg");
+            if (optimized == null || optimized.length >= content.length) {
+                optimized = content;
+            }
+
+            // concurrent builds may share the cache
+            cacheDirectory.mkdirs();
+            File tmp = File.createTempFile(cached.getName(), ".tmp", cacheDirectory);
+            Files.write(tmp.toPath(), optimized);
+            Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (cached.length() < content.length) {
+            if (log.isDebugEnabled()) {
+                log.debug("Optimized image " + image + ": " + content.length + " -> " + cached.length() + " bytes.");
+            }
+
+            Files.copy(cached.toPath(), image.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @param content the image content, not null.
+     * @param format the ImageIO format name to write.
+     * @return the optimized image, or <code>null</code> if it could not be decoded.
+     */
+    private byte[] optimizeImage(byte[] content, String format) {
+        BufferedImage image;
+        double pixelSize;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                IIOMetadata metadata = reader.getImageMetadata(0);
+                if (hasColorProfile(metadata) || hasOrientation(metadata)) {
+                    // not written again, nor applied to the decoded pixels: FOP gets the original
+                    log.debug("Keeping image with a color profile or an orientation as is.");
+                    return null;
+                }
+                pixelSize = getPixelSize(metadata);
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // unsupported variant, like CMYK JPEG: FOP gets the original
+            log.debug("Unable to decode image, keeping it as is: " + e.getMessage());
+            return null;
+        }
+
+        // the printed size, scaled down to fit the page body like the Doxia figures
+        double width = image.getWidth() * pixelSize / 25.4;
+        double height = image.getHeight() * pixelSize / 25.4;
+        double scale = Math.min(1, Math.min(maxWidth / width, maxHeight / height));
+
+        int targetWidth = Math.max(1, (int) Math.ceil(width * scale * resolution));
+        if (targetWidth < image.getWidth()) {
+            pixelSize = pixelSize * image.getWidth() / targetWidth;
+            image = scale(image, targetWidth);
+        }
+
+        try {
+            return write(image, format, pixelSize, jpegQuality);
+        } catch (IOException e) {
+            log.debug("Unable to encode image, keeping it as is: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Downscale an image by successive halvings, for a better quality than a single bilinear step.
+     *
+     * @param image not null
+     * @param targetWidth the width in pixels, lower than the image one.
+     * @return the scaled image
+     */
+    private static BufferedImage scale(BufferedImage image, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage result = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(w / 2, targetWidth);
+            h = Math.max(h / 2, targetHeight);
+
+            BufferedImage scaled = new BufferedImage(w, h, type);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(result, 0, 0, w, h, null);
+            g.dispose();
+
+            result = scaled;
+        } while (w != targetWidth || h != targetHeight);
+
+        return result;
+    }
+
+    /**
+     * Encode an image with its resolution as only metadata.
+     *
+     * @param image not null
+     * @param format the ImageIO format name
+     * @param pixelSize the size of a pixel in millimeters.
+     * @param jpegQuality the JPEG compression quality, between 0 and 1.
+     * @return the encoded image
+     * @throws IOException if any
+     */
+    static byte[] write(BufferedImage image, String format, double pixelSize, float jpegQuality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                // for lossless formats, the lowest quality is the highest compression
+                param.setCompressionQuality("jpeg".equals(format) ? jpegQuality : 0f);
+            }
+
+            IIOMetadata metadata =
+                    writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            setPixelSize(metadata, pixelSize);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, metadata), param);
+            }
+
+            return bytes.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Read the resolution from the native metadata, the standard metadata of the JDK being wrong for PNG.
+     *
+     * @param metadata the image metadata, may be null.
+     * @return the size of a pixel in millimeters.
+     */
+    private static double getPixelSize(IIOMetadata metadata) {
+        if (metadata == null) {
+            return DEFAULT_PIXEL_SIZE;
+        }
+
+        String format = metadata.getNativeMetadataFormatName();
+        try {
+            if (PNG_FORMAT.equals(format)) {
+                IIOMetadataNode pHYs = getNode(metadata, format, "pHYs");
+                if (pHYs != null && "meter".equals(pHYs.getAttribute("unitSpecifier"))) {
+                    double pixelsPerMeter = Double.parseDouble(pHYs.getAttribute("pixelsPerUnitXAxis"));
+                    if (pixelsPerMeter > 0) {
+                        return 1000 / pixelsPerMeter;
+                    }
+                }
+            } else if (JPEG_FORMAT.equals(format)) {
+                IIOMetadataNode jfif = getNode(metadata, format, "app0JFIF");
+                if (jfif != null) {
+                    double density = Double.parseDouble(jfif.getAttribute("Xdensity"));
+                    if (density > 0 && "1".equals(jfif.getAttribute("resUnits"))) {
+                        return 25.4 / density;
+                    } else if (density > 0 && "2".equals(jfif.getAttribute("resUnits"))) {
+                        return 10 / density;
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            // default
+        }
+
+        return DEFAULT_PIXEL_SIZE;
+    }
+
+    /**
+     * @param metadata the image metadata, may be null.
+     * @return <code>true</code> if the image embeds an ICC color profile.
+     */
+    private static boolean hasColorProfile(IIOMetadata metadata) {
+        if (metadata == null) {
+            return false;
+        }
+
+        String format = metadata.getNativeMetadataFormatName();
+        if (PNG_FORMAT.equals(format)) {
+            return getNode(metadata, format, "iCCP") != null;
+        } else if (JPEG_FORMAT.equals(format)) {
+            return getNode(metadata, format, "app2ICC") != null;
+        }
+        return false;
+    }
+
+    /**
+     * @param metadata the image metadata, may be null.
+     * @return <code>true</code> if the image has an EXIF orientation other than the default one.
+     */
+    private static boolean hasOrientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return false;
+        }
+
+        // the APP1 segments, kept as is by the JDK plugin
+        NodeList markers = ((IIOMetadataNode) metadata.getAsTree(JPEG_FORMAT)).getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            if ("225".equals(marker.getAttribute("MarkerTag"))
+                    && marker.getUserObject() instanceof byte[]
+                    && getExifOrientation((byte[]) marker.getUserObject()) > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param app1 the data of an APP1 segment, not null.
+     * @return the orientation of the first image directory, or <code>0</code> if the segment is not EXIF or has
+     * no orientation.
+     */
+    static int getExifOrientation(byte[] app1) {
+        if (app1.length < EXIF_HEADER.length + 8
+                || !Arrays.equals(EXIF_HEADER, Arrays.copyOf(app1, EXIF_HEADER.length))) {
+            return 0;
+        }
+
+        ByteBuffer tiff = ByteBuffer.wrap(app1, EXIF_HEADER.length, app1.length - EXIF_HEADER.length)
+                .slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        try {
+            int directory = tiff.getInt(4);
+            int entries = tiff.getShort(directory) & 0xffff;
+            for (int i = 0; i < entries; i++) {
+                int entry = directory + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xffff) == ORIENTATION_TAG) {
+                    return tiff.getShort(entry + 8) & 0xffff;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // truncated
+        }
+        return 0;
+    }
+
+    /**
+     * Write the resolution in the native metadata, the standard metadata of the JDK being wrong for PNG.
+     *
+     * @param metadata the image metadata to write, may be null.
+     * @param pixelSize the size of a pixel in millimeters.
+     */
+    private static void setPixelSize(IIOMetadata metadata, double pixelSize) {
+        if (metadata == null) {
+            return;
+        }
+
+        String format = metadata.getNativeMetadataFormatName();
+        try {
+            if (PNG_FORMAT.equals(format)) {
+                String pixelsPerMeter = Long.toString(Math.max(1, Math.round(1000 / pixelSize)));
+
+                IIOMetadataNode pHYs = new IIOMetadataNode("pHYs");
+                pHYs.setAttribute("pixelsPerUnitXAxis", pixelsPerMeter);
+                pHYs.setAttribute("pixelsPerUnitYAxis", pixelsPerMeter);
+                pHYs.setAttribute("unitSpecifier", "meter");
+
+                IIOMetadataNode root = new IIOMetadataNode(format);
+                root.appendChild(pHYs);
+                metadata.mergeTree(format, root);
+            } else if (JPEG_FORMAT.equals(format)) {
+                IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+                NodeList jfif = root.getElementsByTagName("app0JFIF");
+                if (jfif.getLength() > 0) {
+                    String dpi = Long.toString(Math.min(65535, Math.max(1, Math.round(25.4 / pixelSize))));
+
+                    IIOMetadataNode app0JFIF = (IIOMetadataNode) jfif.item(0);
+                    app0JFIF.setAttribute("resUnits", "1");
+                    app0JFIF.setAttribute("Xdensity", dpi);
+                    app0JFIF.setAttribute("Ydensity", dpi);
+                    metadata.setFromTree(format, root);
+                }
+            }
+        } catch (IIOInvalidTreeException e) {
+            // the image keeps the default resolution of the writer
+        }
+    }
+
+    /**
+     * @param metadata not null
+     * @param format the native metadata format name
+     * @param name the node name
+     * @return the first node with this name, or <code>null</code>.
+     */
+    private static IIOMetadataNode getNode(IIOMetadata metadata, String format, String name) {
+        NodeList nodes = ((IIOMetadataNode) metadata.getAsTree(format)).getElementsByTagName(name);
+        return nodes.getLength() > 0 ? (IIOMetadataNode) nodes.item(0) : null;
+    }
+
+    /**
+     * @param content not null
+     * @return the SHA-256 of the content and of the optimization settings, in hexadecimal.
+     */
+    private String getCacheKey(byte[] content) {
+        return ContentHashHelper.getContentHash(
+                content, maxWidth + "x" + maxHeight + "@" + resolution + "q" + jpegQuality);
+    }
+}
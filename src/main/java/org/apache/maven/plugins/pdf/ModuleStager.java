@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Stages the <code>site.tmp</code> directories of the modules into the <code>site.tmp</code> directory of the
+ * aggregator, as <code>&lt;dir&gt;/&lt;stagedId&gt;</code>.
+ * <br>
+ * A manifest keeps the fingerprint and the staged files of each module, so that only the modules whose
+ * <code>site.tmp</code> changed are staged again, and the files of the modules that are not staged anymore
+ * are removed.
+ * <br>
+ * The files can be linked instead of copied, see {@link Mode}.
+ *
+ * @since 1.6.2
+ */
+class ModuleStager {
+    /**
+     * How the files of the modules are staged.
+     */
+    enum Mode {
+        /** Copy the files. */
+        COPY,
+        /** Create hard links to the files, copying them if they can not be linked, e.g. across file systems. */
+        HARDLINK,
+        /** Create symbolic links to the files, copying them if they can not be linked. */
+        SYMLINK;
+
+        /**
+         * @param name a mode name, case insensitive.
+         * @return the mode, or <code>null</code> if unknown.
+         */
+        static Mode of(String name) {
+            for (Mode mode : values()) {
+                if (mode.name().equals(name.toUpperCase(Locale.ENGLISH))) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    /** The <code>site.tmp</code> directory of the aggregator. */
+    private final File siteDirectoryTmp;
+
+    /** The directory of the manifests, one per module, by staged id. */
+    private final File manifestDirectory;
+
+    private final Mode mode;
+
+    private final Log log;
+
+    /** <code>true</code> once a file could not be linked, to warn only once. */
+    private boolean linkFailed;
+
+    /** The staged ids of the modules staged by this stager. */
+    private final Set<String> stagedIds = new HashSet<>();
+
+    /**
+     * @param siteDirectoryTmp the <code>site.tmp</code> directory of the aggregator, not null.
+     * @param manifestDirectory the directory to keep the manifests in, not null.
+     * @param mode how to stage the files, not null.
+     * @param log not null
+     */
+    ModuleStager(File siteDirectoryTmp, File manifestDirectory, Mode mode, Log log) {
+        this.siteDirectoryTmp = siteDirectoryTmp;
+        this.manifestDirectory = manifestDirectory;
+        this.mode = mode;
+        this.log = log;
+    }
+
+    /**
+     * Stage the <code>site.tmp</code> directory of a module, unless it did not change since it was staged.
+     *
+     * @param stagedId the staged id of the module, not null.
+     * @param moduleSiteDirectoryTmp the <code>site.tmp</code> directory of the module, not null.
+     * @return <code>true</code> if the module has been staged, <code>false</code> if it was up to date.
+     * @throws IOException if any
+     */
+    boolean stage(String stagedId, File moduleSiteDirectoryTmp) throws IOException {
+        stagedIds.add(stagedId);
+
+        StringBuilder inputs = new StringBuilder(mode.name()).append('\n');
+        GeneratedPdfHelper.appendFingerprint(inputs, moduleSiteDirectoryTmp);
+        String fingerprint = ContentHashHelper.getContentHash(inputs.toString().getBytes(StandardCharsets.UTF_8), null);
+
+        File manifest = getManifest(stagedId);
+        List<String> stagedFiles = readManifest(manifest);
+        if (!stagedFiles.isEmpty() && fingerprint.equals(stagedFiles.get(0)) && exist(stagedFiles)) {
+            return false;
+        }
+
+        // invalidate the manifest until the module is staged again
+        manifest.delete();
+        delete(stagedFiles);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(fingerprint);
+        String defaultExcludes = FileUtils.getDefaultExcludesAsString();
+        List<String> srcDirNames = FileUtils.getDirectoryNames(moduleSiteDirectoryTmp, "*", defaultExcludes, false);
+        for (String srcDirName : srcDirNames) {
+            File srcDir = new File(moduleSiteDirectoryTmp, srcDirName);
+            String dstDir = srcDirName + "/" + stagedId;
+            for (String fileName : FileUtils.getFileNames(srcDir, "**", defaultExcludes, false)) {
+                String staged = dstDir + "/" + fileName.replace(File.separatorChar, '/');
+                stageFile(new File(srcDir, fileName), new File(siteDirectoryTmp, staged));
+                lines.add(staged);
+            }
+        }
+
+        manifest.getParentFile().mkdirs();
+        Files.write(manifest.toPath(), lines, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * @param source a file of the module, not null.
+     * @param staged the staged file, not null.
+     * @throws IOException if any
+     */
+    private void stageFile(File source, File staged) throws IOException {
+        Files.deleteIfExists(staged.toPath());
+
+        if (mode != Mode.COPY) {
+            staged.getParentFile().mkdirs();
+            try {
+                if (mode == Mode.HARDLINK) {
+                    Files.createLink(staged.toPath(), source.toPath());
+                } else {
+                    Files.createSymbolicLink(
+                            staged.toPath(), source.getAbsoluteFile().toPath());
+                }
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                if (!linkFailed) {
+                    log.warn("Unable to link " + source + ", copying the module files that can not be linked: "
+                            + e.getMessage());
+                    linkFailed = true;
+                }
+            }
+        }
+
+        FileUtils.copyFile(source, staged);
+    }
+
+    /**
+     * Remove the staged files of the modules that have not been staged by this stager.
+     *
+     * @throws IOException if any
+     */
+    void removeOtherModules() throws IOException {
+        if (!manifestDirectory.isDirectory()) {
+            return;
+        }
+
+        for (String name : FileUtils.getFileNames(manifestDirectory, "**/*" + MANIFEST_EXTENSION, null, false)) {
+            String stagedId =
+                    name.replace(File.separatorChar, '/').substring(0, name.length() - MANIFEST_EXTENSION.length());
+            if (!stagedIds.contains(stagedId)) {
+                log.info("Removing staged files of " + stagedId + ": not in the reactor anymore.");
+
+                File manifest = getManifest(stagedId);
+                delete(readManifest(manifest));
+                manifest.delete();
+            }
+        }
+    }
+
+    private File getManifest(String stagedId) {
+        return new File(manifestDirectory, stagedId + MANIFEST_EXTENSION);
+    }
+
+    /**
+     * @param manifest not null
+     * @return the fingerprint then the staged files of the manifest, empty if there is no manifest.
+     * @throws IOException if any
+     */
+    private static List<String> readManifest(File manifest) throws IOException {
+        if (!manifest.isFile()) {
+            return new ArrayList<>();
+        }
+        return Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param manifestLines the fingerprint then the staged files of a manifest, not null.
+     * @return <code>true</code> if all the staged files exist.
+     */
+    private boolean exist(List<String> manifestLines) {
+        for (String staged : manifestLines.subList(1, manifestLines.size())) {
+            if (!new File(siteDirectoryTmp, staged).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param manifestLines the fingerprint then the staged files of a manifest, may be empty.
+     */
+    private void delete(List<String> manifestLines) {
+        for (int i = 1; i < manifestLines.size(); i++) {
+            new File(siteDirectoryTmp, manifestLines.get(i)).delete();
+        }
+    }
+}
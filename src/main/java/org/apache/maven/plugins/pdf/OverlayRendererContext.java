@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.maven.doxia.docrenderer.DocumentRendererContext;
+
+/**
+ * A render context adding the values of one rendering, like its locale, to a base context shared by all the
+ * renderings of an execution, like the project and its properties. The base context is not changed: the values
+ * put in this context only hide the base ones.
+ *
+ * @since 1.6.2
+ */
+class OverlayRendererContext extends DocumentRendererContext {
+    private final DocumentRendererContext base;
+
+    /**
+     * @param base the context shared by all the renderings, not changed, not null.
+     */
+    OverlayRendererContext(DocumentRendererContext base) {
+        this.base = base;
+        setInputEncoding(base.getInputEncoding());
+    }
+
+    /**
+     * @return the context shared by all the renderings.
+     */
+    DocumentRendererContext getBase() {
+        return base;
+    }
+
+    /**
+     * @return the keys of the values of this rendering, without the base ones.
+     */
+    Object[] getOverlayKeys() {
+        return super.getKeys();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object get(String key) {
+        return super.containsKey(key) ? super.get(key) : base.get(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return super.containsKey(key) || base.containsKey(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object[] getKeys() {
+        Set<Object> keys = new LinkedHashSet<>(Arrays.asList(base.getKeys()));
+        keys.addAll(Arrays.asList(super.getKeys()));
+        return keys.toArray();
+    }
+}
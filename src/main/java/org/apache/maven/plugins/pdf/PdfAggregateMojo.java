@@ -33,12 +33,12 @@ import org.apache.maven.doxia.document.DocumentModel;
 import org.apache.maven.doxia.document.DocumentTOC;
 import org.apache.maven.doxia.document.DocumentTOCItem;
 import org.apache.maven.model.Reporting;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Forks {@code pdf} goal then aggregates PDF content from all modules in the reactor.
@@ -68,6 +68,28 @@ public class PdfAggregateMojo extends PdfMojo {
     @Parameter(defaultValue = "${project.build.directory}/pdf-aggregate", required = true)
     private File aggregatedWorkingDirectory;
 
+    /**
+     * Merge the PDFs already generated by the modules, in reactor order, after a generated cover and table of
+     * contents, instead of rendering the documents of all the modules again. The bookmarks of the merged PDF
+     * are built from the table of contents of each module.
+     * <br>
+     * The aggregated PDF then keeps the layout of each module PDF, including its own cover and table of contents.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "mergeModulePdfs", defaultValue = "false")
+    private boolean mergeModulePdfs;
+
+    /**
+     * How the <code>site.tmp</code> files of the modules are staged into the working directory: <code>copy</code>,
+     * <code>hardlink</code> or <code>symlink</code>. Links make staging a metadata-only operation, without
+     * duplicating the files of the modules. A file that can not be linked, e.g. across file systems, is copied.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "moduleStaging", defaultValue = "copy")
+    private String moduleStaging;
+
     protected File getOutputDirectory() {
         return aggregatedOutputDirectory;
     }
@@ -80,6 +102,11 @@ public class PdfAggregateMojo extends PdfMojo {
         return false; // reports were generate (or not) during pdf:pdf: here, we only aggregate
     }
 
+    @Override
+    protected boolean isUpToDateCheckSupported() {
+        return false; // the modules are checked by the forked pdf:pdf
+    }
+
     protected void prepareTempSiteDirectory(final File tmpSiteDir) {
         tmpSiteDir.mkdirs();
     }
@@ -103,16 +130,72 @@ public class PdfAggregateMojo extends PdfMojo {
             return;
         }
 
+        ModuleStager.Mode mode = ModuleStager.Mode.of(moduleStaging);
+        if (mode == null) {
+            getLog().warn("Invalid 'moduleStaging' parameter: '" + moduleStaging + "', using 'copy' as default.");
+
+            mode = ModuleStager.Mode.COPY;
+        }
+        ModuleStager stager =
+                new ModuleStager(dstSiteTmp, new File(getWorkingDirectory(), "staged-modules"), mode, getLog());
         for (MavenProject reactorProject : reactorProjects) {
             getLog().info("Appending " + reactorProject.getArtifactId() + " reports.");
 
-            copySiteDirectoryTmp(reactorProject, dstSiteTmp);
+            if (!mergeModulePdfs) {
+                copySiteDirectoryTmp(reactorProject, stager);
+            }
 
             addTOCItems(toc, reactorProject);
         }
+
+        if (!mergeModulePdfs) {
+            try {
+                stager.removeOtherModules();
+            } catch (IOException e) {
+                getLog().error("Error while removing staged files of former modules: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    protected void generatePdf(Locale locale) throws MojoExecutionException, IOException {
+        if (!mergeModulePdfs) {
+            super.generatePdf(locale);
+            return;
+        }
+
+        DocumentModel model = getDocumentModel(locale);
+        PdfMerger merger = new PdfMerger(model);
+        for (MavenProject reactorProject : reactorProjects) {
+            File modulePdf = getModulePdf(reactorProject, locale);
+            if (modulePdf == null) {
+                getLog().info("Skipping reactor project " + reactorProject + ": no generated pdf");
+                continue;
+            }
+
+            getLog().info("Merging " + reactorProject.getArtifactId() + " pdf.");
+            merger.addModule(reactorProject.getName(), modulePdf, getTocItems(reactorProject));
+        }
+
+        File workingDir = getLocaleDirectory(getWorkingDirectory(), locale);
+        merger.merge(new File(workingDir, getPdfFileName(model)));
+    }
+
+    /**
+     * @param project a reactor project
+     * @param locale not null
+     * @return the PDF generated by the module for the language of the locale, or <code>null</code> if none.
+     */
+    private File getModulePdf(MavenProject project, Locale locale) {
+        try {
+            return GeneratedPdfHelper.getGeneratedPdf(getModuleWorkingDirectory(project), locale);
+        } catch (IOException e) {
+            getLog().error("Error while reading generated pdfs of module " + project.getArtifactId(), e);
+            return null;
+        }
     }
 
-    private void copySiteDirectoryTmp(MavenProject project, File dstSiteTmp) {
+    private void copySiteDirectoryTmp(MavenProject project, ModuleStager stager) {
         Reporting reporting = project.getReporting();
         if (reporting == null) {
             getLog().info("Skipping reactor project " + project + ": no reporting");
@@ -128,17 +211,8 @@ public class PdfAggregateMojo extends PdfMojo {
         String stagedId = getStagedId(project);
 
         try {
-            String defaultExcludes = FileUtils.getDefaultExcludesAsString();
-            List<String> srcDirNames = FileUtils.getDirectoryNames(srcSiteTmp, "*", defaultExcludes, false);
-            for (String srcDirName : srcDirNames) {
-                File srcDir = new File(srcSiteTmp, srcDirName);
-                File dstDir = new File(new File(dstSiteTmp, srcDirName), stagedId);
-                if (!dstDir.exists() && !dstDir.mkdirs()) {
-                    getLog().error("Could not create directory: " + dstDir);
-                    return;
-                }
-
-                FileUtils.copyDirectoryStructure(srcDir, dstDir);
+            if (!stager.stage(stagedId, srcSiteTmp)) {
+                getLog().debug("Keeping staged " + project.getArtifactId() + " site.tmp: unchanged since last copy.");
             }
         } catch (IOException e) {
             getLog().error(
@@ -151,24 +225,31 @@ public class PdfAggregateMojo extends PdfMojo {
     private void addTOCItems(DocumentTOC topLevelToc, MavenProject project) {
         String stagedId = getStagedId(project);
 
-        Map<String, Object> toc = loadToc(project);
-
-        List<Map<String, Object>> items = (ArrayList) toc.get("items");
-
         DocumentTOCItem tocItem = new DocumentTOCItem();
         tocItem.setName(project.getName());
         tocItem.setRef(stagedId);
 
+        for (Map<String, Object> item : getTocItems(project)) {
+            addTOCItems(tocItem, item, stagedId);
+        }
+
+        topLevelToc.addItem(tocItem);
+    }
+
+    private List<Map<String, Object>> getTocItems(MavenProject project) {
+        Map<String, Object> toc = loadToc(project);
+
+        List<Map<String, Object>> items = (ArrayList) toc.get("items");
+        if (items == null) {
+            return Collections.emptyList();
+        }
+
         if (items.size() == 1 && "project-info".equals(items.get(0).get("ref"))) {
             // Special case where a sub-project only contains generated reports.
             items = (List) items.get(0).get("items");
         }
 
-        for (Map<String, Object> item : items) {
-            addTOCItems(tocItem, item, stagedId);
-        }
-
-        topLevelToc.addItem(tocItem);
+        return items;
     }
 
     private Map<String, Object> loadToc(MavenProject project) {
@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.SimpleBookmark;
+import org.apache.maven.doxia.document.DocumentCover;
+import org.apache.maven.doxia.document.DocumentModel;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Merges the PDFs of the modules of a reactor into one PDF, after a generated cover and table of contents,
+ * without rendering the documents again.
+ * <br>
+ * The bookmarks of the merged PDF are built from the table of contents of each module, i.e. its
+ * <code>toc.json</code>, pointing to the pages of the matching bookmarks of the module PDF.
+ *
+ * @since 1.6.2
+ */
+class PdfMerger {
+    /** The margin of the generated pages, in points. */
+    private static final float MARGIN = 72f;
+
+    /** The indentation of a level of the table of contents, in points. */
+    private static final float INDENTATION = 12f;
+
+    private final DocumentModel model;
+
+    private final List<Module> modules = new ArrayList<>();
+
+    /**
+     * @param model the document model for the cover and the title of the table of contents, not null.
+     */
+    PdfMerger(DocumentModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Add a module PDF, in reactor order.
+     *
+     * @param name the name of the module, not null.
+     * @param pdf the PDF of the module, not null.
+     * @param tocItems the items of the table of contents of the module, as read from <code>toc.json</code>,
+     * not null.
+     */
+    void addModule(String name, File pdf, List<Map<String, Object>> tocItems) {
+        modules.add(new Module(name, pdf, tocItems));
+    }
+
+    /**
+     * Write the merged PDF.
+     *
+     * @param output the merged PDF, not null.
+     * @throws IOException if any
+     */
+    void merge(File output) throws IOException {
+        List<PdfReader> readers = new ArrayList<>();
+        try {
+            for (Module module : modules) {
+                readers.add(new PdfReader(module.pdf.getAbsolutePath()));
+            }
+            Rectangle pageSize =
+                    readers.isEmpty() ? PageSize.A4 : readers.get(0).getPageSizeWithRotation(1);
+
+            // the page numbers of the table of contents depend on its own length
+            PdfReader front = null;
+            int frontPages = 1;
+            for (int i = 0; i < 3; i++) {
+                front = new PdfReader(writeFrontMatter(pageSize, readers, frontPages));
+                if (front.getNumberOfPages() == frontPages) {
+                    break;
+                }
+                frontPages = front.getNumberOfPages();
+            }
+
+            output.getParentFile().mkdirs();
+            try (OutputStream out = Files.newOutputStream(output.toPath())) {
+                Document document = new Document(pageSize);
+                PdfCopy copy = new PdfCopy(document, out);
+                document.open();
+
+                List<Map<String, Object>> bookmarks = new ArrayList<>();
+                copyPages(copy, front);
+                int offset = front.getNumberOfPages();
+                for (int i = 0; i < modules.size(); i++) {
+                    PdfReader reader = readers.get(i);
+                    copyPages(copy, reader);
+                    bookmarks.add(getBookmark(modules.get(i), reader, offset));
+                    offset += reader.getNumberOfPages();
+                    copy.freeReader(reader);
+                }
+
+                copy.setOutlines(bookmarks);
+                copy.setViewerPreferences(PdfWriter.PageModeUseOutlines);
+                document.close();
+            }
+        } catch (DocumentException e) {
+            throw new IOException("Unable to merge the module PDFs: " + e.getMessage(), e);
+        } finally {
+            for (PdfReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void copyPages(PdfCopy copy, PdfReader reader) throws IOException, DocumentException {
+        for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+            copy.addPage(copy.getImportedPage(reader, page));
+        }
+    }
+
+    /**
+     * @param pageSize the page size, not null.
+     * @param readers the module PDFs, not null.
+     * @param frontPages the expected page count of the cover and table of contents.
+     * @return the cover and the table of contents, with the page numbers of the modules in the merged PDF.
+     * @throws DocumentException if any
+     */
+    private byte[] writeFrontMatter(Rectangle pageSize, List<PdfReader> readers, int frontPages)
+            throws DocumentException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document(pageSize, MARGIN, MARGIN, MARGIN, MARGIN);
+        PdfWriter.getInstance(document, out);
+        document.open();
+
+        DocumentCover cover = model.getCover();
+        String title = cover == null ? null : cover.getCoverTitle();
+        if (StringUtils.isEmpty(title) && model.getMeta() != null) {
+            title = model.getMeta().getTitle();
+        }
+        addLine(document, title, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 24), pageSize.height() / 3);
+        if (cover != null) {
+            addLine(document, cover.getCoverSubTitle(), FontFactory.getFont(FontFactory.HELVETICA, 16), 12);
+            addLine(document, cover.getCoverVersion(), FontFactory.getFont(FontFactory.HELVETICA, 12), 24);
+            addLine(document, cover.getCompanyName(), FontFactory.getFont(FontFactory.HELVETICA, 12), 48);
+            addLine(document, cover.getCoverdate(), FontFactory.getFont(FontFactory.HELVETICA, 12), 12);
+        }
+
+        document.newPage();
+        String tocTitle = model.getToc() == null ? null : model.getToc().getName();
+        addLine(
+                document,
+                StringUtils.isEmpty(tocTitle) ? "Table of Contents" : tocTitle,
+                FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18),
+                0);
+
+        PdfPTable table = new PdfPTable(new float[] {9, 1});
+        table.setWidthPercentage(100);
+        table.setSpacingBefore(24);
+        int pageNumber = frontPages + 1;
+        for (int i = 0; i < modules.size(); i++) {
+            Module module = modules.get(i);
+            addTocRow(table, module.name, pageNumber, 0, FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11));
+            module.resetBookmarks(readers.get(i));
+            for (Map<String, Object> item : module.tocItems) {
+                String name = (String) item.get("name");
+                Integer page = getPage(module.findBookmark(name));
+                addTocRow(
+                        table,
+                        name,
+                        pageNumber + (page == null ? 0 : page - 1),
+                        1,
+                        FontFactory.getFont(FontFactory.HELVETICA, 10));
+            }
+            pageNumber += readers.get(i).getNumberOfPages();
+        }
+        document.add(table);
+
+        document.close();
+        return out.toByteArray();
+    }
+
+    private static void addLine(Document document, String text, Font font, float spacingBefore)
+            throws DocumentException {
+        if (StringUtils.isEmpty(text)) {
+            return;
+        }
+
+        Paragraph paragraph = new Paragraph(text, font);
+        paragraph.setAlignment(Element.ALIGN_CENTER);
+        paragraph.setSpacingBefore(spacingBefore);
+        document.add(paragraph);
+    }
+
+    private static void addTocRow(PdfPTable table, String name, int pageNumber, int level, Font font) {
+        PdfPCell nameCell = new PdfPCell(new Paragraph(name, font));
+        nameCell.setBorder(Rectangle.NO_BORDER);
+        nameCell.setPaddingLeft(level * INDENTATION);
+        table.addCell(nameCell);
+
+        PdfPCell pageCell = new PdfPCell(new Paragraph(String.valueOf(pageNumber), font));
+        pageCell.setBorder(Rectangle.NO_BORDER);
+        pageCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        table.addCell(pageCell);
+    }
+
+    /**
+     * @param module not null
+     * @param reader the PDF of the module, not null.
+     * @param offset the page count before the module in the merged PDF.
+     * @return the bookmark of the module, with the items of its table of contents as kids.
+     */
+    private static Map<String, Object> getBookmark(Module module, PdfReader reader, int offset) {
+        Map<String, Object> bookmark = newBookmark(module.name, (offset + 1) + " Fit");
+        List<Map<String, Object>> kids = new ArrayList<>();
+        module.resetBookmarks(reader);
+        for (Map<String, Object> item : module.tocItems) {
+            kids.add(getBookmark(module, reader, item, offset));
+        }
+        if (!kids.isEmpty()) {
+            bookmark.put("Kids", kids);
+        }
+        return bookmark;
+    }
+
+    private static Map<String, Object> getBookmark(
+            Module module, PdfReader reader, Map<String, Object> item, int offset) {
+        String name = (String) item.get("name");
+        Map<String, Object> moduleBookmark = module.findBookmark(name);
+        Integer page = getPage(moduleBookmark);
+        String destination = page == null
+                ? (offset + 1) + " Fit"
+                : (page + offset)
+                        + ((String) moduleBookmark.get("Page"))
+                                .substring(String.valueOf(page).length());
+
+        Map<String, Object> bookmark = newBookmark(name, destination);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> items = (List<Map<String, Object>>) item.get("items");
+        if (items != null && !items.isEmpty()) {
+            List<Map<String, Object>> kids = new ArrayList<>();
+            for (Map<String, Object> it : items) {
+                kids.add(getBookmark(module, reader, it, offset));
+            }
+            bookmark.put("Kids", kids);
+        }
+        return bookmark;
+    }
+
+    private static Map<String, Object> newBookmark(String title, String page) {
+        Map<String, Object> bookmark = new HashMap<>();
+        bookmark.put("Title", title);
+        bookmark.put("Action", "GoTo");
+        bookmark.put("Page", page);
+        return bookmark;
+    }
+
+    /**
+     * @param bookmark a bookmark of a module PDF, may be null.
+     * @return the page of the bookmark in the module PDF, or <code>null</code> if unknown.
+     */
+    private static Integer getPage(Map<String, Object> bookmark) {
+        Object page = bookmark == null ? null : bookmark.get("Page");
+        if (!(page instanceof String)) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(((String) page).trim().split(" ")[0]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A module PDF with its table of contents.
+     */
+    private static final class Module {
+        private final String name;
+
+        private final File pdf;
+
+        private final List<Map<String, Object>> tocItems;
+
+        /** The bookmarks of the module PDF not matched yet, in document order. */
+        private List<Map<String, Object>> bookmarks;
+
+        Module(String name, File pdf, List<Map<String, Object>> tocItems) {
+            this.name = name;
+            this.pdf = pdf;
+            this.tocItems = tocItems;
+        }
+
+        /**
+         * @param reader the PDF of the module, not null.
+         */
+        void resetBookmarks(PdfReader reader) {
+            bookmarks = new ArrayList<>();
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> outlines = SimpleBookmark.getBookmark(reader);
+            flatten(outlines);
+        }
+
+        private void flatten(List<Map<String, Object>> outlines) {
+            if (outlines == null) {
+                return;
+            }
+            for (Map<String, Object> outline : outlines) {
+                bookmarks.add(outline);
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> kids = (List<Map<String, Object>>) outline.get("Kids");
+                flatten(kids);
+            }
+        }
+
+        /**
+         * Find the bookmark of a table of contents item. A bookmark is only matched once, for the items with
+         * the same title.
+         *
+         * @param title the title of a table of contents item, may be null.
+         * @return the next bookmark of the module PDF with this title, or <code>null</code> if not found.
+         */
+        Map<String, Object> findBookmark(String title) {
+            Iterator<Map<String, Object>> it = bookmarks.iterator();
+            while (it.hasNext()) {
+                Map<String, Object> bookmark = it.next();
+                if (title != null && title.equals(bookmark.get("Title"))) {
+                    it.remove();
+                    return bookmark;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -20,15 +20,19 @@ package org.apache.maven.plugins.pdf;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.ResourceBundle;
 
 import org.apache.commons.io.input.XmlStreamReader;
 import org.apache.maven.artifact.Artifact;
@@ -44,12 +48,6 @@ import org.apache.maven.doxia.document.DocumentModel;
 import org.apache.maven.doxia.document.DocumentTOC;
 import org.apache.maven.doxia.document.DocumentTOCItem;
 import org.apache.maven.doxia.document.io.xpp3.DocumentXpp3Writer;
-import org.apache.maven.doxia.index.IndexEntry;
-import org.apache.maven.doxia.index.IndexingSink;
-import org.apache.maven.doxia.module.xdoc.XdocSink;
-import org.apache.maven.doxia.parser.ParseException;
-import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
-import org.apache.maven.doxia.sink.impl.SinkAdapter;
 import org.apache.maven.doxia.site.decoration.DecorationModel;
 import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
 import org.apache.maven.doxia.siterenderer.Renderer;
@@ -67,7 +65,6 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.reporting.MavenReport;
-import org.apache.maven.reporting.MavenReportException;
 import org.apache.maven.reporting.exec.MavenReportExecution;
 import org.apache.maven.reporting.exec.MavenReportExecutor;
 import org.apache.maven.reporting.exec.MavenReportExecutorRequest;
@@ -82,7 +79,6 @@ import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.PathTool;
-import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
@@ -95,16 +91,11 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 @Mojo(name = "pdf", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
 public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
 
-    /**
-     * The vm line separator
-     */
-    private static final String EOL = System.getProperty("line.separator");
-
     /**
      * FO Document Renderer.
      */
-    @Component(hint = "fo")
-    private PdfRenderer foRenderer;
+    @Component
+    private FopPdfRenderer foRenderer;
 
     /**
      * Internationalization.
@@ -205,6 +196,191 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     @Parameter(property = "implementation", defaultValue = "fo", required = true)
     private String implementation;
 
+    /**
+     * The file where FOP keeps the fonts it has already parsed, so that repeated builds reuse their metrics.
+     * It may point to a location shared by several projects, like <code>${user.home}/.fop/fop-fonts.cache</code>.
+     * The modules of a build with the same fonts share their FOP environment, which keeps the cache file of the
+     * first of them. Only used by the "fo" implementation.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "fontCacheFile", defaultValue = "${project.build.directory}/pdf/fop-fonts.cache")
+    private File fontCacheFile;
+
+    /**
+     * The fonts available to FOP in addition to the base 14 PDF fonts, for instance:
+     * <pre>
+     * &lt;fonts&gt;
+     * &nbsp;&nbsp;&lt;font&gt;
+     * &nbsp;&nbsp;&nbsp;&nbsp;&lt;file&gt;src/fonts/DejaVuSans-Bold.ttf&lt;/file&gt;
+     * &nbsp;&nbsp;&nbsp;&nbsp;&lt;family&gt;DejaVu Sans&lt;/family&gt;
+     * &nbsp;&nbsp;&nbsp;&nbsp;&lt;weight&gt;bold&lt;/weight&gt;
+     * &nbsp;&nbsp;&lt;/font&gt;
+     * &lt;/fonts&gt;
+     * </pre>
+     * Fonts are never auto-detected: FOP only loads the listed ones.
+     * Only used by the "fo" implementation.
+     *
+     * @since 1.6.2
+     */
+    @Parameter
+    private List<Font> fonts;
+
+    /**
+     * The maximum memory, in megabytes, for the images decoded by FOP that are kept for reuse by the other
+     * locales and modules of the build. The least recently used images are evicted first.
+     * A value of <code>0</code> leaves image caching to FOP, which decodes images again for each locale.
+     * Only used by the "fo" implementation.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "decodedImageCacheSize", defaultValue = "64")
+    private int decodedImageCacheSize;
+
+    /**
+     * If <code>true</code>, the PNG and JPEG images of the staged site are optimized for the PDF: images with
+     * more pixels than needed to print them at <code>imageResolution</code> in the page body are downscaled,
+     * and all images are re-encoded without their metadata when it makes them smaller. The printed size of the
+     * images is unchanged. The source images are never modified.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "optimizeImages", defaultValue = "false")
+    private boolean optimizeImages;
+
+    /**
+     * The resolution in dpi to downscale images to, when <code>optimizeImages</code> is enabled.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "imageResolution", defaultValue = "150")
+    private int imageResolution;
+
+    /**
+     * The compression quality of re-encoded JPEG images, between <code>0</code> and <code>1</code>,
+     * when <code>optimizeImages</code> is enabled.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "jpegQuality", defaultValue = "0.85")
+    private float jpegQuality;
+
+    /**
+     * The directory where optimized images are kept by content hash, so that unchanged images are only
+     * processed once. It may be shared by several projects.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "imageCacheDirectory", defaultValue = "${project.build.directory}/pdf/image-cache")
+    private File imageCacheDirectory;
+
+    /**
+     * The number of threads laying out the chapters of the aggregated PDF in parallel. Each top-level item of the
+     * TOC is laid out by FOP separately, then the chapters are merged into the PDF with the same page numbers,
+     * bookmarks and links as when the PDF is rendered in one pass. A value of <code>1</code> renders the PDF
+     * in one pass.
+     * Only used by the "fo" implementation, with <code>aggregate</code>.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "renderThreads", defaultValue = "1")
+    private int renderThreads;
+
+    /**
+     * Keep the chapters of the aggregated PDF laid out by FOP in the working directory, and only lay out again
+     * the chapters that changed since the previous build, like the documents of a TOC item, their images or the
+     * TOC itself, or whose page numbers changed. The PDF is then merged from the laid out chapters, see
+     * <code>renderThreads</code>.
+     * Only used by the "fo" implementation, with <code>aggregate</code>.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "incrementalRendering", defaultValue = "false")
+    private boolean incrementalRendering;
+
+    /**
+     * Stream the aggregated FO document to FOP while the documents are parsed, instead of writing it to
+     * <code>&lt;outputName&gt;.fo</code> in the working directory first, so that parsing and layout overlap.
+     * Not used with <code>renderThreads</code> or <code>incrementalRendering</code>, which need the FO file.
+     * Only used by the "fo" implementation, with <code>aggregate</code>.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "streamFo", defaultValue = "false")
+    private boolean streamFo;
+
+    /**
+     * Render large aggregated PDFs with less memory: FOP keeps the pages with unresolved references, like the
+     * pages following the TOC, on disk instead of in memory, and the peak heap used to render each locale
+     * is reported. See also <code>sectionsPerPageSequence</code>.
+     * Only used by the "fo" implementation, when the PDF is rendered in one pass.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "conserveMemory", defaultValue = "false")
+    private boolean conserveMemory;
+
+    /**
+     * The number of top-level sections of a document after which a new page sequence, and so a new page,
+     * is started. FOP keeps a whole page sequence in memory until it is laid out, so smaller page sequences
+     * lower the memory needed by large documents. The default <code>0</code> keeps one page sequence
+     * per document of the TOC.
+     * Only used by the "fo" implementation, with <code>aggregate</code>.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "sectionsPerPageSequence", defaultValue = "0")
+    private int sectionsPerPageSequence;
+
+    /**
+     * The resolution in dpi to rasterize the SVG images of the staged site to, so that FOP embeds a bitmap
+     * instead of rendering each SVG with Batik for every locale. Rasterized images are cached by content hash
+     * in the working directory, so unchanged diagrams are only rasterized once.
+     * A value of <code>0</code> keeps the SVG images as vector graphics.
+     * Only used by the "fo" implementation.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "svgResolution", defaultValue = "0")
+    private int svgResolution;
+
+    /**
+     * Record the Doxia events of each parsed document in the working directory, by content hash, and replay them
+     * instead of parsing the document again to read its title, to validate it and to render it, in this build
+     * and in the later ones. Documents using macros are always parsed. The recordings not used by a build are
+     * deleted at its end. Only the "fo" implementation replays them when rendering.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "cacheSinkEvents", defaultValue = "false")
+    private boolean cacheSinkEvents;
+
+    /**
+     * Skip the generation when the inputs of the PDF did not change since the previous build, i.e. the site
+     * sources, the document descriptor, the POM and its parents, the configuration of the plugin, the fonts, the
+     * skin and, with reports, the reporting section and the sources and dependencies of the project. Files are
+     * compared by size and modification time, fonts by content.
+     * The output of the previous build in the working directory, i.e. <code>site.tmp</code>, <code>toc.json</code>
+     * and the generated PDFs, is then kept as is, so that the <code>pdf</code> execution forked by
+     * <code>pdf:aggregate</code> does not regenerate the modules that did not change.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "upToDateCheck", defaultValue = "false")
+    private boolean upToDateCheck;
+
+    /**
+     * The checksums to write next to each generated PDF, as a comma separated list of algorithms like
+     * <code>SHA-256,SHA-512</code>. Each checksum is written in hexadecimal to a file named after the PDF and the
+     * algorithm, like <code>&lt;outputName&gt;.pdf.sha256</code>. The checksums are computed while the PDF is
+     * transferred to the output directory, or in one pass over the PDF for all algorithms. The checksum files of
+     * the algorithms removed from this list since a previous build are deleted.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "checksumAlgorithms")
+    private String checksumAlgorithms;
+
     /**
      * The local repository.
      */
@@ -242,6 +418,66 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     @Parameter(property = "includeReports", defaultValue = "true")
     private boolean includeReports;
 
+    /**
+     * The maximum time, in seconds, a single Maven report may take to generate its content for one locale.
+     * A report that exceeds it is cancelled and left out of the PDF.
+     * A value of <code>0</code> or less means no limit.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "reportTimeout", defaultValue = "0")
+    private int reportTimeout;
+
+    /**
+     * The maximum time, in seconds, for the generation of all Maven reports in all locales.
+     * Once it is exhausted, the running report is cancelled and the remaining reports are skipped.
+     * A value of <code>0</code> or less means no limit.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "reportsTimeout", defaultValue = "0")
+    private int reportsTimeout;
+
+    /**
+     * Only generate the Maven reports referenced by the TOC of the document descriptor, i.e. whose output
+     * name is the <code>ref</code> of a TOC item, or listed in <code>tocReportsWhitelist</code>.
+     * The other reports are not executed. Ignored if there is no document descriptor.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "tocReportsOnly", defaultValue = "false")
+    private boolean tocReportsOnly;
+
+    /**
+     * The output names of the Maven reports to generate even if the TOC does not reference them,
+     * i.e. <code>dependencies</code>, see <code>tocReportsOnly</code>.
+     *
+     * @since 1.6.2
+     */
+    @Parameter
+    private List<String> tocReportsWhitelist;
+
+    /**
+     * The output names of the Maven reports whose content does not depend on the locale, i.e.
+     * <code>dependencies</code>. They are generated for the first locale only, their xdoc being reused for the
+     * other locales.
+     *
+     * @since 1.6.2
+     */
+    @Parameter
+    private List<String> localeNeutralReports;
+
+    /**
+     * The directory of the report xdoc files generated by an earlier build stage, i.e. the
+     * <code>generated-site.tmp</code> directory of a previous pdf build. When set, no report is executed:
+     * the <code>xdoc/*.xml</code> files of this directory, or of its <code>&lt;language&gt;/xdoc</code>
+     * directory for the other locales, are validated and imported as generated reports.
+     *
+     * @since 1.6.2
+     */
+    @Parameter(property = "importedReportsDirectory")
+    private File importedReportsDirectory;
+
     /**
      * Generate a TOC (Table Of Content) for all items defined in the &lt;toc/&gt; element from the document descriptor.
      * <br>
@@ -257,6 +493,9 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * If set to true, <strong>all</strong> input documents in xml format
      * (in particular xdoc and fml) will be validated and any error will
      * lead to a build failure.
+     * With the "fo" implementation, the documents are validated in parallel before rendering, and the schemas
+     * and DTDs are resolved from the plugin or from <code>entity-cache</code> in the working directory, where
+     * the other ones are downloaded once unless offline.
      *
      * @since 1.2
      */
@@ -308,11 +547,32 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     private File generatedSiteDirectoryTmp;
 
     /**
-     * A map of generated MavenReport list using locale as key.
+     * The generator of the report xdoc files, created on first use.
      *
-     * @since 1.1
+     * @since 1.6.2
+     */
+    private ReportGenerator reportGenerator;
+
+    /**
+     * The stager of the site files and images, created on first use.
+     *
+     * @since 1.6.2
+     */
+    private SiteStager siteStager;
+
+    /**
+     * The cache of the Doxia events of the parsed documents, disabled unless <code>cacheSinkEvents</code>.
+     *
+     * @since 1.6.2
      */
-    private Map<Locale, List<MavenReport>> generatedMavenReports;
+    private SinkEventCache sinkEventCache = new SinkEventCache(null);
+
+    /**
+     * The render context of all locales, built on first use.
+     *
+     * @since 1.6.2
+     */
+    private DocumentRendererContext baseContext;
 
     /**
      * @since 1.3
@@ -323,12 +583,36 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     public void execute() throws MojoExecutionException {
         init();
 
+        UpToDateCheck upToDate = null;
+        if (upToDateCheck && isUpToDateCheckSupported()) {
+            try {
+                upToDate = newUpToDateCheck();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error fingerprinting the sources: " + e.getMessage(), e);
+            }
+            if (isUpToDate(upToDate)) {
+                getLog().info("Skipping pdf generation: the sources did not change since the previous build.");
+                return;
+            }
+            // the previous output is replaced, fingerprint it only once complete
+            upToDate.invalidate();
+        }
+
         try {
             generatePdf();
         } catch (IOException e) {
             debugLogGeneratedModel(getDocumentModel(Locale.ENGLISH));
 
             throw new MojoExecutionException("Error during document generation: " + e.getMessage(), e);
+        } finally {
+            if (reportGenerator != null) {
+                reportGenerator.shutdown();
+            }
+        }
+        // the recordings of the documents changed or removed since the previous build
+        int pruned = sinkEventCache.prune();
+        if (pruned > 0) {
+            getLog().debug("Deleted " + pruned + " unused sink event recordings.");
         }
 
         try {
@@ -336,6 +620,14 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         } catch (IOException e) {
             throw new MojoExecutionException("Error copying generated PDF: " + e.getMessage(), e);
         }
+
+        if (upToDate != null) {
+            try {
+                upToDate.save();
+            } catch (IOException e) {
+                getLog().warn("Unable to save the fingerprint of the generated pdf: " + e.getMessage());
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -355,6 +647,83 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         return includeReports;
     }
 
+    protected File getSiteDirectory() {
+        return siteDirectory;
+    }
+
+    protected File getGeneratedSiteDirectory() {
+        return generatedSiteDirectory;
+    }
+
+    protected File getDocDescriptor() {
+        return docDescriptor;
+    }
+
+    /**
+     * @return <code>true</code> if the inputs of the generated PDFs can be fingerprinted,
+     * see {@link #upToDateCheck}.
+     * @since 1.6.2
+     */
+    protected boolean isUpToDateCheckSupported() {
+        return true;
+    }
+
+    /**
+     * @param upToDate the up to date check of the current inputs, not null.
+     * @return <code>true</code> if the output of the previous build is complete and was generated from the same
+     * inputs.
+     */
+    private boolean isUpToDate(UpToDateCheck upToDate) {
+        try {
+            return upToDate.isUpToDate(getAvailableLocales());
+        } catch (IOException e) {
+            getLog().debug("Unable to check the previous pdf generation: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The caches (font, decoded images, images, sink events) are not part of the fingerprint, as they do not
+     * change the generated PDFs.
+     *
+     * @return the up to date check of the inputs of the generated PDFs, see {@link #upToDateCheck}.
+     * @throws IOException if a font can not be read.
+     * @throws MojoExecutionException if the skin can not be resolved.
+     */
+    private UpToDateCheck newUpToDateCheck() throws IOException, MojoExecutionException {
+        UpToDateCheck upToDate = new UpToDateCheck(getWorkingDirectory());
+        upToDate.addParameter("pluginVersion", pluginVersion);
+        upToDate.addParameter("locales", locales);
+        upToDate.addParameter("implementation", implementation);
+        upToDate.addParameter("aggregate", aggregate);
+        upToDate.addParameter("includeReports", isIncludeReports());
+        upToDate.addParameter("tocReports", tocReportsOnly + " " + tocReportsWhitelist);
+        upToDate.addParameter("generateTOC", generateTOC);
+        upToDate.addParameter("validate", validate);
+        upToDate.addParameter("optimizeImages", optimizeImages + " " + imageResolution + " " + jpegQuality);
+        upToDate.addParameter("svgResolution", svgResolution);
+        upToDate.addParameter("sectionsPerPageSequence", sectionsPerPageSequence);
+        upToDate.addParameter(
+                "rendering", renderThreads + " " + incrementalRendering + " " + streamFo + " " + conserveMemory);
+        upToDate.addParameter("reportTimeouts", reportTimeout + " " + reportsTimeout);
+        upToDate.addParameter("localeNeutralReports", localeNeutralReports);
+        upToDate.addParameter("checksumAlgorithms", getChecksumAlgorithms());
+        upToDate.addFonts(fonts);
+        upToDate.addParameter("outputDirectory", getOutputDirectory().getAbsolutePath());
+
+        upToDate.addProject(project);
+        upToDate.addArtifact("skin", getSkinArtifact());
+        upToDate.addFile(getDocDescriptor());
+        upToDate.addFile(getSiteDirectory());
+        upToDate.addFile(getGeneratedSiteDirectory());
+        upToDate.addFile(importedReportsDirectory);
+        if (isIncludeReports()) {
+            upToDate.addReportInputs(project, reporting);
+        }
+
+        return upToDate;
+    }
+
     /**
      * Init and validate parameters
      */
@@ -369,6 +738,28 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
             this.docRenderer = foRenderer;
         }
 
+        foRenderer.setFontCacheFile(fontCacheFile);
+        foRenderer.setFonts(fonts);
+        foRenderer.setDecodedImageCacheSize(decodedImageCacheSize * 1024L * 1024L);
+        foRenderer.setRenderThreads(renderThreads);
+        foRenderer.setIncrementalRendering(incrementalRendering);
+        foRenderer.setStreamFo(streamFo);
+        foRenderer.setConserveMemory(conserveMemory);
+        foRenderer.setSectionsPerPageSequence(sectionsPerPageSequence);
+        if (cacheSinkEvents) {
+            sinkEventCache = new SinkEventCache(new File(getWorkingDirectory(), "sink-events"));
+        }
+        foRenderer.setSinkEventCache(sinkEventCache);
+        foRenderer.setDocumentValidator(
+                validate
+                        ? new DocumentValidator(
+                                new File(getWorkingDirectory(), "entity-cache"), session != null && session.isOffline())
+                        : null);
+        if (session != null && session.getRepositorySession() != null) {
+            // share the FOP environment with the other locales and modules of the build
+            foRenderer.setFopFactoryPool(FopFactoryPool.getInstance(session));
+        }
+
         if (!("none".equalsIgnoreCase(generateTOC)
                 || "start".equalsIgnoreCase(generateTOC)
                 || "end".equalsIgnoreCase(generateTOC))) {
@@ -386,32 +777,71 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * @since 1.1
      */
     private void copyGeneratedPdf() throws MojoExecutionException, IOException {
+        for (final Locale locale : getAvailableLocales()) {
+            copyGeneratedPdf(locale);
+        }
+    }
+
+    /**
+     * Copy the PDF generated for the given locale to outputDirectory.
+     *
+     * @param locale not null
+     * @throws MojoExecutionException if any
+     * @throws IOException if any
+     * @since 1.6.2
+     */
+    protected void copyGeneratedPdf(Locale locale) throws MojoExecutionException, IOException {
         boolean requireCopy = !getOutputDirectory()
                 .getCanonicalPath()
                 .equals(getWorkingDirectory().getCanonicalPath());
 
-        String outputName = getDocumentModel(getDefaultLocale()).getOutputName().trim();
-        if (!outputName.endsWith(".pdf")) {
-            outputName = outputName.concat(".pdf");
+        String outputName = getPdfFileName(getDocumentModel(getDefaultLocale()));
+
+        File generatedPdfSource = new File(getLocaleDirectory(getWorkingDirectory(), locale), outputName);
+
+        if (!generatedPdfSource.exists()) {
+            getLog().warn("Unable to find the generated pdf: " + generatedPdfSource.getAbsolutePath());
+            return;
         }
 
-        for (final Locale locale : getAvailableLocales()) {
-            File generatedPdfSource = new File(getLocaleDirectory(getWorkingDirectory(), locale), outputName);
+        File generatedPdfDest = new File(getLocaleDirectory(getOutputDirectory(), locale), outputName);
 
-            if (!generatedPdfSource.exists()) {
-                getLog().warn("Unable to find the generated pdf: " + generatedPdfSource.getAbsolutePath());
-                continue;
-            }
+        List<String> algorithms = getChecksumAlgorithms();
+        Map<String, String> checksums = requireCopy
+                ? GeneratedPdfHelper.move(generatedPdfSource, generatedPdfDest, algorithms)
+                : GeneratedPdfHelper.digest(generatedPdfDest, algorithms);
+        GeneratedPdfHelper.writeChecksums(getWorkingDirectory(), generatedPdfDest, checksums);
+
+        try {
+            GeneratedPdfHelper.recordGeneratedPdf(getWorkingDirectory(), locale, generatedPdfDest);
+        } catch (IOException e) {
+            getLog().warn("Unable to record the generated pdf: " + e.getMessage());
+        }
 
-            File generatedPdfDest = new File(getLocaleDirectory(getOutputDirectory(), locale), outputName);
+        getLog().info("pdf generated: " + generatedPdfDest);
+    }
 
-            if (requireCopy) {
-                FileUtils.copyFile(generatedPdfSource, generatedPdfDest);
-                generatedPdfSource.delete();
-            }
+    /**
+     * @return the checksum algorithms of the generated PDFs, not null.
+     * @see #checksumAlgorithms
+     */
+    private List<String> getChecksumAlgorithms() {
+        return checksumAlgorithms == null
+                ? Collections.<String>emptyList()
+                : Arrays.asList(StringUtils.split(checksumAlgorithms, ", "));
+    }
 
-            getLog().info("pdf generated: " + generatedPdfDest);
+    /**
+     * @param model not null
+     * @return the file name of the PDF generated for the model.
+     * @since 1.6.2
+     */
+    protected static String getPdfFileName(DocumentModel model) {
+        String outputName = model.getOutputName().trim();
+        if (!outputName.endsWith(".pdf")) {
+            outputName = outputName.concat(".pdf");
         }
+        return outputName;
     }
 
     /**
@@ -422,42 +852,94 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * @since 1.1
      */
     private void generatePdf() throws MojoExecutionException, IOException {
-        Locale.setDefault(getDefaultLocale());
-
+        // the locale is passed explicitly, Locale.getDefault() being shared by the modules of parallel builds
         for (final Locale locale : getAvailableLocales()) {
-            final File workingDir = getLocaleDirectory(getWorkingDirectory(), locale);
+            resetPeakHeapUsage();
+
+            generatePdf(locale);
+
+            String message = "Peak heap used for locale " + (locale.toString().isEmpty() ? "default" : locale) + ": "
+                    + getPeakHeapUsage() / (1024 * 1024) + " MB";
+            if (conserveMemory) {
+                getLog().info(message);
+            } else {
+                getLog().debug(message);
+            }
+        }
+    }
+
+    /**
+     * Reset the peak usage of the heap memory pools of the JVM.
+     */
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the peak heap used since the last reset, in bytes, as the sum of the peak usage of the heap
+     * memory pools. This is an upper bound, as the pools may reach their peak at different times, and
+     * includes the memory used by other threads of the JVM, like parallel builds.
+     */
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Generate the PDF for the given locale.
+     *
+     * @param locale not null
+     * @throws MojoExecutionException if any
+     * @throws IOException if any
+     * @since 1.6.2
+     */
+    protected void generatePdf(Locale locale) throws MojoExecutionException, IOException {
+        final File workingDir = getLocaleDirectory(getWorkingDirectory(), locale);
 
-            File siteDirectoryFile = getLocaleDirectory(getSiteDirectoryTmp(), locale);
+        File siteDirectoryFile = getLocaleDirectory(getSiteDirectoryTmp(), locale);
 
-            copyResources(locale);
+        copyResources(locale);
 
-            // generated xdoc sources for reports
-            generateMavenReports(locale);
+        // generated xdoc sources for reports
+        generateMavenReports(locale);
 
-            // render all Doxia source files to pdf (were handwritten or generated by reports)
-            DocumentRendererContext context = new DocumentRendererContext();
-            context.put("project", project);
-            context.put("settings", settings);
-            context.put("PathTool", new PathTool());
-            context.put("FileUtils", new FileUtils());
-            context.put("StringUtils", new StringUtils());
-            context.put("i18n", i18n);
-            context.put("generateTOC", generateTOC);
-            context.put("validate", validate);
+        // render all Doxia source files to pdf (were handwritten or generated by reports)
+        if (baseContext == null) {
+            // shared by all locales, the Velocity context of its values being built once
+            baseContext = new DocumentRendererContext();
+            baseContext.put("project", project);
+            baseContext.put("settings", settings);
+            baseContext.put("PathTool", new PathTool());
+            baseContext.put("FileUtils", new FileUtils());
+            baseContext.put("StringUtils", new StringUtils());
+            baseContext.put("i18n", i18n);
+            baseContext.put("generateTOC", generateTOC);
+            baseContext.put("validate", validate);
 
             // Put any of the properties in directly into the Velocity context
             for (Map.Entry<Object, Object> entry : project.getProperties().entrySet()) {
-                context.put((String) entry.getKey(), entry.getValue());
+                baseContext.put((String) entry.getKey(), entry.getValue());
             }
+        }
+        DocumentRendererContext context = new OverlayRendererContext(baseContext);
+        context.put("locale", locale);
 
-            final DocumentModel model = aggregate ? getDocumentModel(locale) : null;
+        final DocumentModel model = aggregate ? getDocumentModel(locale) : null;
 
-            try {
-                // TODO use interface see DOXIASITETOOLS-30
-                ((AbstractDocumentRenderer) docRenderer).render(siteDirectoryFile, workingDir, model, context);
-            } catch (DocumentRendererException e) {
-                throw new MojoExecutionException("Error during document generation: " + e.getMessage(), e);
-            }
+        try {
+            // TODO use interface see DOXIASITETOOLS-30
+            ((AbstractDocumentRenderer) docRenderer).render(siteDirectoryFile, workingDir, model, context);
+        } catch (DocumentRendererException e) {
+            throw new MojoExecutionException("Error during document generation: " + e.getMessage(), e);
         }
     }
 
@@ -484,82 +966,53 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * @since 1.1
      */
     protected void prepareTempSiteDirectory(final File tmpSiteDir) throws IOException {
-        // safety
-        tmpSiteDir.mkdirs();
-
-        // copy site
-        if (siteDirectory.exists()) {
-            FileUtils.copyDirectoryStructure(siteDirectory, tmpSiteDir);
-        }
-
-        // Remove SCM files
-        List<String> files = FileUtils.getFileAndDirectoryNames(
-                tmpSiteDir, FileUtils.getDefaultExcludesAsString(), null, true, true, true, true);
-        for (final String fileName : files) {
-            final File file = new File(fileName);
-
-            if (file.isDirectory()) {
-                FileUtils.deleteDirectory(file);
-            } else {
-                file.delete();
-            }
-        }
-
-        copySiteDir(generatedSiteDirectory, tmpSiteDir);
+        getSiteStager().stage(tmpSiteDir, generatedSiteDirectory);
     }
 
     /**
-     * Copy the from site dir to the to dir.
+     * Stage all site and generated-site files again, like the first generation, e.g. when their changes could
+     * not be tracked.
      *
-     * @param from not null
-     * @param to not null
      * @throws IOException if any
-     * @since 1.1
+     * @since 1.6.2
      */
-    private void copySiteDir(final File from, final File to) throws IOException {
-        if (from == null || !from.exists()) {
-            return;
-        }
+    protected void restageSiteDirectory() throws IOException {
+        File tmpSiteDir = getSiteDirectoryTmp();
+        FileUtils.deleteDirectory(tmpSiteDir);
+        prepareTempSiteDirectory(tmpSiteDir);
+
+        // see #generateMavenReports(Locale)
+        getSiteStager().copySiteDir(getGeneratedSiteDirectoryTmp(), tmpSiteDir);
+        getSiteStager().copySiteDir(generatedSiteDirectory, tmpSiteDir);
+    }
 
-        // copy generated-site
-        for (final Locale locale : getAvailableLocales()) {
-            String excludes = getDefaultExcludesWithLocales(getAvailableLocales(), getDefaultLocale());
-            List<String> siteFiles = siteDirectory.exists()
-                    ? FileUtils.getFileNames(siteDirectory, "**/*", excludes, false)
-                    : new ArrayList<>();
-            File siteDirectoryLocale = new File(siteDirectory, locale.getLanguage());
-            if (!locale.getLanguage().equals(getDefaultLocale().getLanguage()) && siteDirectoryLocale.exists()) {
-                siteFiles = FileUtils.getFileNames(siteDirectoryLocale, "**/*", excludes, false);
-            }
+    /**
+     * Rasterize and optimize the staged images, if enabled.
+     *
+     * @param file a staged image or directory, not null.
+     * @throws IOException if any
+     * @since 1.6.2
+     */
+    protected void optimizeStagedImages(File file) throws IOException {
+        getSiteStager().prepareImages(getSiteDirectoryTmp(), file);
+    }
 
-            List<String> generatedSiteFiles = FileUtils.getFileNames(from, "**/*", excludes, false);
-            File fromLocale = new File(from, locale.getLanguage());
-            if (!locale.getLanguage().equals(getDefaultLocale().getLanguage()) && fromLocale.exists()) {
-                generatedSiteFiles = FileUtils.getFileNames(fromLocale, "**/*", excludes, false);
+    /**
+     * @return the stager of the site files and images, created on first use.
+     * @since 1.6.2
+     */
+    private SiteStager getSiteStager() {
+        if (siteStager == null) {
+            siteStager = new SiteStager(siteDirectory, getAvailableLocales(), getDefaultLocale(), getLog());
+            // only FOP detects the image format from the content
+            if (svgResolution > 0 && "fo".equalsIgnoreCase(implementation)) {
+                siteStager.setSvgRasterization(new File(getWorkingDirectory(), "svg-cache"), svgResolution);
             }
-
-            for (final String generatedSiteFile : generatedSiteFiles) {
-                if (siteFiles.contains(generatedSiteFile)) {
-                    getLog().warn("Generated-site already contains a file in site: " + generatedSiteFile
-                            + ". Ignoring copying it!");
-                    continue;
-                }
-
-                if (!locale.getLanguage().equals(getDefaultLocale().getLanguage())) {
-                    if (fromLocale.exists()) {
-                        File in = new File(fromLocale, generatedSiteFile);
-                        File out = new File(new File(to, locale.getLanguage()), generatedSiteFile);
-                        out.getParentFile().mkdirs();
-                        FileUtils.copyFile(in, out);
-                    }
-                } else {
-                    File in = new File(from, generatedSiteFile);
-                    File out = new File(to, generatedSiteFile);
-                    out.getParentFile().mkdirs();
-                    FileUtils.copyFile(in, out);
-                }
+            if (optimizeImages) {
+                siteStager.setImageOptimization(imageCacheDirectory, imageResolution, jpegQuality);
             }
         }
+        return siteStager;
     }
 
     /**
@@ -571,7 +1024,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * @throws MojoExecutionException if any
      * @see #appendGeneratedReports(DocumentModel, Locale)
      */
-    private DocumentModel getDocumentModel(Locale locale) throws MojoExecutionException {
+    protected DocumentModel getDocumentModel(Locale locale) throws MojoExecutionException {
         if (docDescriptor.exists()) {
             DocumentModel doc = getDocumentModelFromDescriptor(locale);
             // TODO: descriptor model should get merged into default model, see MODELLO-63
@@ -587,8 +1040,8 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
 
         model.getMeta().setGenerator(getDefaultGenerator());
         model.getMeta().setLanguage(locale.getLanguage());
-        model.getCover().setCoverType(i18n.getString("pdf-plugin", getDefaultLocale(), "toc.type"));
-        model.getToc().setName(i18n.getString("pdf-plugin", getDefaultLocale(), "toc.title"));
+        model.getCover().setCoverType(getBundleString(locale, "toc.type"));
+        model.getToc().setName(getBundleString(locale, "toc.title"));
 
         appendGeneratedReports(model, locale);
 
@@ -640,7 +1093,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      * @param locale a Locale.
      * @return File.
      */
-    private File getLocaleDirectory(File basedir, Locale locale) {
+    protected File getLocaleDirectory(File basedir, Locale locale) {
         if (locale.getLanguage().equals(getDefaultLocale().getLanguage())) {
             return basedir;
         }
@@ -648,11 +1101,29 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         return new File(basedir, locale.getLanguage());
     }
 
+    /**
+     * Get a message of the plugin for the given locale, falling back to the default messages rather than
+     * to the messages of <code>Locale.getDefault()</code>, which may be set by another module of the build.
+     *
+     * @param locale not null
+     * @param key the message key, not null.
+     * @return the message.
+     * @since 1.6.2
+     */
+    static String getBundleString(Locale locale, String key) {
+        return ResourceBundle.getBundle(
+                        "pdf-plugin",
+                        locale,
+                        PdfMojo.class.getClassLoader(),
+                        ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT))
+                .getString(key);
+    }
+
     /**
      * @return the default locale from <code>siteTool</code>.
      * @see #getAvailableLocales()
      */
-    private Locale getDefaultLocale() {
+    protected Locale getDefaultLocale() {
         if (this.defaultLocale == null) {
             this.defaultLocale = getAvailableLocales().get(0);
         }
@@ -663,7 +1134,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     /**
      * @return the available locales from <code>siteTool</code>.
      */
-    private List<Locale> getAvailableLocales() {
+    protected List<Locale> getAvailableLocales() {
         if (this.localesList == null) {
             this.localesList = siteTool.getSiteLocales(locales);
         }
@@ -705,6 +1176,15 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         return this.defaultDecorationModel;
     }
 
+    /**
+     * Forget the DecorationModel read from <code>site.xml</code>, so that it is read again when next needed.
+     *
+     * @since 1.6.2
+     */
+    protected void resetDefaultDecorationModel() {
+        this.defaultDecorationModel = null;
+    }
+
     /**
      * Parse the decoration model to find the skin artifact and copy its resources to the output dir.
      *
@@ -714,18 +1194,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
      */
     private void copyResources(Locale locale) throws MojoExecutionException {
         final DecorationModel decorationModel = getDefaultDecorationModel();
-        if (decorationModel == null) {
-            return;
-        }
-
-        Artifact skinArtifact;
-        try {
-            skinArtifact = siteTool.getSkinArtifactFromRepository(
-                    localRepository, project.getRemoteArtifactRepositories(), decorationModel);
-        } catch (SiteToolException e) {
-            throw new MojoExecutionException("SiteToolException: " + e.getMessage(), e);
-        }
-
+        Artifact skinArtifact = getSkinArtifact();
         if (skinArtifact == null) {
             return;
         }
@@ -747,6 +1216,26 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         }
     }
 
+    /**
+     * @return the skin artifact of the decoration model, or <code>null</code> if none.
+     * @throws MojoExecutionException if the skin can not be resolved.
+     * @see #getDefaultDecorationModel()
+     * @since 1.6.2
+     */
+    private Artifact getSkinArtifact() throws MojoExecutionException {
+        final DecorationModel decorationModel = getDefaultDecorationModel();
+        if (decorationModel == null) {
+            return null;
+        }
+
+        try {
+            return siteTool.getSkinArtifactFromRepository(
+                    localRepository, project.getRemoteArtifactRepositories(), decorationModel);
+        } catch (SiteToolException e) {
+            throw new MojoExecutionException("SiteToolException: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Construct a default producer.
      *
@@ -765,10 +1254,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         if (getLog().isDebugEnabled() && project != null) {
             final File outputDir = new File(project.getBuild().getDirectory(), "pdf");
 
-            if (!outputDir.exists()) {
-                outputDir.mkdirs();
-            }
-
+            outputDir.mkdirs();
             final File doc = FileUtils.createTempFile("pdf", ".xml", outputDir);
             final DocumentXpp3Writer xpp3 = new DocumentXpp3Writer();
 
@@ -797,185 +1283,74 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
             return;
         }
 
-        if (project.getReporting() == null) {
-            getLog().info("No report was specified.");
+        if (getReportGenerator().isGenerated(locale)) {
+            getLog().debug("Reports were already generated for locale " + locale + ".");
             return;
         }
 
-        List<MavenReportExecution> reportExecutions = getReports();
-        for (MavenReportExecution reportExecution : reportExecutions) {
-            generateMavenReport(reportExecution, locale);
+        if (importedReportsDirectory != null) {
+            getReportGenerator()
+                    .importReports(
+                            new File(getLocaleDirectory(importedReportsDirectory, locale), "xdoc"),
+                            locale,
+                            getTocReportFilter(locale));
+        } else if (project.getReporting() == null) {
+            getLog().info("No report was specified.");
+            return;
+        } else {
+            if (!getReportGenerator().hasReportExecutions()) {
+                // first locale of a generation of the reports
+                getReportGenerator().setReportExecutions(getReports());
+            }
+            getReportGenerator().generateReports(locale, getTocReportFilter(locale));
         }
+        // the locale is known even if no report could be generated
+        getReportGenerator().getGeneratedReports(locale);
 
         // copy generated site
-        copySiteDir(getGeneratedSiteDirectoryTmp(), getSiteDirectoryTmp());
-        copySiteDir(generatedSiteDirectory, getSiteDirectoryTmp());
+        getSiteStager().copySiteDir(getGeneratedSiteDirectoryTmp(), getSiteDirectoryTmp());
+        getSiteStager().copySiteDir(generatedSiteDirectory, getSiteDirectoryTmp());
     }
 
     /**
-     * Generate the given Maven report to an xdoc source file,
-     * only if it is not an external report and the report could be generated.
-     *
-     * @param reportExecution not null
      * @param locale not null
-     * @throws IOException if any
-     * @throws MojoExecutionException if any
-     * @since 1.1
+     * @return the filter of the reports referenced by the TOC, or <code>null</code> to keep all reports.
+     * @throws MojoExecutionException if the document descriptor could not be read
+     * @see #tocReportsOnly
      */
-    private void generateMavenReport(MavenReportExecution reportExecution, Locale locale)
-            throws IOException, MojoExecutionException {
-        MavenReport report = reportExecution.getMavenReport();
-
-        String localReportName = report.getName(locale);
-
-        if (!reportExecution.canGenerateReport()) {
-            getLog().info("Skipped \"" + localReportName + "\" report.");
-            getLog().debug("canGenerateReport() was false.");
-
-            return;
-        }
-
-        if (report.isExternalReport()) {
-            getLog().info("Skipped external \"" + localReportName + "\" report (not supported by pdf plugin).");
-            getLog().debug("isExternalReport() was false.");
-
-            return;
-        }
-
-        for (final MavenReport generatedReport : getGeneratedMavenReports(locale)) {
-            if (report.getName(locale).equals(generatedReport.getName(locale))) {
-                if (getLog().isDebugEnabled()) {
-                    getLog().debug(report.getName(locale) + " was already generated.");
-                }
-                return;
-            }
-        }
-
-        File outDir = new File(getGeneratedSiteDirectoryTmp(), "xdoc");
-        if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
-            outDir = new File(new File(getGeneratedSiteDirectoryTmp(), locale.getLanguage()), "xdoc");
-        }
-        outDir.mkdirs();
-
-        File generatedReport = new File(outDir, report.getOutputName() + ".xml");
-
-        if (siteDirectory.exists()) {
-            String excludes = getDefaultExcludesWithLocales(getAvailableLocales(), getDefaultLocale());
-            List<String> files =
-                    FileUtils.getFileNames(siteDirectory, "*/" + report.getOutputName() + ".*", excludes, false);
-            if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
-                files = FileUtils.getFileNames(
-                        new File(siteDirectory, locale.getLanguage()),
-                        "*/" + report.getOutputName() + ".*",
-                        excludes,
-                        false);
-            }
-
-            if (files.size() != 0) {
-                String displayLanguage = locale.getDisplayLanguage(Locale.ENGLISH);
-
-                if (getLog().isInfoEnabled()) {
-                    getLog().info("Skipped \"" + report.getName(locale) + "\" report, file \""
-                            + report.getOutputName() + "\" already exists for the " + displayLanguage
-                            + " version.");
-                }
-
-                return;
-            }
-        }
-
-        if (getLog().isInfoEnabled()) {
-            getLog().info("Generating \"" + localReportName + "\" report.");
-        }
-
-        // The report will eventually generate output by itself, so we set its output directory anyway.
-        report.setReportOutputDirectory(outDir);
-
-        StringWriter sw = new StringWriter();
-
-        PdfXdocSink pdfXdocSink = null;
-        try {
-            pdfXdocSink = new PdfXdocSink(sw);
-            renderReportToSink(reportExecution, locale, pdfXdocSink);
-        } catch (MavenReportException e) {
-            String goal = reportExecution.getPlugin().getArtifactId()
-                    + ':'
-                    + reportExecution.getPlugin().getVersion()
-                    + ':'
-                    + reportExecution.getGoal();
-            throw new MojoExecutionException("Error generating " + goal + " report", e);
-        } finally {
-            if (pdfXdocSink != null) {
-                pdfXdocSink.close();
-            }
-        }
-
-        if (getLog().isDebugEnabled()) {
-            getLog().debug("Writing generated xdoc to " + generatedReport);
-        }
-        writeGeneratedReport(sw.toString(), generatedReport);
-
-        // keep generated report xdoc only if it is valid
-        if (isValidGeneratedReportXdoc(
-                reportExecution.getPlugin().getId() + ':' + reportExecution.getGoal(),
-                generatedReport,
-                localReportName)) {
-            getGeneratedMavenReports(locale).add(report);
-        }
+    private TocReportFilter getTocReportFilter(Locale locale) throws MojoExecutionException {
+        return tocReportsOnly && docDescriptor.exists()
+                ? new TocReportFilter(getDocumentModelFromDescriptor(locale).getToc(), tocReportsWhitelist)
+                : null;
     }
 
     /**
-     * see org.apache.maven.plugins.site.render.ReportDocumentRenderer#renderDocument(...)
-     *
-     * @param reportExec
-     * @param locale
-     * @param sink
-     * @throws MavenReportException
-     */
-    private void renderReportToSink(MavenReportExecution reportExec, Locale locale, PdfXdocSink sink)
-            throws MavenReportException {
-        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-        try {
-            if (reportExec.getClassLoader() != null) {
-                Thread.currentThread().setContextClassLoader(reportExec.getClassLoader());
-            }
-
-            MavenReport report = reportExec.getMavenReport();
-
-            /*if ( report instanceof MavenMultiPageReport )
-            {
-                // extended multi-page API
-                ( (MavenMultiPageReport) report ).generate( mainSink, multiPageSinkFactory, locale );
-            }
-            else if ( generateMultiPage( locale, multiPageSinkFactory, mainSink ) )
-            {
-                // extended multi-page API for Maven 2.2, only accessible by reflection API
-            }
-            else
-            {*/
-            // old single-page-only API
-            report.generate(sink, locale);
-            // }
-        } finally {
-            if (reportExec.getClassLoader() != null) {
-                Thread.currentThread().setContextClassLoader(originalClassLoader);
-            }
+     * @return the generator of the report xdoc files, created on first use.
+     * @since 1.6.2
+     */
+    ReportGenerator getReportGenerator() {
+        if (reportGenerator == null) {
+            reportGenerator = new ReportGenerator(
+                    doxia,
+                    sinkEventCache,
+                    siteDirectory,
+                    getGeneratedSiteDirectoryTmp(),
+                    getAvailableLocales(),
+                    getDefaultLocale(),
+                    getLog());
+            reportGenerator.setTimeouts(reportTimeout, reportsTimeout);
+            reportGenerator.setLocaleNeutralReports(localeNeutralReports);
         }
+        return reportGenerator;
     }
 
     /**
-     * @param locale not null
-     * @return the generated reports
-     * @since 1.1
+     * Forget the reports generated so far, so that they are generated again for each locale.
+     *
+     * @since 1.6.2
      */
-    private List<MavenReport> getGeneratedMavenReports(Locale locale) {
-        if (this.generatedMavenReports == null) {
-            this.generatedMavenReports = new HashMap<>(2);
-        }
-
-        this.generatedMavenReports.computeIfAbsent(locale, k -> new ArrayList<>(2));
-
-        return this.generatedMavenReports.get(locale);
+    protected void resetGeneratedMavenReports() {
+        getReportGenerator().reset();
     }
 
     /**
@@ -998,12 +1373,13 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         if (!isIncludeReports()) {
             return;
         }
-        if (getGeneratedMavenReports(locale).isEmpty()) {
+        List<GeneratedReport> generatedReports = getReportGenerator().getGeneratedReports(locale);
+        if (generatedReports.isEmpty()) {
             return;
         }
 
         final DocumentTOCItem documentTOCItem = new DocumentTOCItem();
-        documentTOCItem.setName(i18n.getString("pdf-plugin", locale, "toc.project-info.item"));
+        documentTOCItem.setName(getBundleString(locale, "toc.project-info.item"));
         documentTOCItem.setRef("project-info"); // see #generateMavenReports(Locale)
 
         List<String> addedRef = new ArrayList<>(4);
@@ -1011,9 +1387,9 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         List<DocumentTOCItem> items = new ArrayList<>(4);
 
         // append generated report defined as MavenReport
-        for (final MavenReport report : getGeneratedMavenReports(locale)) {
+        for (final GeneratedReport report : generatedReports) {
             final DocumentTOCItem reportItem = new DocumentTOCItem();
-            reportItem.setName(report.getName(locale));
+            reportItem.setName(report.getName());
             reportItem.setRef(report.getOutputName());
 
             items.add(reportItem);
@@ -1024,7 +1400,7 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         // append all generated reports from generated-site
         try {
             if (generatedSiteDirectory.exists()) {
-                String excludes = getDefaultExcludesWithLocales(getAvailableLocales(), getDefaultLocale());
+                String excludes = SiteStager.getDefaultExcludesWithLocales(getAvailableLocales(), getDefaultLocale());
                 List<String> generatedDirs = FileUtils.getDirectoryNames(generatedSiteDirectory, "*", excludes, true);
                 if (!locale.getLanguage().equals(getDefaultLocale().getLanguage())) {
                     generatedDirs = FileUtils.getFileNames(
@@ -1039,7 +1415,8 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
                         final String ref = generatedFile.substring(0, generatedFile.lastIndexOf('.'));
 
                         if (!addedRef.contains(ref)) {
-                            final String title = getGeneratedDocumentTitle(new File(generatedDir, generatedFile));
+                            final String title =
+                                    getReportGenerator().getDocumentTitle(new File(generatedDir, generatedFile));
 
                             if (title != null) {
                                 final DocumentTOCItem reportItem = new DocumentTOCItem();
@@ -1071,76 +1448,11 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
     }
 
     /**
-     * Parse a generated Doxia file and returns its title.
-     *
-     * @param f not null
-     * @return the xdoc file title or null if an error occurs.
-     * @throws IOException if any
-     * @since 1.1
-     */
-    private String getGeneratedDocumentTitle(final File f) throws IOException {
-        final IndexEntry entry = new IndexEntry("index");
-        final IndexingSink titleSink = new IndexingSink(entry);
-
-        try (Reader reader = ReaderFactory.newXmlReader(f)) {
-            doxia.parse(reader, f.getParentFile().getName(), titleSink);
-        } catch (ParseException e) {
-            getLog().error("ParseException: " + e.getMessage());
-            getLog().debug(e);
-            return null;
-        } catch (ParserNotFoundException e) {
-            getLog().error("ParserNotFoundException: " + e.getMessage());
-            getLog().debug(e);
-            return null;
-        }
-
-        return titleSink.getTitle();
-    }
-
-    /**
-     * Parsing the generated report to see if it is correct or not. Log the error for the user.
+     * Build the report executions. Called once per execution, the executions being shared by all locales.
      *
-     * @param fullGoal not null
-     * @param generatedReport not null
-     * @param localReportName not null
-     * @return <code>true</code> if Doxia is able to parse the generated report, <code>false</code> otherwise.
-     * @since 1.1
+     * @return the report executions, not null.
+     * @throws MojoExecutionException if any
      */
-    private boolean isValidGeneratedReportXdoc(String fullGoal, File generatedReport, String localReportName) {
-        SinkAdapter sinkAdapter = new SinkAdapter();
-        try (Reader reader = ReaderFactory.newXmlReader(generatedReport)) {
-            doxia.parse(reader, "xdoc", sinkAdapter);
-        } catch (ParseException e) {
-            String sb = EOL
-                    + "Error when parsing the generated report xdoc file: "
-                    + generatedReport.getAbsolutePath() + EOL
-                    + e.getMessage() + EOL
-                    + "You could:" + EOL
-                    + "  * exclude all reports using -DincludeReports=false" + EOL
-                    + "  * remove the "
-                    + fullGoal
-                    + " from the <reporting/> part. To not affect the site generation, "
-                    + "you could create a PDF profile." + EOL
-                    + "Ignoring the \"" + localReportName + "\" report in the PDF." + EOL;
-            getLog().error(sb);
-            getLog().debug(e);
-
-            return false;
-        } catch (ParserNotFoundException e) {
-            getLog().error("ParserNotFoundException: " + e.getMessage());
-            getLog().debug(e);
-
-            return false;
-        } catch (IOException e) {
-            getLog().error("IOException: " + e.getMessage());
-            getLog().debug(e);
-
-            return false;
-        }
-
-        return true;
-    }
-
     protected List<MavenReportExecution> getReports() throws MojoExecutionException {
         MavenReportExecutorRequest mavenReportExecutorRequest = new MavenReportExecutorRequest();
         mavenReportExecutorRequest.setLocalRepository(localRepository);
@@ -1184,69 +1496,4 @@ public class PdfMojo extends AbstractPdfMojo implements Contextualizable {
         }
         return reportingPlugins.toArray(new ReportPlugin[0]);
     }
-
-    /**
-     * Write the given content to the given file.
-     * <br>
-     * <b>Note</b>: try also to fix the content due to some issues in
-     * {@link org.apache.maven.reporting.AbstractMavenReport}.
-     *
-     * @param content the given content
-     * @param toFile the report file
-     * @throws IOException if any
-     * @since 1.1
-     */
-    private static void writeGeneratedReport(String content, File toFile) throws IOException {
-        if (content == null || content.isEmpty()) {
-            return;
-        }
-
-        try (Writer writer = WriterFactory.newXmlWriter(toFile)) {
-            // see PdfSink#table()
-            writer.write(StringUtils.replace(content, "<table><table", "<table"));
-        }
-    }
-
-    /**
-     * @param locales the list of locales dir to exclude
-     * @param defaultLocale the default locale.
-     * @return the comma separated list of default excludes and locales dir.
-     * @see FileUtils#getDefaultExcludesAsString()
-     * @since 1.1
-     */
-    private static String getDefaultExcludesWithLocales(List<Locale> locales, Locale defaultLocale) {
-        StringBuilder excludesLocales = new StringBuilder(FileUtils.getDefaultExcludesAsString());
-        for (final Locale locale : locales) {
-            if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
-                excludesLocales.append(",**/").append(locale.getLanguage()).append("/*");
-            }
-        }
-
-        return excludesLocales.toString();
-    }
-
-    /**
-     * A sink to render a Maven report as a generated xdoc file, with some known workarounds.
-     *
-     * @since 1.1
-     */
-    private static class PdfXdocSink extends XdocSink implements org.codehaus.doxia.sink.Sink {
-        protected PdfXdocSink(Writer writer) {
-            super(writer);
-        }
-
-        /** {@inheritDoc} */
-        public void text(String text) {
-            // workaround to fix quotes introduced with MPIR-59 (then removed in MPIR-136)
-            super.text(StringUtils.replace(text, "\u0092", "'"));
-        }
-
-        public void tableRow() {
-            // To be backward compatible: TODO add to XdocSink
-            if (!this.tableRows) {
-                tableRows(null, false);
-            }
-            super.tableRow(null);
-        }
-    }
 }
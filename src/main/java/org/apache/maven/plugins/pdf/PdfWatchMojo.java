@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Generates the PDF document like <code>pdf:pdf</code>, then watches the site sources and the document descriptor
+ * and re-generates the PDF of the affected locales each time they change, until the build is interrupted.
+ * <br>
+ * Changed files are staged again one by one, and the output of the Maven reports is reused unless the POM changes.
+ *
+ * @since 1.6.2
+ */
+@Mojo(name = "watch", requiresDependencyResolution = ResolutionScope.TEST)
+public class PdfWatchMojo extends PdfMojo {
+    /**
+     * The time in milliseconds without any further change to wait before re-generating the PDF,
+     * so that a burst of edits only leads to one generation.
+     */
+    @Parameter(property = "watchDelay", defaultValue = "500")
+    private long watchDelay;
+
+    /**
+     * The watched directories by their watch key.
+     */
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    /** {@inheritDoc} */
+    public void execute() throws MojoExecutionException {
+        super.execute();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            registerRecursive(watchService, getSiteDirectory().toPath());
+            registerRecursive(watchService, getGeneratedSiteDirectory().toPath());
+            register(
+                    watchService,
+                    getDocDescriptor().getAbsoluteFile().getParentFile().toPath());
+            if (project.getFile() != null) {
+                register(
+                        watchService,
+                        project.getFile().getAbsoluteFile().getParentFile().toPath());
+            }
+
+            getLog().info("Watching for changes, press Ctrl+C to stop.");
+
+            while (true) {
+                Set<Path> changes = waitForChanges(watchService);
+                if (!changes.isEmpty()) {
+                    regeneratePdf(changes);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error while watching the site sources: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for a change, then collect all further changes until none occurs during <code>watchDelay</code>.
+     *
+     * @param watchService not null
+     * @return the changed files and directories, not null.
+     * @throws IOException if any
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Set<Path> waitForChanges(WatchService watchService) throws IOException, InterruptedException {
+        Set<Path> changes = new LinkedHashSet<>();
+
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path dir = watchedDirectories.get(key);
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    getLog().warn("Too many changes to track, all site files are staged again.");
+                    changes.add(getSiteDirectory().toPath());
+                    continue;
+                }
+
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    registerRecursive(watchService, changed);
+                }
+                changes.add(changed);
+            }
+
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+
+            key = watchService.poll(watchDelay, TimeUnit.MILLISECONDS);
+        }
+
+        return changes;
+    }
+
+    /**
+     * Stage the changed files again and re-generate the PDF for the affected locales.
+     * Errors are only logged, so that the watch goes on once the sources are fixed.
+     *
+     * @param changes the changed files, not null
+     */
+    private void regeneratePdf(Set<Path> changes) {
+        long start = System.currentTimeMillis();
+
+        Set<Locale> locales = new LinkedHashSet<>();
+        try {
+            for (Path changed : changes) {
+                if (project.getFile() != null
+                        && changed.equals(project.getFile().getAbsoluteFile().toPath())) {
+                    getLog().info("POM changed, reports will be generated again. "
+                            + "Other changes to the POM require to restart the goal.");
+                    resetGeneratedMavenReports();
+                    locales.addAll(getAvailableLocales());
+                } else if (isDocDescriptor(changed)) {
+                    locales.addAll(getDescriptorLocales(changed));
+                } else if (changed.startsWith(getSiteDirectory().toPath())) {
+                    Path relative = getSiteDirectory().toPath().relativize(changed);
+                    if (isExcluded(relative)) {
+                        continue;
+                    }
+
+                    stage(changed, relative);
+                    if (relative.toString().isEmpty()) {
+                        locales.addAll(getAvailableLocales());
+                    } else if (relative.toString().matches("site(_[a-zA-Z_]+)?\\.xml")) {
+                        // site descriptor, i.e. default TOC
+                        resetDefaultDecorationModel();
+                        locales.addAll(getAvailableLocales());
+                    } else {
+                        locales.add(getLocale(relative));
+                    }
+                } else if (changed.startsWith(getGeneratedSiteDirectory().toPath())) {
+                    Path relative = getGeneratedSiteDirectory().toPath().relativize(changed);
+                    if (isExcluded(relative) || relative.toString().isEmpty()) {
+                        continue;
+                    }
+
+                    // files in site take precedence over generated-site ones, see #copySiteDir
+                    if (!Files.exists(getSiteDirectory().toPath().resolve(relative))) {
+                        stage(changed, relative);
+                        locales.add(getLocale(relative));
+                    }
+                }
+            }
+
+            for (Locale locale : getAvailableLocales()) {
+                if (locales.contains(locale)) {
+                    getLog().info("Generating the PDF for locale " + locale + ".");
+                    generatePdf(locale);
+                    copyGeneratedPdf(locale);
+                }
+            }
+        } catch (IOException | MojoExecutionException e) {
+            getLog().error("Error during document generation: " + e.getMessage(), e);
+            return;
+        }
+
+        if (!locales.isEmpty()) {
+            getLog().info("PDF generated in " + (System.currentTimeMillis() - start) + " ms, watching for changes.");
+        }
+    }
+
+    /**
+     * Copy a changed source file or directory to the staged site directory, or delete it from there
+     * if it does not exist anymore. A site directory itself, i.e. changes that could not be tracked,
+     * is staged again like by the first generation.
+     *
+     * @param source the changed file, not null
+     * @param relative its path relative to its site directory, not null
+     * @throws IOException if any
+     */
+    void stage(Path source, Path relative) throws IOException {
+        if (relative.toString().isEmpty()) {
+            getLog().debug("Staging all site files again");
+            restageSiteDirectory();
+            return;
+        }
+
+        File staged = getSiteDirectoryTmp().toPath().resolve(relative).toFile();
+
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Staging " + source + " to " + staged);
+        }
+
+        if (Files.isDirectory(source)) {
+            FileUtils.copyDirectoryStructure(source.toFile(), staged);
+            optimizeStagedImages(staged);
+        } else if (Files.exists(source)) {
+            staged.getParentFile().mkdirs();
+            Files.copy(source, staged.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            optimizeStagedImages(staged);
+        } else {
+            if (staged.isDirectory()) {
+                FileUtils.deleteDirectory(staged);
+            } else {
+                staged.delete();
+            }
+
+            // files in site take precedence over generated-site ones: stage the one the deleted file shadowed
+            Path generated = getGeneratedSiteDirectory().toPath().resolve(relative);
+            if (source.startsWith(getSiteDirectory().toPath()) && Files.exists(generated)) {
+                stage(generated, relative);
+            }
+        }
+    }
+
+    /**
+     * @param relative a path relative to a site directory, not null
+     * @return the locale of the directory tree containing the path
+     */
+    Locale getLocale(Path relative) {
+        if (relative.getNameCount() > 1) {
+            String firstSegment = relative.getName(0).toString();
+            for (Locale locale : getAvailableLocales()) {
+                if (!locale.getLanguage().equals(getDefaultLocale().getLanguage())
+                        && locale.getLanguage().equals(firstSegment)) {
+                    return locale;
+                }
+            }
+        }
+
+        return getDefaultLocale();
+    }
+
+    /**
+     * @param changed not null
+     * @return <code>true</code> if the changed file is the document descriptor or one of its localized versions.
+     */
+    boolean isDocDescriptor(Path changed) {
+        File descriptor = getDocDescriptor().getAbsoluteFile();
+        if (!changed.getParent().equals(descriptor.getParentFile().toPath())) {
+            return false;
+        }
+
+        String name = changed.getFileName().toString();
+        String baseName = FileUtils.removeExtension(descriptor.getName());
+        return name.equals(descriptor.getName())
+                || (name.startsWith(baseName + '_')
+                        && name.endsWith('.' + FileUtils.getExtension(descriptor.getName())));
+    }
+
+    /**
+     * @param descriptor the changed document descriptor, not null
+     * @return all locales for the default descriptor, otherwise the locale of the localized descriptor.
+     */
+    Set<Locale> getDescriptorLocales(Path descriptor) {
+        Set<Locale> result = new LinkedHashSet<>();
+
+        String name = FileUtils.removeExtension(descriptor.getFileName().toString());
+        for (Locale locale : getAvailableLocales()) {
+            if (name.endsWith('_' + locale.getLanguage())) {
+                result.add(locale);
+            }
+        }
+
+        if (result.isEmpty()) {
+            result.addAll(getAvailableLocales());
+        }
+
+        return result;
+    }
+
+    /**
+     * @param relative a path relative to a site directory, not null
+     * @return <code>true</code> if the path matches the default excludes, like SCM or editor backup files.
+     */
+    static boolean isExcluded(Path relative) {
+        String path = relative.toString();
+        for (String exclude : FileUtils.getDefaultExcludes()) {
+            if (SelectorUtils.matchPath(exclude, path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void register(WatchService watchService, Path dir) throws IOException {
+        if (!Files.isDirectory(dir) || watchedDirectories.containsValue(dir)) {
+            return;
+        }
+
+        WatchKey key = dir.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, dir);
+    }
+
+    void registerRecursive(final WatchService watchService, Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(watchService, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
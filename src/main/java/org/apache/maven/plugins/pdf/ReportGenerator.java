@@ -0,0 +1,490 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.index.IndexEntry;
+import org.apache.maven.doxia.index.IndexingSink;
+import org.apache.maven.doxia.parser.ParseException;
+import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
+import org.apache.maven.doxia.sink.impl.SinkAdapter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.reporting.MavenReport;
+import org.apache.maven.reporting.MavenReportException;
+import org.apache.maven.reporting.exec.MavenReportExecution;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
+
+/**
+ * Generates the Maven reports to <code>xdoc</code> sources for each locale, or imports the ones generated by an
+ * earlier build stage, keeping only the output name and name of each generated report for the TOC.
+ * <br>
+ * The report executions are shared by all locales, and released once the xdoc of the last locale is written.
+ *
+ * @since 1.6.2
+ */
+class ReportGenerator {
+    private static final String EOL = System.getProperty("line.separator");
+
+    private final Doxia doxia;
+
+    private final SinkEventCache sinkEventCache;
+
+    private final File siteDirectory;
+
+    private final File generatedSiteDirectoryTmp;
+
+    private final List<Locale> locales;
+
+    private final Locale defaultLocale;
+
+    private final Log log;
+
+    /**
+     * The renderer of the reports, without time budget unless set.
+     */
+    private ReportRenderer reportRenderer = new ReportRenderer(0, 0);
+
+    /**
+     * The output names of the reports whose xdoc is generated once and reused for the other locales.
+     */
+    private List<String> localeNeutralReports;
+
+    /**
+     * A map of generated reports list using locale as key. Only their output name and name are kept,
+     * the reports being released once generated.
+     */
+    private Map<Locale, List<GeneratedReport>> generatedReports;
+
+    /**
+     * The report executions, shared by all locales.
+     */
+    private List<MavenReportExecution> reportExecutions;
+
+    /**
+     * The xdoc generated for the locale neutral reports, by output name.
+     */
+    private final Map<String, File> localeNeutralXdocs = new HashMap<>();
+
+    /**
+     * @param doxia not null
+     * @param sinkEventCache the cache of the parsed documents, not null.
+     * @param siteDirectory the <code>site</code> directory, whose files take precedence over the reports.
+     * @param generatedSiteDirectoryTmp the directory of the generated xdoc files, not null.
+     * @param locales the available locales, not null.
+     * @param defaultLocale the default locale, not null.
+     * @param log not null
+     */
+    ReportGenerator(
+            Doxia doxia,
+            SinkEventCache sinkEventCache,
+            File siteDirectory,
+            File generatedSiteDirectoryTmp,
+            List<Locale> locales,
+            Locale defaultLocale,
+            Log log) {
+        this.doxia = doxia;
+        this.sinkEventCache = sinkEventCache;
+        this.siteDirectory = siteDirectory;
+        this.generatedSiteDirectoryTmp = generatedSiteDirectoryTmp;
+        this.locales = locales;
+        this.defaultLocale = defaultLocale;
+        this.log = log;
+    }
+
+    /**
+     * Cancel the reports that exceed the given time budget.
+     *
+     * @param reportTimeout the maximum time for each report in seconds, <code>0</code> or less for no limit.
+     * @param reportsTimeout the maximum time for all reports in seconds, <code>0</code> or less for no limit.
+     */
+    void setTimeouts(int reportTimeout, int reportsTimeout) {
+        this.reportRenderer = new ReportRenderer(reportTimeout, reportsTimeout);
+    }
+
+    /**
+     * @param localeNeutralReports the output names of the reports whose xdoc is generated once and reused for
+     * the other locales, or <code>null</code> for none.
+     */
+    void setLocaleNeutralReports(List<String> localeNeutralReports) {
+        this.localeNeutralReports = localeNeutralReports;
+    }
+
+    /**
+     * @return <code>true</code> if the report executions are set for the current generation of the reports.
+     */
+    boolean hasReportExecutions() {
+        return reportExecutions != null;
+    }
+
+    /**
+     * Set the report executions of a generation of the reports in all locales, starting its time budget.
+     *
+     * @param reportExecutions not null
+     */
+    void setReportExecutions(List<MavenReportExecution> reportExecutions) {
+        reportRenderer.startTimeBudget();
+        this.reportExecutions = new ArrayList<>(reportExecutions);
+    }
+
+    /**
+     * @param locale not null
+     * @return <code>true</code> if the reports were already generated or imported for the locale.
+     */
+    boolean isGenerated(Locale locale) {
+        return generatedReports != null && generatedReports.containsKey(locale);
+    }
+
+    /**
+     * Generate the report executions to xdoc for the given locale, releasing them after the last locale.
+     *
+     * @param locale not null
+     * @param filter the filter of the reports referenced by the TOC, or <code>null</code> to keep all reports.
+     * @throws IOException if any
+     * @throws MojoExecutionException if any
+     * @see #setReportExecutions(List)
+     */
+    void generateReports(Locale locale, TocReportFilter filter) throws IOException, MojoExecutionException {
+        boolean lastLocale = locale.equals(locales.get(locales.size() - 1));
+        for (Iterator<MavenReportExecution> it = reportExecutions.iterator(); it.hasNext(); ) {
+            MavenReportExecution reportExecution = it.next();
+            String outputName = reportExecution.getMavenReport().getOutputName();
+            if (filter != null && !filter.accept(outputName)) {
+                log.debug("Skipped \"" + outputName + "\" report, not referenced by the TOC.");
+            } else {
+                try {
+                    generateReport(reportExecution, locale);
+                } catch (TimeoutException e) {
+                    // not run again for the other locales, the report may even still be running
+                    it.remove();
+                    continue;
+                }
+            }
+            if (lastLocale) {
+                // release the report and its plugin class loader once its last xdoc is written
+                it.remove();
+            }
+        }
+        if (lastLocale) {
+            // built again if the reports have to be generated again
+            reportExecutions = null;
+        }
+    }
+
+    /**
+     * Import the report xdoc files generated by an earlier build stage, instead of executing the reports.
+     * The files that Doxia can not parse are ignored.
+     *
+     * @param importDir the directory of the xdoc files of the locale, not null.
+     * @param locale not null
+     * @param filter the filter of the reports referenced by the TOC, or <code>null</code> to keep all reports.
+     * @throws IOException if any
+     */
+    void importReports(File importDir, Locale locale, TocReportFilter filter) throws IOException {
+        if (!importDir.isDirectory()) {
+            log.warn("No report to import for locale " + locale + ": " + importDir + " does not exist.");
+            return;
+        }
+
+        File outDir = new File(getLocaleDirectory(generatedSiteDirectoryTmp, locale), "xdoc");
+        for (String fileName : FileUtils.getFileNames(importDir, "*.xml", null, false)) {
+            File importedReport = new File(importDir, fileName);
+            String outputName = fileName.substring(0, fileName.length() - ".xml".length());
+            if ((filter != null && !filter.accept(outputName))
+                    || !isValidGeneratedReportXdoc("imported " + fileName, importedReport, outputName)) {
+                continue;
+            }
+
+            String title = getDocumentTitle(importedReport);
+            log.info("Importing \"" + (title == null ? outputName : title) + "\" report.");
+            FileUtils.copyFile(importedReport, new File(outDir, fileName));
+            getGeneratedReports(locale).add(new GeneratedReport(outputName, title == null ? outputName : title));
+        }
+    }
+
+    /**
+     * Generate the given Maven report to an xdoc source file,
+     * only if it is not an external report and the report could be generated.
+     *
+     * @param reportExecution not null
+     * @param locale not null
+     * @throws IOException if any
+     * @throws MojoExecutionException if any
+     * @throws TimeoutException if the report timed out, and is ignored in the PDF.
+     */
+    private void generateReport(MavenReportExecution reportExecution, Locale locale)
+            throws IOException, MojoExecutionException, TimeoutException {
+        MavenReport report = reportExecution.getMavenReport();
+
+        String localReportName = report.getName(locale);
+
+        if (!reportExecution.canGenerateReport()) {
+            log.info("Skipped \"" + localReportName + "\" report.");
+            log.debug("canGenerateReport() was false.");
+
+            return;
+        }
+
+        if (report.isExternalReport()) {
+            log.info("Skipped external \"" + localReportName + "\" report (not supported by pdf plugin).");
+            log.debug("isExternalReport() was false.");
+
+            return;
+        }
+
+        for (final GeneratedReport generatedReport : getGeneratedReports(locale)) {
+            if (localReportName.equals(generatedReport.getName())) {
+                if (log.isDebugEnabled()) {
+                    log.debug(localReportName + " was already generated.");
+                }
+                return;
+            }
+        }
+
+        File outDir = new File(getLocaleDirectory(generatedSiteDirectoryTmp, locale), "xdoc");
+        outDir.mkdirs();
+
+        File generatedReport = new File(outDir, report.getOutputName() + ".xml");
+
+        if (siteDirectory.exists()) {
+            String excludes = SiteStager.getDefaultExcludesWithLocales(locales, defaultLocale);
+            List<String> files = FileUtils.getFileNames(
+                    getLocaleDirectory(siteDirectory, locale), "*/" + report.getOutputName() + ".*", excludes, false);
+
+            if (files.size() != 0) {
+                String displayLanguage = locale.getDisplayLanguage(Locale.ENGLISH);
+
+                if (log.isInfoEnabled()) {
+                    log.info("Skipped \"" + report.getName(locale) + "\" report, file \""
+                            + report.getOutputName() + "\" already exists for the " + displayLanguage
+                            + " version.");
+                }
+
+                return;
+            }
+        }
+
+        File localeNeutralXdoc = localeNeutralXdocs.get(report.getOutputName());
+        if (localeNeutralXdoc != null) {
+            log.info("Reusing \"" + localReportName + "\" report generated for another locale.");
+            FileUtils.copyFile(localeNeutralXdoc, generatedReport);
+            getGeneratedReports(locale).add(new GeneratedReport(report.getOutputName(), localReportName));
+            return;
+        }
+
+        long timeout = reportRenderer.getTimeoutMillis();
+        if (timeout == 0) {
+            log.warn("Skipped \"" + localReportName + "\" report, the time budget for all reports is exhausted.");
+
+            return;
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("Generating \"" + localReportName + "\" report.");
+        }
+
+        // The report will eventually generate output by itself, so we set its output directory anyway.
+        report.setReportOutputDirectory(outDir);
+
+        String xdoc;
+        try {
+            xdoc = reportRenderer.renderXdoc(reportExecution, locale, timeout);
+        } catch (MavenReportException e) {
+            throw new MojoExecutionException("Error generating " + getReportGoal(reportExecution) + " report", e);
+        } catch (TimeoutException e) {
+            log.error(EOL
+                    + "Timeout after " + TimeUnit.MILLISECONDS.toSeconds(timeout) + "s when generating the "
+                    + getReportGoal(reportExecution) + " report." + EOL
+                    + "Ignoring the \"" + localReportName + "\" report in the PDF." + EOL);
+
+            throw e;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Writing generated xdoc to " + generatedReport);
+        }
+        writeGeneratedReport(xdoc, generatedReport);
+
+        // keep generated report xdoc only if it is valid
+        if (isValidGeneratedReportXdoc(
+                reportExecution.getPlugin().getId() + ':' + reportExecution.getGoal(),
+                generatedReport,
+                localReportName)) {
+            getGeneratedReports(locale).add(new GeneratedReport(report.getOutputName(), localReportName));
+            if (localeNeutralReports != null && localeNeutralReports.contains(report.getOutputName())) {
+                localeNeutralXdocs.put(report.getOutputName(), generatedReport);
+            }
+        }
+    }
+
+    /**
+     * Stop the reports still running after a timeout.
+     */
+    void shutdown() {
+        reportRenderer.shutdown();
+    }
+
+    /**
+     * @param locale not null
+     * @return the reports generated for the locale, not null.
+     */
+    List<GeneratedReport> getGeneratedReports(Locale locale) {
+        if (this.generatedReports == null) {
+            this.generatedReports = new HashMap<>(2);
+        }
+
+        return this.generatedReports.computeIfAbsent(locale, k -> new ArrayList<>(2));
+    }
+
+    /**
+     * Forget the reports generated so far, so that they are generated again for each locale.
+     */
+    void reset() {
+        this.generatedReports = null;
+        this.localeNeutralXdocs.clear();
+        this.reportExecutions = null;
+    }
+
+    /**
+     * Parse a generated Doxia file and returns its title.
+     *
+     * @param f not null
+     * @return the xdoc file title or null if an error occurs.
+     * @throws IOException if any
+     */
+    String getDocumentTitle(final File f) throws IOException {
+        final IndexEntry entry = new IndexEntry("index");
+        final IndexingSink titleSink = new IndexingSink(entry);
+
+        try {
+            sinkEventCache.parse(doxia, f, f.getParentFile().getName(), titleSink);
+        } catch (ParseException e) {
+            log.error("ParseException: " + e.getMessage());
+            log.debug(e);
+            return null;
+        } catch (ParserNotFoundException e) {
+            log.error("ParserNotFoundException: " + e.getMessage());
+            log.debug(e);
+            return null;
+        }
+
+        return titleSink.getTitle();
+    }
+
+    /**
+     * Parsing the generated report to see if it is correct or not. Log the error for the user.
+     *
+     * @param fullGoal not null
+     * @param generatedReport not null
+     * @param localReportName not null
+     * @return <code>true</code> if Doxia is able to parse the generated report, <code>false</code> otherwise.
+     */
+    private boolean isValidGeneratedReportXdoc(String fullGoal, File generatedReport, String localReportName) {
+        SinkAdapter sinkAdapter = new SinkAdapter();
+        try {
+            sinkEventCache.parse(doxia, generatedReport, "xdoc", sinkAdapter);
+        } catch (ParseException e) {
+            String sb = EOL
+                    + "Error when parsing the generated report xdoc file: "
+                    + generatedReport.getAbsolutePath() + EOL
+                    + e.getMessage() + EOL
+                    + "You could:" + EOL
+                    + "  * exclude all reports using -DincludeReports=false" + EOL
+                    + "  * remove the "
+                    + fullGoal
+                    + " from the <reporting/> part. To not affect the site generation, "
+                    + "you could create a PDF profile." + EOL
+                    + "Ignoring the \"" + localReportName + "\" report in the PDF." + EOL;
+            log.error(sb);
+            log.debug(e);
+
+            return false;
+        } catch (ParserNotFoundException e) {
+            log.error("ParserNotFoundException: " + e.getMessage());
+            log.debug(e);
+
+            return false;
+        } catch (IOException e) {
+            log.error("IOException: " + e.getMessage());
+            log.debug(e);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param basedir not null
+     * @param locale not null
+     * @return the directory of the locale in the base directory.
+     */
+    private File getLocaleDirectory(File basedir, Locale locale) {
+        return locale.getLanguage().equals(defaultLocale.getLanguage())
+                ? basedir
+                : new File(basedir, locale.getLanguage());
+    }
+
+    /**
+     * @param reportExecution not null
+     * @return the report goal in the form <code>artifactId:version:goal</code>
+     */
+    private static String getReportGoal(MavenReportExecution reportExecution) {
+        return reportExecution.getPlugin().getArtifactId()
+                + ':'
+                + reportExecution.getPlugin().getVersion()
+                + ':'
+                + reportExecution.getGoal();
+    }
+
+    /**
+     * Write the given content to the given file.
+     * <br>
+     * <b>Note</b>: try also to fix the content due to some issues in
+     * {@link org.apache.maven.reporting.AbstractMavenReport}.
+     *
+     * @param content the given content
+     * @param toFile the report file
+     * @throws IOException if any
+     */
+    private static void writeGeneratedReport(String content, File toFile) throws IOException {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+
+        try (Writer writer = WriterFactory.newXmlWriter(toFile)) {
+            // see PdfSink#table()
+            writer.write(StringUtils.replace(content, "<table><table", "<table"));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.doxia.module.xdoc.XdocSink;
+import org.apache.maven.reporting.MavenReportException;
+import org.apache.maven.reporting.exec.MavenReportExecution;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Renders Maven reports to xdoc, optionally on a worker thread to cancel them after a timeout.
+ *
+ * @since 1.6.2
+ */
+class ReportRenderer {
+    /**
+     * The time, in milliseconds, given to a cancelled report to stop before the next report starts.
+     */
+    private static final long STOP_TIMEOUT = 1000;
+
+    /**
+     * The maximum time for each report in milliseconds, <code>0</code> or less for no limit.
+     */
+    private final long reportTimeout;
+
+    /**
+     * The maximum time for all reports in milliseconds, <code>0</code> or less for no limit.
+     */
+    private final long reportsTimeout;
+
+    /**
+     * The {@link System#nanoTime()} at which the time budget for all reports expires, or <code>0</code>
+     * if it is not started.
+     */
+    private long reportsDeadline;
+
+    /**
+     * The executor running reports with a timeout, created on first use and discarded once a report timed out.
+     */
+    private ExecutorService executor;
+
+    /**
+     * @param reportTimeout the maximum time for each report in seconds, <code>0</code> or less for no limit.
+     * @param reportsTimeout the maximum time for all reports in seconds, <code>0</code> or less for no limit.
+     */
+    ReportRenderer(int reportTimeout, int reportsTimeout) {
+        this.reportTimeout = TimeUnit.SECONDS.toMillis(reportTimeout);
+        this.reportsTimeout = TimeUnit.SECONDS.toMillis(reportsTimeout);
+    }
+
+    /**
+     * Start the time budget for all reports, anew for each generation of the reports in all locales.
+     */
+    void startTimeBudget() {
+        reportsDeadline = reportsTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reportsTimeout) : 0;
+    }
+
+    /**
+     * @return the time the next report may take in milliseconds, <code>-1</code> if it is not limited,
+     * or <code>0</code> if the time budget for all reports is exhausted.
+     */
+    long getTimeoutMillis() {
+        long timeout = reportTimeout > 0 ? reportTimeout : -1;
+
+        if (reportsDeadline != 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(reportsDeadline - System.nanoTime());
+            if (remaining <= 0) {
+                return 0;
+            }
+            timeout = timeout < 0 ? remaining : Math.min(timeout, remaining);
+        }
+
+        return timeout;
+    }
+
+    /**
+     * Render the given report as xdoc.
+     *
+     * @param reportExec not null
+     * @param locale not null
+     * @param timeout the maximum time to wait in milliseconds, <code>0</code> or less for no limit.
+     * @return the xdoc content
+     * @throws MavenReportException if the report fails
+     * @throws TimeoutException if the report did not complete in time
+     */
+    String renderXdoc(MavenReportExecution reportExec, Locale locale, long timeout)
+            throws MavenReportException, TimeoutException {
+        return timeout > 0 ? renderXdocOnWorker(reportExec, locale, timeout) : renderXdoc(reportExec, locale);
+    }
+
+    /**
+     * @param reportExec not null
+     * @param locale not null
+     * @return the xdoc content
+     * @throws MavenReportException if the report fails
+     */
+    private static String renderXdoc(MavenReportExecution reportExec, Locale locale) throws MavenReportException {
+        StringWriter sw = new StringWriter();
+
+        PdfXdocSink pdfXdocSink = new PdfXdocSink(sw);
+        try {
+            render(reportExec, locale, pdfXdocSink);
+        } finally {
+            pdfXdocSink.close();
+        }
+
+        return sw.toString();
+    }
+
+    /**
+     * see org.apache.maven.plugins.site.render.ReportDocumentRenderer#renderDocument(...)
+     *
+     * @param reportExec not null
+     * @param locale not null
+     * @param sink not null
+     * @throws MavenReportException if the report fails
+     */
+    private static void render(MavenReportExecution reportExec, Locale locale, PdfXdocSink sink)
+            throws MavenReportException {
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            if (reportExec.getClassLoader() != null) {
+                Thread.currentThread().setContextClassLoader(reportExec.getClassLoader());
+            }
+
+            reportExec.getMavenReport().generate(sink, locale);
+        } finally {
+            if (reportExec.getClassLoader() != null) {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+        }
+    }
+
+    /**
+     * Render the given report on a worker thread, cancelling it if it does not complete within the given time.
+     * <br>
+     * The worker renders to its own sink and writer: a cancelled report that goes on writing only writes to
+     * content that is discarded.
+     *
+     * @param reportExec not null
+     * @param locale not null
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return the xdoc content
+     * @throws MavenReportException if the report fails
+     * @throws TimeoutException if the report did not complete in time
+     */
+    private String renderXdocOnWorker(final MavenReportExecution reportExec, final Locale locale, long timeout)
+            throws MavenReportException, TimeoutException {
+        if (executor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "pdf-report-" + threadCount.incrementAndGet());
+                // a report ignoring the interruption must not prevent the JVM from exiting
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Future<String> future = executor.submit(() -> renderXdoc(reportExec, locale));
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            shutdown();
+            throw e;
+        } catch (InterruptedException e) {
+            shutdown();
+            Thread.currentThread().interrupt();
+            throw new MavenReportException("Interrupted while generating report", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MavenReportException) {
+                throw (MavenReportException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new MavenReportException(e.getCause().getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop the worker threads, interrupting the reports that are still running, and give them some time to stop.
+     * A report ignoring the interruption keeps its thread, but the executor is not used anymore: the next report
+     * starts on a new one.
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * A sink to render a Maven report as a generated xdoc file, with some known workarounds.
+     *
+     * @since 1.1
+     */
+    private static class PdfXdocSink extends XdocSink implements org.codehaus.doxia.sink.Sink {
+        protected PdfXdocSink(Writer writer) {
+            super(writer);
+        }
+
+        /** {@inheritDoc} */
+        public void text(String text) {
+            // workaround to fix quotes introduced with MPIR-59 (then removed in MPIR-136)
+            super.text(StringUtils.replace(text, "\u0092", "'"));
+        }
+
+        public void tableRow() {
+            // To be backward compatible: TODO add to XdocSink
+            if (!this.tableRows) {
+                tableRows(null, false);
+            }
+            super.tableRow(null);
+        }
+    }
+}
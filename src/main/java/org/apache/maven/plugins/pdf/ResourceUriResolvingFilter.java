@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.datatypes.URISpecification;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter making the resource URIs of an FO document absolute, so that the document can be rendered
+ * by a FopFactory with any base URI.
+ *
+ * @since 1.6.2
+ */
+class ResourceUriResolvingFilter extends XMLFilterImpl {
+    /**
+     * The attributes holding a resource URI.
+     */
+    static final String[] URI_ATTRIBUTES = {"src", "background-image"};
+
+    /**
+     * The URI to resolve relative resources against.
+     */
+    private final URI baseURI;
+
+    /**
+     * @param baseURI the URI to resolve relative resources against, usually the directory of the FO file.
+     */
+    ResourceUriResolvingFilter(URI baseURI) {
+        this.baseURI = baseURI;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        AttributesImpl resolved = null;
+
+        for (String name : URI_ATTRIBUTES) {
+            int index = atts.getIndex("", name);
+            if (index < 0) {
+                continue;
+            }
+
+            String value = resolve(atts.getValue(index));
+            if (value != null) {
+                if (resolved == null) {
+                    resolved = new AttributesImpl(atts);
+                }
+                resolved.setValue(index, value);
+            }
+        }
+
+        super.startElement(uri, localName, qName, resolved == null ? atts : resolved);
+    }
+
+    /**
+     * @param value an URI attribute value, i.e. an URI or an <code>url(...)</code> specification.
+     * @return the absolute URI, or <code>null</code> if the value is already absolute or not an URI.
+     */
+    private String resolve(String value) {
+        String url = URISpecification.getURL(value).trim();
+        if (url.isEmpty() || "none".equals(url) || "inherit".equals(url)) {
+            return null;
+        }
+
+        try {
+            URI uri = InternalResourceResolver.cleanURI(url);
+            if (uri.isAbsolute()) {
+                return null;
+            }
+
+            return baseURI.resolve(uri).toString();
+        } catch (URISyntaxException e) {
+            // let FOP report it
+            return null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.Writer;
+
+import org.apache.maven.doxia.module.fo.FoAggregateSink;
+import org.apache.maven.doxia.sink.SinkEventAttributes;
+
+/**
+ * An aggregate FO sink starting a new page sequence every given number of top-level sections of a document.
+ * <br>
+ * The aggregate sink writes one page sequence per document, and FOP keeps a page sequence in memory until
+ * it is laid out completely: smaller page sequences bound the memory used by large documents. The new page
+ * sequence continues the page numbers, headers and footers of the document, but starts on a new page.
+ *
+ * @since 1.6.2
+ */
+class SectionPageSequenceSink extends FoAggregateSink {
+    /** The number of top-level sections per page sequence. */
+    private final int sectionsPerPageSequence;
+
+    /** The number of top-level sections of the current document. */
+    private int sections;
+
+    /**
+     * @param writer not null
+     * @param sectionsPerPageSequence the number of top-level sections per page sequence, greater than 0.
+     */
+    SectionPageSequenceSink(Writer writer, int sectionsPerPageSequence) {
+        super(writer);
+        this.sectionsPerPageSequence = sectionsPerPageSequence;
+    }
+
+    @Override
+    public void body(SinkEventAttributes attributes) {
+        sections = 0;
+        super.body(attributes);
+    }
+
+    @Override
+    public void section(int level, SinkEventAttributes attributes) {
+        if (level == 1) {
+            if (sections > 0 && sections % sectionsPerPageSequence == 0) {
+                newPageSequence();
+            }
+            sections++;
+        }
+
+        super.section(level, attributes);
+    }
+
+    /**
+     * End the page sequence of the current document, and start a new one without chapter heading.
+     */
+    private void newPageSequence() {
+        writeEOL();
+        writeEndTag(BLOCK_TAG);
+        writeEndTag(FLOW_TAG);
+        writeEndTag(PAGE_SEQUENCE_TAG);
+
+        writeln("<fo:page-sequence initial-page-number=\"auto\" master-reference=\"body\">");
+        regionBefore(getHeaderText());
+        regionAfter(getFooterText());
+        writeln("<fo:flow flow-name=\"xsl-region-body\">");
+        writeStartTag(BLOCK_TAG, "");
+    }
+}
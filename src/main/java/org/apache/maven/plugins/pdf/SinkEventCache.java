@@ -0,0 +1,515 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.parser.ParseException;
+import org.apache.maven.doxia.parser.Parser;
+import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkEventAttributes;
+import org.apache.maven.doxia.sink.impl.SinkEventAttributeSet;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Caches the sink events of the parsed source documents, so that a document is only parsed once and its events
+ * are replayed when its title is read, when it is validated and when it is rendered, in this build and in the
+ * later ones.
+ * <br>
+ * The events are recorded in a compact binary file named after the hash of the source content, of the parser
+ * and of the parse settings. Documents using macros are not cached, since macros like <code>snippet</code>
+ * read other files, nor are the documents whose events have arguments that can not be recorded.
+ *
+ * @since 1.6.2
+ */
+class SinkEventCache {
+    /**
+     * The version of the recording format.
+     */
+    private static final String FORMAT = "1";
+
+    /**
+     * The recorded sink methods, by index.
+     */
+    private static final List<Method> METHODS;
+
+    /**
+     * The index of the recorded sink methods.
+     */
+    private static final Map<Method, Integer> INDEX = new HashMap<>();
+
+    /**
+     * The signatures of the recorded sink methods, so that the recordings are not replayed to another Sink API.
+     */
+    private static final String SIGNATURES;
+
+    private static final byte NULL = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte INTEGER = 2;
+
+    private static final byte ATTRIBUTES = 3;
+
+    static {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : Sink.class.getMethods()) {
+            // not a sink event
+            if (!"enableLogging".equals(method.getName())) {
+                methods.add(method);
+            }
+        }
+        methods.sort(Comparator.comparing(Method::toString));
+
+        StringBuilder signatures = new StringBuilder();
+        for (Method method : methods) {
+            INDEX.put(method, INDEX.size());
+            signatures.append(method).append('\n');
+        }
+        METHODS = Collections.unmodifiableList(methods);
+        SIGNATURES = signatures.toString();
+    }
+
+    private final File directory;
+
+    /**
+     * The keys of the sink events replayed or stored since the cache was created.
+     */
+    private final Set<String> usedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * @param directory the directory to cache the sink events in, <code>null</code> to disable the cache.
+     */
+    SinkEventCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param source the source document, not null.
+     * @param parser the parser of the document, not null.
+     * @param settings the parse settings the events depend on, like the encoding, not null.
+     * @return the key of the sink events of the document, or <code>null</code> if they can not be cached.
+     * @throws IOException if any
+     */
+    String getKey(File source, Parser parser, String settings) throws IOException {
+        return directory == null ? null : getKey(Files.readAllBytes(source.toPath()), parser, settings);
+    }
+
+    /**
+     * @param content the content of the source document, not null.
+     * @param parser the parser of the document, not null.
+     * @param settings the parse settings the events depend on, like the encoding, not null.
+     * @return the key of the sink events of the document, or <code>null</code> if they can not be cached.
+     */
+    String getKey(byte[] content, Parser parser, String settings) {
+        if (directory == null) {
+            return null;
+        }
+
+        String text = new String(content, StandardCharsets.ISO_8859_1);
+        if (text.contains("%{") || text.contains("<macro")) {
+            return null;
+        }
+
+        Package parserPackage = parser.getClass().getPackage();
+        return ContentHashHelper.getContentHash(
+                content,
+                FORMAT + " " + settings + " " + parser.getClass().getName() + " "
+                        + (parserPackage == null ? null : parserPackage.getImplementationVersion()) + "\n"
+                        + SIGNATURES);
+    }
+
+    /**
+     * Parse an XML source document to the given sink, or replay its cached events.
+     *
+     * @param doxia not null
+     * @param source the source document, not null.
+     * @param parserId the id of the parser of the document, not null.
+     * @param sink not null
+     * @throws ParseException if the document is not valid
+     * @throws ParserNotFoundException if the parser does not exist
+     * @throws IOException if any
+     */
+    void parse(Doxia doxia, File source, String parserId, Sink sink)
+            throws ParseException, ParserNotFoundException, IOException {
+        Parser parser = doxia.getParser(parserId);
+        String key = getKey(source, parser, "xml");
+        if (key != null && replay(key, sink)) {
+            return;
+        }
+
+        Recorder recorder = key == null ? null : new Recorder(sink);
+        try (Reader reader = ReaderFactory.newXmlReader(source)) {
+            // the parsers are singletons keeping the state of the parsed document: serialize the modules of
+            // parallel builds
+            synchronized (parser) {
+                doxia.parse(reader, parserId, recorder == null ? sink : recorder.getSink());
+            }
+        }
+        if (recorder != null) {
+            put(key, recorder);
+        }
+    }
+
+    /**
+     * Replay the cached events of a document.
+     *
+     * @param key the key of the sink events, not null.
+     * @param sink not null
+     * @return <code>true</code> if the events were replayed, <code>false</code> if they are not cached.
+     * @throws IOException if any
+     */
+    boolean replay(String key, Sink sink) throws IOException {
+        File cached = getFile(key);
+        if (!cached.isFile()) {
+            return false;
+        }
+
+        // read the whole recording first, so that a truncated file does not send half of the events
+        List<Method> methods = new ArrayList<>();
+        List<Object[]> arguments = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cached.toPath())))) {
+            for (int index = in.readShort(); index >= 0; index = in.readShort()) {
+                Method method = METHODS.get(index);
+                Class<?>[] types = method.getParameterTypes();
+                Object[] args = new Object[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    args[i] = read(in, types[i]);
+                }
+                methods.add(method);
+                arguments.add(args);
+            }
+        } catch (IOException | IndexOutOfBoundsException e) {
+            return false;
+        }
+
+        usedKeys.add(key);
+        for (int i = 0; i < methods.size(); i++) {
+            try {
+                methods.get(i).invoke(sink, arguments.get(i));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the events of a document, if they could all be recorded.
+     *
+     * @param key the key of the sink events, not null.
+     * @param recorder the recorder the document has been parsed to, not null.
+     * @throws IOException if any
+     */
+    void put(String key, Recorder recorder) throws IOException {
+        if (!recorder.isRecordable()) {
+            return;
+        }
+
+        File cached = getFile(key);
+        // concurrent builds may share the cache
+        directory.mkdirs();
+        File tmp = File.createTempFile(cached.getName(), ".tmp", directory);
+        Files.write(tmp.toPath(), recorder.getEvents());
+        Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        usedKeys.add(key);
+    }
+
+    /**
+     * Delete the cached events that were neither replayed nor stored since the cache was created, i.e. the
+     * ones of the documents changed or removed since the previous build, so that the cache does not grow
+     * with each change of the site. To be called once the whole site is rendered.
+     *
+     * @return the number of deleted recordings.
+     */
+    int prune() {
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".events")
+                    && !usedKeys.contains(name.substring(0, name.length() - ".events".length()))
+                    && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + ".events");
+    }
+
+    private static Object read(DataInputStream in, Class<?> type) throws IOException {
+        if (type == String.class) {
+            return readString(in);
+        } else if (type == int.class) {
+            return in.readInt();
+        } else if (type == boolean.class) {
+            return in.readBoolean();
+        } else if (type == int[].class) {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readInt();
+            }
+            return values;
+        } else if (type == Object[].class) {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            Object[] values = new Object[length];
+            for (int i = 0; i < length; i++) {
+                byte tag = in.readByte();
+                if (tag == STRING) {
+                    values[i] = readString(in);
+                } else if (tag == INTEGER) {
+                    values[i] = in.readInt();
+                } else if (tag == ATTRIBUTES) {
+                    values[i] = readAttributes(in);
+                } else if (tag != NULL) {
+                    throw new IOException("Unknown tag " + tag);
+                }
+            }
+            return values;
+        } else if (type == SinkEventAttributes.class) {
+            return readAttributes(in);
+        }
+        throw new IOException("Unknown argument type " + type);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static SinkEventAttributes readAttributes(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        SinkEventAttributeSet attributes = new SinkEventAttributeSet(count);
+        for (int i = 0; i < count; i++) {
+            attributes.addAttribute(readString(in), readString(in));
+        }
+        return attributes;
+    }
+
+    private static RuntimeException unwrap(InvocationTargetException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+        }
+        return new IllegalStateException(e.getCause());
+    }
+
+    /**
+     * Forwards the sink events to a sink while recording them.
+     */
+    static class Recorder implements InvocationHandler {
+        private final Sink sink;
+
+        private final Sink proxy;
+
+        private final ByteArrayOutputStream events = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(events);
+
+        private boolean recordable = true;
+
+        /**
+         * @param sink the sink to forward the events to, not null.
+         */
+        Recorder(Sink sink) {
+            this.sink = sink;
+            this.proxy = (Sink) Proxy.newProxyInstance(Sink.class.getClassLoader(), new Class<?>[] {Sink.class}, this);
+        }
+
+        /**
+         * @return the sink to parse the document to.
+         */
+        Sink getSink() {
+            return proxy;
+        }
+
+        /**
+         * @return <code>true</code> if all the events have been recorded.
+         */
+        boolean isRecordable() {
+            return recordable;
+        }
+
+        /**
+         * @return the recorded events.
+         */
+        byte[] getEvents() {
+            try {
+                out.writeShort(-1);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return events.toByteArray();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = INDEX.get(method);
+            if (index != null && recordable) {
+                record(index, method.getParameterTypes(), args == null ? new Object[0] : args);
+            }
+
+            try {
+                return method.invoke(sink, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void record(int index, Class<?>[] types, Object[] args) throws IOException {
+            out.writeShort(index);
+            for (int i = 0; i < types.length && recordable; i++) {
+                recordable = write(types[i], args[i]);
+            }
+        }
+
+        private boolean write(Class<?> type, Object value) throws IOException {
+            if (type == String.class) {
+                writeString((String) value);
+            } else if (type == int.class) {
+                out.writeInt((Integer) value);
+            } else if (type == boolean.class) {
+                out.writeBoolean((Boolean) value);
+            } else if (type == int[].class) {
+                int[] values = (int[]) value;
+                out.writeInt(values == null ? -1 : values.length);
+                if (values != null) {
+                    for (int v : values) {
+                        out.writeInt(v);
+                    }
+                }
+            } else if (type == Object[].class) {
+                Object[] values = (Object[]) value;
+                out.writeInt(values == null ? -1 : values.length);
+                if (values != null) {
+                    for (Object v : values) {
+                        if (v == null) {
+                            out.writeByte(NULL);
+                        } else if (v instanceof String) {
+                            out.writeByte(STRING);
+                            writeString((String) v);
+                        } else if (v instanceof Integer) {
+                            out.writeByte(INTEGER);
+                            out.writeInt((Integer) v);
+                        } else if (v instanceof SinkEventAttributes) {
+                            out.writeByte(ATTRIBUTES);
+                            if (!writeAttributes((SinkEventAttributes) v)) {
+                                return false;
+                            }
+                        } else {
+                            return false;
+                        }
+                    }
+                }
+            } else if (type == SinkEventAttributes.class) {
+                return writeAttributes((SinkEventAttributes) value);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        private boolean writeAttributes(SinkEventAttributes attributes) throws IOException {
+            if (attributes == null) {
+                out.writeInt(-1);
+                return true;
+            }
+            if (attributes.getResolveParent() != null) {
+                return false;
+            }
+
+            List<Object> names = new ArrayList<>();
+            for (Enumeration<?> e = attributes.getAttributeNames(); e.hasMoreElements(); ) {
+                Object name = e.nextElement();
+                if (!(name instanceof String) || !(attributes.getAttribute(name) instanceof String)) {
+                    return false;
+                }
+                names.add(name);
+            }
+
+            out.writeInt(names.size());
+            for (Object name : names) {
+                writeString((String) name);
+                writeString((String) attributes.getAttribute(name));
+            }
+            return true;
+        }
+    }
+}
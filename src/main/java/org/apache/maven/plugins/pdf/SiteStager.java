@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import javax.swing.text.AttributeSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Stages the <code>site</code> and <code>generated-site</code> files into the <code>site.tmp</code> directory
+ * rendered to PDF, the files in <code>site</code> taking precedence, and prepares the staged images for the
+ * renderer: SVG images are rasterized and bitmaps optimized, if enabled.
+ *
+ * @since 1.6.2
+ */
+class SiteStager {
+    private final File siteDirectory;
+
+    private final List<Locale> locales;
+
+    private final Locale defaultLocale;
+
+    private final Log log;
+
+    /**
+     * The cache directory of the rasterized SVG images, <code>null</code> if they are not rasterized.
+     */
+    private File svgCacheDirectory;
+
+    private int svgResolution;
+
+    /**
+     * The cache directory of the optimized images, <code>null</code> if they are not optimized.
+     */
+    private File imageCacheDirectory;
+
+    private int imageResolution;
+
+    private float jpegQuality;
+
+    /**
+     * The rasterizer of the staged SVG images, created on first use.
+     */
+    private SvgRasterizer svgRasterizer;
+
+    /**
+     * The optimizer of the staged images, created on first use.
+     */
+    private ImageOptimizer imageOptimizer;
+
+    /**
+     * @param siteDirectory the <code>site</code> directory, not null.
+     * @param locales the available locales, not null.
+     * @param defaultLocale the default locale, not null.
+     * @param log not null
+     */
+    SiteStager(File siteDirectory, List<Locale> locales, Locale defaultLocale, Log log) {
+        this.siteDirectory = siteDirectory;
+        this.locales = locales;
+        this.defaultLocale = defaultLocale;
+        this.log = log;
+    }
+
+    /**
+     * Rasterize the staged SVG images.
+     *
+     * @param cacheDirectory the cache directory of the rasterized images, not null.
+     * @param resolution the resolution of the rasterized images in dpi.
+     */
+    void setSvgRasterization(File cacheDirectory, int resolution) {
+        this.svgCacheDirectory = cacheDirectory;
+        this.svgResolution = resolution;
+    }
+
+    /**
+     * Optimize the staged images.
+     *
+     * @param cacheDirectory the cache directory of the optimized images, not null.
+     * @param resolution the target resolution of the images in dpi.
+     * @param jpegQuality the quality of the re-encoded JPEG images.
+     */
+    void setImageOptimization(File cacheDirectory, int resolution, float jpegQuality) {
+        this.imageCacheDirectory = cacheDirectory;
+        this.imageResolution = resolution;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Copy all site and generated-site files in the tmpSiteDirectory.
+     * <br>
+     * <b>Note</b>: ignore copying of <code>generated-site</code> files if they already exist in the
+     * <code>site</code> dir.
+     *
+     * @param tmpSiteDir not null
+     * @param generatedSiteDirectory the <code>generated-site</code> directory, not null.
+     * @throws IOException if any
+     */
+    void stage(File tmpSiteDir, File generatedSiteDirectory) throws IOException {
+        // safety
+        tmpSiteDir.mkdirs();
+
+        // copy site
+        if (siteDirectory.exists()) {
+            FileUtils.copyDirectoryStructure(siteDirectory, tmpSiteDir);
+        }
+
+        // Remove SCM files
+        List<String> files = FileUtils.getFileAndDirectoryNames(
+                tmpSiteDir, FileUtils.getDefaultExcludesAsString(), null, true, true, true, true);
+        for (final String fileName : files) {
+            final File file = new File(fileName);
+
+            if (file.isDirectory()) {
+                FileUtils.deleteDirectory(file);
+            } else {
+                file.delete();
+            }
+        }
+
+        copySiteDir(generatedSiteDirectory, tmpSiteDir);
+
+        prepareImages(tmpSiteDir, tmpSiteDir);
+    }
+
+    /**
+     * Rasterize and optimize the staged images, if enabled.
+     *
+     * @param tmpSiteDir the staged site directory, not null.
+     * @param file a staged image or directory, not null.
+     * @throws IOException if any
+     */
+    void prepareImages(File tmpSiteDir, File file) throws IOException {
+        if (svgCacheDirectory != null) {
+            if (svgRasterizer == null) {
+                svgRasterizer = new SvgRasterizer(svgCacheDirectory, svgResolution, log);
+            }
+
+            svgRasterizer.rasterize(file);
+        }
+
+        if (imageCacheDirectory != null) {
+            if (imageOptimizer == null) {
+                AttributeSet page = FoLayoutHelper.getPageMaster(tmpSiteDir);
+                imageOptimizer = new ImageOptimizer(
+                        imageCacheDirectory,
+                        FoLayoutHelper.getBodyWidth(page),
+                        FoLayoutHelper.getBodyHeight(page),
+                        imageResolution,
+                        jpegQuality,
+                        log);
+            }
+
+            imageOptimizer.optimize(file);
+        }
+    }
+
+    /**
+     * Copy the from site dir to the to dir.
+     *
+     * @param from not null
+     * @param to not null
+     * @throws IOException if any
+     */
+    void copySiteDir(final File from, final File to) throws IOException {
+        if (from == null || !from.exists()) {
+            return;
+        }
+
+        // copy generated-site
+        for (final Locale locale : locales) {
+            String excludes = getDefaultExcludesWithLocales(locales, defaultLocale);
+            List<String> siteFiles = siteDirectory.exists()
+                    ? FileUtils.getFileNames(siteDirectory, "**/*", excludes, false)
+                    : new ArrayList<>();
+            File siteDirectoryLocale = new File(siteDirectory, locale.getLanguage());
+            if (!locale.getLanguage().equals(defaultLocale.getLanguage()) && siteDirectoryLocale.exists()) {
+                siteFiles = FileUtils.getFileNames(siteDirectoryLocale, "**/*", excludes, false);
+            }
+
+            List<String> generatedSiteFiles = FileUtils.getFileNames(from, "**/*", excludes, false);
+            File fromLocale = new File(from, locale.getLanguage());
+            if (!locale.getLanguage().equals(defaultLocale.getLanguage()) && fromLocale.exists()) {
+                generatedSiteFiles = FileUtils.getFileNames(fromLocale, "**/*", excludes, false);
+            }
+
+            for (final String generatedSiteFile : generatedSiteFiles) {
+                if (siteFiles.contains(generatedSiteFile)) {
+                    log.warn("Generated-site already contains a file in site: " + generatedSiteFile
+                            + ". Ignoring copying it!");
+                    continue;
+                }
+
+                if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
+                    if (fromLocale.exists()) {
+                        File in = new File(fromLocale, generatedSiteFile);
+                        File out = new File(new File(to, locale.getLanguage()), generatedSiteFile);
+                        out.getParentFile().mkdirs();
+                        FileUtils.copyFile(in, out);
+                    }
+                } else {
+                    File in = new File(from, generatedSiteFile);
+                    File out = new File(to, generatedSiteFile);
+                    out.getParentFile().mkdirs();
+                    FileUtils.copyFile(in, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param locales the list of locales dir to exclude
+     * @param defaultLocale the default locale.
+     * @return the comma separated list of default excludes and locales dir.
+     * @see FileUtils#getDefaultExcludesAsString()
+     */
+    static String getDefaultExcludesWithLocales(List<Locale> locales, Locale defaultLocale) {
+        StringBuilder excludesLocales = new StringBuilder(FileUtils.getDefaultExcludesAsString());
+        for (final Locale locale : locales) {
+            if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
+                excludesLocales.append(",**/").append(locale.getLanguage()).append("/*");
+            }
+        }
+
+        return excludesLocales.toString();
+    }
+}
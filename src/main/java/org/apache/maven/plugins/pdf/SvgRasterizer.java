@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.batik.transcoder.ErrorHandler;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.ImageTranscoder;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Rasterizes the SVG images of the staged site to PNG at a given resolution, so that FOP embeds a bitmap
+ * instead of rendering each SVG with Batik for every document.
+ * <br>
+ * The PNG replaces the content of the staged <code>.svg</code> file, so that the references of the documents
+ * stay valid: FOP detects the image format from the content. The printed size is the one FOP gives to the SVG.
+ * <br>
+ * Results are cached by content hash, so that unchanged diagrams are only rasterized once.
+ *
+ * @since 1.6.2
+ */
+class SvgRasterizer {
+    /**
+     * The resolution FOP gives to SVG pixels, i.e. its default source resolution.
+     */
+    private static final float SVG_PIXEL_RESOLUTION = 72f;
+
+    private final File cacheDirectory;
+
+    /** The target resolution in dpi. */
+    private final int resolution;
+
+    private final Log log;
+
+    /**
+     * @param cacheDirectory the directory to cache rasterized images in, not null.
+     * @param resolution the target resolution in dpi.
+     * @param log not null
+     */
+    SvgRasterizer(File cacheDirectory, int resolution, Log log) {
+        this.cacheDirectory = cacheDirectory;
+        this.resolution = resolution;
+        this.log = log;
+    }
+
+    /**
+     * Rasterize the given SVG, or all SVGs in the given directory.
+     *
+     * @param file a staged SVG or directory, not null.
+     * @throws IOException if any
+     */
+    void rasterize(File file) throws IOException {
+        if (file.isDirectory()) {
+            @SuppressWarnings("unchecked")
+            List<File> files = FileUtils.getFiles(file, "**/*", null);
+            for (File svg : files) {
+                if (isSvg(svg)) {
+                    rasterizeSvg(svg);
+                }
+            }
+        } else if (file.isFile() && isSvg(file)) {
+            rasterizeSvg(file);
+        }
+    }
+
+    /**
+     * @param file not null
+     * @return <code>true</code> if the file is an SVG image, by extension.
+     */
+    private static boolean isSvg(File file) {
+        return "svg".equals(FileUtils.getExtension(file.getName()).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param svg a staged SVG, not null.
+     * @throws IOException if any
+     */
+    private void rasterizeSvg(File svg) throws IOException {
+        byte[] content = Files.readAllBytes(svg.toPath());
+
+        File cached = new File(cacheDirectory, ContentHashHelper.getContentHash(content, resolution + "dpi") + ".png");
+        if (!cached.exists()) {
+            byte[] png;
+            try {
+                png = transcode(svg);
+            } catch (TranscoderException e) {
+                // FOP gets the SVG, and reports the error if it can not render it either
+                Exception cause = e.getException() == null ? e : e.getException();
+                log.warn("Unable to rasterize " + svg + ", keeping it as SVG: " + cause.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Unable to rasterize " + svg + ", keeping it as SVG: " + e.getMessage());
+                return;
+            }
+
+            // concurrent builds may share the cache
+            cacheDirectory.mkdirs();
+            File tmp = File.createTempFile(cached.getName(), ".tmp", cacheDirectory);
+            Files.write(tmp.toPath(), png);
+            Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Using cached rasterization of " + svg);
+        }
+
+        Files.copy(cached.toPath(), svg.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param svg not null
+     * @return the PNG content
+     * @throws TranscoderException if the SVG could not be rendered
+     * @throws IOException if any
+     */
+    private byte[] transcode(final File svg) throws TranscoderException, IOException {
+        PngTranscoder transcoder = new PngTranscoder();
+        transcoder.setErrorHandler(new ErrorHandler() {
+            @Override
+            public void error(TranscoderException e) throws TranscoderException {
+                throw e;
+            }
+
+            @Override
+            public void fatalError(TranscoderException e) throws TranscoderException {
+                throw e;
+            }
+
+            @Override
+            public void warning(TranscoderException e) {
+                log.debug("Warning while rasterizing " + svg + ": " + e.getMessage());
+            }
+        });
+        // the size of the SVG units as computed by FOP
+        transcoder.addTranscodingHint(SVGAbstractTranscoder.KEY_PIXEL_UNIT_TO_MILLIMETER, 25.4f / SVG_PIXEL_RESOLUTION);
+        transcoder.transcode(new TranscoderInput(svg.toURI().toString()), null);
+
+        return ImageOptimizer.write(transcoder.image, "png", 25.4 / resolution, 1f);
+    }
+
+    /**
+     * A transcoder rendering the SVG at the target resolution into a BufferedImage.
+     */
+    private final class PngTranscoder extends ImageTranscoder {
+        private BufferedImage image;
+
+        @Override
+        protected void setImageSize(float docWidth, float docHeight) {
+            super.setImageSize(docWidth, docHeight);
+
+            // from SVG pixels to pixels at the target resolution
+            width = width * resolution / SVG_PIXEL_RESOLUTION;
+            height = height * resolution / SVG_PIXEL_RESOLUTION;
+        }
+
+        @Override
+        public BufferedImage createImage(int w, int h) {
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        @Override
+        public void writeImage(BufferedImage img, TranscoderOutput output) {
+            this.image = img;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.doxia.document.DocumentTOC;
+import org.apache.maven.doxia.document.DocumentTOCItem;
+
+/**
+ * Selects the Maven reports referenced by the TOC of a document descriptor, so that the other reports are
+ * not generated.
+ * <br>
+ * A TOC item references a report when its <code>ref</code>, without fragment and extension, is the output
+ * name of the report, i.e. <code>dependencies.html</code> or <code>./dependencies</code> reference the
+ * <code>dependencies</code> report.
+ *
+ * @since 1.6.2
+ */
+class TocReportFilter {
+    /** The referenced output names. */
+    private final Set<String> outputNames = new HashSet<>();
+
+    /**
+     * @param toc the TOC of the document descriptor, may be null.
+     * @param whitelist the output names of the reports to generate even if not referenced, may be null.
+     */
+    TocReportFilter(DocumentTOC toc, Collection<String> whitelist) {
+        if (toc != null) {
+            addItems(toc.getItems());
+        }
+        if (whitelist != null) {
+            for (String outputName : whitelist) {
+                outputNames.add(getOutputName(outputName));
+            }
+        }
+    }
+
+    private void addItems(List<DocumentTOCItem> items) {
+        if (items == null) {
+            return;
+        }
+
+        for (DocumentTOCItem item : items) {
+            if (item.getRef() != null) {
+                outputNames.add(getOutputName(item.getRef()));
+            }
+            addItems(item.getItems());
+        }
+    }
+
+    /**
+     * @param outputName the output name of a report, not null.
+     * @return <code>true</code> if the report is referenced by the TOC or whitelisted.
+     */
+    boolean accept(String outputName) {
+        return outputNames.contains(getOutputName(outputName));
+    }
+
+    /**
+     * @param ref a TOC reference or an output name, not null.
+     * @return the output name referenced, without fragment, leading <code>./</code> nor extension.
+     */
+    static String getOutputName(String ref) {
+        String outputName = ref.trim().replace('\\', '/');
+
+        int fragment = outputName.indexOf('#');
+        if (fragment >= 0) {
+            outputName = outputName.substring(0, fragment);
+        }
+        while (outputName.startsWith("./")) {
+            outputName = outputName.substring(2);
+        }
+
+        int extension = outputName.lastIndexOf('.');
+        if (extension > outputName.lastIndexOf('/')) {
+            outputName = outputName.substring(0, extension);
+        }
+        return outputName;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Reporting;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * The up to date check of the PDFs generated in a working directory: the fingerprint of their inputs is compared
+ * with the one saved by the previous build once all its PDFs were generated.
+ * <br>
+ * The files are fingerprinted by their path, size and modification time, except the fonts, see
+ * {@link #addFonts(List)}.
+ *
+ * @since 1.6.2
+ */
+class UpToDateCheck {
+    private final File workingDirectory;
+
+    private final StringBuilder inputs = new StringBuilder();
+
+    /**
+     * @param workingDirectory the working directory of the generated PDFs, not null.
+     */
+    UpToDateCheck(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * @param name the name of the parameter, not null.
+     * @param value the value of the parameter, may be null.
+     */
+    void addParameter(String name, Object value) {
+        inputs.append(name).append('=').append(value).append('\n');
+    }
+
+    /**
+     * Add the fonts, with the content of their files, as a font may be replaced by another version with the same
+     * size and modification time.
+     *
+     * @param fonts may be null
+     * @throws IOException if a font can not be read.
+     */
+    void addFonts(List<Font> fonts) throws IOException {
+        if (fonts == null) {
+            return;
+        }
+
+        for (Font font : fonts) {
+            addParameter("font", font + " kerning=" + font.isKerning());
+            GeneratedPdfHelper.appendContentFingerprint(inputs, font.getFile());
+        }
+    }
+
+    /**
+     * @param file a file or a directory of sources, may be null.
+     */
+    void addFile(File file) {
+        GeneratedPdfHelper.appendFingerprint(inputs, file);
+    }
+
+    /**
+     * @param name the role of the artifact, not null.
+     * @param artifact may be null
+     */
+    void addArtifact(String name, Artifact artifact) {
+        if (artifact != null) {
+            addParameter(name, artifact.getId());
+            addFile(artifact.getFile());
+        }
+    }
+
+    /**
+     * Add the POM of the project and of its parents.
+     *
+     * @param project not null
+     */
+    void addProject(MavenProject project) {
+        addParameter("properties", new TreeMap<>(project.getProperties()));
+
+        addFile(project.getFile());
+        for (MavenProject parent = project.getParent(); parent != null; parent = parent.getParent()) {
+            addParameter("parent", parent.getId());
+            addFile(parent.getFile());
+        }
+    }
+
+    /**
+     * Add the inputs of the Maven reports: their configuration, and the sources and dependencies of the project.
+     *
+     * @param project not null
+     * @param reporting the effective reporting section, may be null.
+     */
+    void addReportInputs(MavenProject project, Reporting reporting) {
+        GeneratedPdfHelper.appendFingerprint(inputs, reporting);
+        for (String sourceRoot : project.getCompileSourceRoots()) {
+            addFile(new File(sourceRoot));
+        }
+        for (String sourceRoot : project.getTestCompileSourceRoots()) {
+            addFile(new File(sourceRoot));
+        }
+        for (Artifact artifact : project.getArtifacts()) {
+            inputs.append(artifact.getId()).append('\n');
+            addFile(artifact.getFile());
+        }
+    }
+
+    /**
+     * @return the fingerprint of the inputs added so far.
+     */
+    String getFingerprint() {
+        return ContentHashHelper.getContentHash(inputs.toString().getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    /**
+     * @param locales the locales of the generated PDFs, not null.
+     * @return <code>true</code> if the output of the previous build is complete and was generated from the same
+     * inputs.
+     * @throws IOException if the output of the previous build can not be read.
+     */
+    boolean isUpToDate(List<Locale> locales) throws IOException {
+        if (!getFingerprint().equals(GeneratedPdfHelper.loadFingerprint(workingDirectory))) {
+            return false;
+        }
+        if (!new File(workingDirectory, "site.tmp").isDirectory()) {
+            return false;
+        }
+        for (Locale locale : locales) {
+            if (GeneratedPdfHelper.getGeneratedPdf(workingDirectory, locale) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget the fingerprint of the previous build, as its output is being replaced.
+     */
+    void invalidate() {
+        GeneratedPdfHelper.deleteFingerprint(workingDirectory);
+    }
+
+    /**
+     * Save the fingerprint, once all PDFs are generated.
+     *
+     * @throws IOException if any
+     */
+    void save() throws IOException {
+        GeneratedPdfHelper.saveFingerprint(workingDirectory, getFingerprint());
+    }
+}
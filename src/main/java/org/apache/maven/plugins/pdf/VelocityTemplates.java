@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.doxia.docrenderer.DocumentRendererContext;
+import org.apache.maven.doxia.docrenderer.DocumentRendererException;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.event.implement.IncludeRelativePath;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.log.NullLogChute;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Evaluates the Velocity templates of the <code>.vm</code> sources, like Doxia, but parses each template once
+ * for all the locales of an execution, and copies the values of the base render context to a Velocity context
+ * once, the values of each locale being added to it.
+ * <br>
+ * The templates are compiled in memory only, Velocity not being able to store them. The Doxia events of their
+ * output are cached across builds by <code>cacheSinkEvents</code>.
+ *
+ * @since 1.6.2
+ */
+class VelocityTemplates {
+    /**
+     * The compiled templates, by path and content hash.
+     */
+    private final Map<String, Template> templates = new HashMap<>();
+
+    /**
+     * The Velocity runtimes, by file system root of their templates.
+     */
+    private final Map<Path, RuntimeInstance> runtimes = new HashMap<>();
+
+    /**
+     * The base render context of the last Velocity context created.
+     */
+    private DocumentRendererContext baseContext;
+
+    /**
+     * The Velocity context with the values of <code>baseContext</code>, not changed by the templates.
+     */
+    private Context baseVelocityContext;
+
+    /**
+     * Evaluate a Velocity template.
+     *
+     * @param source the template, not null.
+     * @param encoding the encoding of the template, may be null for the platform encoding.
+     * @param context the render context, may be null.
+     * @return the output of the template.
+     * @throws DocumentRendererException if the template is not valid
+     * @throws IOException if any
+     */
+    String merge(File source, String encoding, DocumentRendererContext context)
+            throws DocumentRendererException, IOException {
+        String text;
+        try (Reader reader = encoding == null
+                ? ReaderFactory.newPlatformReader(source)
+                : ReaderFactory.newReader(source, encoding)) {
+            text = IOUtil.toString(reader);
+        }
+
+        StringWriter writer = new StringWriter();
+        try {
+            getTemplate(source, text).merge(getVelocityContext(context), writer);
+        } catch (ParseException | RuntimeException e) {
+            throw new DocumentRendererException(
+                    "Error parsing Velocity file " + source.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+        return writer.toString();
+    }
+
+    private synchronized Template getTemplate(File source, String text) throws ParseException {
+        Path path = source.getAbsoluteFile().toPath();
+        String key = ContentHashHelper.getContentHash(text.getBytes(StandardCharsets.UTF_8), path.toString());
+        Template template = templates.get(key);
+        if (template == null) {
+            Path root = path.getRoot();
+            RuntimeInstance runtime = runtimes.get(root);
+            if (runtime == null) {
+                runtime = new RuntimeInstance();
+                runtime.init(getProperties(root));
+                runtimes.put(root, runtime);
+            }
+            // relative to the root, the included templates being resolved against its name
+            String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+
+            template = new Template();
+            template.setRuntimeServices(runtime);
+            template.setName(name);
+            template.setData(runtime.parse(new StringReader(text), name));
+            template.initDocument();
+            templates.put(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * @param root the file system root of the templates, not null.
+     * @return the configuration of the Velocity component of Doxia, loading the files from the given root, so that
+     * <code>#parse</code> and <code>#include</code> resolve relative paths against the including template.
+     */
+    private static Properties getProperties(Path root) {
+        Properties properties = new Properties();
+        properties.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath,file");
+        properties.setProperty(
+                "classpath." + RuntimeConstants.RESOURCE_LOADER + ".class", ClasspathResourceLoader.class.getName());
+        properties.setProperty(
+                "file." + RuntimeConstants.RESOURCE_LOADER + ".class", FileResourceLoader.class.getName());
+        properties.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, root.toString());
+        properties.setProperty(RuntimeConstants.EVENTHANDLER_INCLUDE, IncludeRelativePath.class.getName());
+        properties.setProperty(RuntimeConstants.RUNTIME_LOG_REFERENCE_LOG_INVALID, "false");
+        properties.setProperty(RuntimeConstants.VM_MESSAGES_ON, "false");
+        properties.setProperty(RuntimeConstants.RESOURCE_MANAGER_LOGWHENFOUND, "false");
+        properties.setProperty(RuntimeConstants.VM_PERM_ALLOW_INLINE_REPLACE_GLOBAL, "true");
+        // no global macro library
+        properties.setProperty(RuntimeConstants.VM_LIBRARY, "");
+        properties.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, NullLogChute.class.getName());
+        return properties;
+    }
+
+    private synchronized Context getVelocityContext(DocumentRendererContext context) {
+        if (context == null) {
+            return new VelocityContext();
+        }
+
+        if (!(context instanceof OverlayRendererContext)) {
+            return new VelocityContext(toMap(context, context.getKeys()));
+        }
+
+        OverlayRendererContext overlay = (OverlayRendererContext) context;
+        if (overlay.getBase() != baseContext) {
+            baseContext = overlay.getBase();
+            baseVelocityContext = new VelocityContext(toMap(baseContext, baseContext.getKeys()));
+        }
+        // the values set by a template are kept in the outer context
+        return new VelocityContext(toMap(overlay, overlay.getOverlayKeys()), baseVelocityContext);
+    }
+
+    private static Map<String, Object> toMap(DocumentRendererContext context, Object[] keys) {
+        Map<String, Object> values = new HashMap<>();
+        for (Object key : keys) {
+            values.put((String) key, context.get((String) key));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lowagie.text.pdf.PRIndirectReference;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+import org.apache.fop.apps.FopFactory;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test ChunkedPdfRenderer.
+ */
+public class ChunkedPdfRendererTest extends PlexusTestCase {
+    /**
+     * Test that the aggregated document of a site laid out by chapters gives the same PDF structure as when it is
+     * rendered in one pass: pages, page labels, outline and links.
+     *
+     * @throws Exception if any
+     */
+    public void testSameAsOnePass() throws Exception {
+        File directory = getTestFile("target/test-output/chunked-pdf-renderer");
+        File fo = renderSite(directory);
+        File onePass = new File(directory, "maven-pdf-plugin-doc.pdf");
+
+        File chunked = new File(directory, "chunked.pdf");
+        ChunkedPdfRenderer renderer =
+                new ChunkedPdfRenderer(FopFactory.newInstance(directory.toURI()), "", null, 2, false, getLogger());
+        assertTrue(renderer.render(fo, chunked, new File(directory, "chapters")));
+
+        PdfReader expected = new PdfReader(onePass.getAbsolutePath());
+        PdfReader actual = new PdfReader(chunked.getAbsolutePath());
+        try {
+            // cover, TOC, then the chapters, some of them on several pages
+            assertTrue(expected.getNumberOfPages() > 2 + 5);
+            assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+            assertEquals(getPageLabels(expected), getPageLabels(actual));
+            assertEquals(6, SimpleBookmark.getBookmark(expected).size());
+            assertEquals(SimpleBookmark.getBookmark(expected), SimpleBookmark.getBookmark(actual));
+            assertFalse(getLinks(expected).isEmpty());
+            assertEquals(getLinks(expected), getLinks(actual));
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    /**
+     * Test that a document whose page numbers are not known after the maximum number of layouts is left to be
+     * rendered in one pass.
+     *
+     * @throws Exception if any
+     */
+    public void testMaxLayoutRounds() throws Exception {
+        File directory = getTestFile("target/test-output/chunked-pdf-renderer-rounds");
+        File fo = renderSite(directory);
+
+        File pdf = new File(directory, "chunked.pdf");
+        ChunkedPdfRenderer renderer =
+                new ChunkedPdfRenderer(FopFactory.newInstance(directory.toURI()), "", null, 2, false, getLogger());
+        // the TOC cites the page numbers of the chapters: at least two layouts
+        renderer.setMaxLayoutRounds(1);
+        assertFalse(renderer.render(fo, pdf, new File(directory, "chapters")));
+        assertFalse(pdf.exists());
+    }
+
+    /**
+     * Render the test site in one pass, on small pages so that the chapters have several pages.
+     *
+     * @param directory the output directory, not null.
+     * @return the aggregated FO document.
+     * @throws Exception if any
+     */
+    private File renderSite(File directory) throws Exception {
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        FileUtils.fileWrite(
+                new File(directory, "pdf-config.xml"),
+                "UTF-8",
+                "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                        + "<xsl:attribute-set name=\"layout.master.set.base\">"
+                        + "<xsl:attribute name=\"page-height\">4in</xsl:attribute>"
+                        + "</xsl:attribute-set></xsl:stylesheet>");
+
+        File siteDirectory = getTestFile("src/test/resources/unit/pdf/src/site");
+        FopPdfRenderer foRenderer = (FopPdfRenderer) lookup(FopPdfRenderer.class.getName());
+        foRenderer.render(siteDirectory, directory, new File(siteDirectory, "pdf.xml"));
+
+        return new File(directory, "maven-pdf-plugin-doc.fo");
+    }
+
+    private static Logger getLogger() {
+        return new ConsoleLogger(Logger.LEVEL_ERROR, "test");
+    }
+
+    /**
+     * @param reader not null
+     * @return the page label of each page, as defined by the page label ranges of the PDF.
+     */
+    private static List<String> getPageLabels(PdfReader reader) {
+        PdfDictionary pageLabels =
+                (PdfDictionary) PdfReader.getPdfObject(reader.getCatalog().get(PdfName.PAGELABELS));
+        List<?> nums = ((PdfArray) PdfReader.getPdfObject(pageLabels.get(PdfName.NUMS))).getArrayList();
+
+        List<String> labels = new ArrayList<>();
+        for (int page = 0, range = 0; page < reader.getNumberOfPages(); page++) {
+            while (range + 2 < nums.size() && getInt((PdfObject) nums.get(range + 2)) <= page) {
+                range += 2;
+            }
+            PdfDictionary label = (PdfDictionary) PdfReader.getPdfObject((PdfObject) nums.get(range + 1));
+            PdfObject start = PdfReader.getPdfObject(label.get(PdfName.ST));
+            int number = (start == null ? 1 : getInt(start)) + page - getInt((PdfObject) nums.get(range));
+            PdfObject style = PdfReader.getPdfObject(label.get(PdfName.S));
+            labels.add(style + " " + number);
+        }
+        return labels;
+    }
+
+    private static int getInt(PdfObject number) {
+        return Integer.parseInt(PdfReader.getPdfObject(number).toString());
+    }
+
+    /**
+     * @param reader not null
+     * @return the links of each page, as the page number of their target and the target location.
+     */
+    private static List<String> getLinks(PdfReader reader) {
+        Map<Integer, Integer> pageNumbers = new HashMap<>();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            pageNumbers.put(reader.getPageOrigRef(i).getNumber(), i);
+        }
+
+        List<String> links = new ArrayList<>();
+        for (int i = 1; i <= reader.getNumberOfPages(); i++) {
+            PdfArray annotations =
+                    (PdfArray) PdfReader.getPdfObject(reader.getPageN(i).get(PdfName.ANNOTS));
+            if (annotations == null) {
+                continue;
+            }
+            for (Object annotation : annotations.getArrayList()) {
+                PdfDictionary link = (PdfDictionary) PdfReader.getPdfObject((PdfObject) annotation);
+                if (!PdfName.LINK.equals(link.get(PdfName.SUBTYPE))) {
+                    continue;
+                }
+                PdfObject destination = link.get(PdfName.DEST);
+                if (destination == null) {
+                    PdfDictionary action = (PdfDictionary) PdfReader.getPdfObject(link.get(PdfName.A));
+                    if (PdfName.URI.equals(action.get(PdfName.S))) {
+                        links.add(i + " -> " + PdfReader.getPdfObject(action.get(PdfName.URI)));
+                        continue;
+                    }
+                    destination = action.get(PdfName.D);
+                }
+                List<?> target = ((PdfArray) PdfReader.getPdfObject(destination)).getArrayList();
+                StringBuilder value = new StringBuilder()
+                        .append(i)
+                        .append(" -> ")
+                        .append(pageNumbers.get(((PRIndirectReference) target.get(0)).getNumber()));
+                for (int j = 1; j < target.size(); j++) {
+                    value.append(' ').append(PdfReader.getPdfObject((PdfObject) target.get(j)));
+                }
+                links.add(value.toString());
+            }
+        }
+        return links;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageFlavor;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageManager;
+import org.apache.xmlgraphics.image.loader.ImageProcessingHints;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.image.loader.impl.ImageBuffered;
+import org.apache.xmlgraphics.image.loader.spi.ImageImplRegistry;
+import org.apache.xmlgraphics.image.loader.spi.ImageLoaderFactory;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test DecodedImageCache.
+ */
+public class DecodedImageCacheTest extends TestCase {
+    /**
+     * Test that the least recently used images are evicted to stay below the maximum size.
+     */
+    public void testEviction() {
+        // 100 x 100 ARGB images of 40000 bytes each
+        Image a = newImage("a.png");
+        Image b = newImage("b.png");
+        Image c = newImage("c.png");
+        assertEquals(40000, DecodedImageCache.getSize(a));
+
+        DecodedImageCache cache = new DecodedImageCache(100000);
+        cache.put("a", a);
+        cache.put("b", b);
+        assertSame(a, cache.get("a"));
+
+        // b is the least recently used one
+        cache.put("c", c);
+        assertEquals(80000, cache.getSize());
+        assertSame(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(c, cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // larger than the cache
+        DecodedImageCache small = new DecodedImageCache(1000);
+        small.put("a", a);
+        assertNull(small.get("a"));
+        assertEquals(0, small.getSize());
+    }
+
+    /**
+     * Test that a factory decodes its images through its cache, once for identical files.
+     *
+     * @throws Exception if any
+     */
+    public void testFopFactory() throws Exception {
+        File directory = new File(System.getProperty("basedir", "."), "target/unit/decoded-image-cache");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        File a = new File(directory, "a.png");
+        ImageIO.write(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB), "png", a);
+        File b = new File(directory, "b.png");
+        FileUtils.copyFile(a, b);
+
+        DecodedImageCache cache = new DecodedImageCache(1000000);
+        FopFactory fopFactory = DecodedImageCache.newFopFactory(new FopFactoryBuilder(directory.toURI()), cache);
+        assertTrue(isCaching(fopFactory.getImageManager().getRegistry()));
+
+        // a copy of the image, like for another locale, is not decoded again
+        Image imageA = loadImage(fopFactory, a);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertSame(imageA, loadImage(fopFactory, b));
+        assertEquals(1, cache.getHits());
+
+        // the factories without a cache decode their images
+        FopFactory uncached = new FopFactoryBuilder(directory.toURI()).build();
+        assertNotSame(imageA, loadImage(uncached, b));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // the key depends on the hints with a value, not on the loading context
+        Map<Object, Object> hints = new HashMap<>();
+        hints.put(ImageProcessingHints.SOURCE_RESOLUTION, 300f);
+        hints.put(ImageProcessingHints.IMAGE_SESSION_CONTEXT, new Object());
+        ImageInfo info = new ImageInfo(a.toURI().toString(), "image/png");
+        assertEquals(
+                cache.getKey(
+                        info,
+                        ImageFlavor.BUFFERED_IMAGE,
+                        Collections.<Object, Object>singletonMap(ImageProcessingHints.SOURCE_RESOLUTION, 300f)),
+                cache.getKey(info, ImageFlavor.BUFFERED_IMAGE, hints));
+        assertFalse(cache.getKey(info, ImageFlavor.BUFFERED_IMAGE, hints)
+                .equals(cache.getKey(info, ImageFlavor.BUFFERED_IMAGE, null)));
+    }
+
+    private static Image loadImage(FopFactory fopFactory, File file) throws Exception {
+        ImageSessionContext session = fopFactory.newFOUserAgent().getImageSessionContext();
+        ImageManager manager = fopFactory.getImageManager();
+        ImageInfo info = manager.getImageInfo(file.toURI().toString(), session);
+        return manager.getImage(info, ImageFlavor.BUFFERED_IMAGE, session);
+    }
+
+    private static boolean isCaching(ImageImplRegistry registry) {
+        for (ImageLoaderFactory factory : registry.getImageLoaderFactories("image/png")) {
+            if (factory.getClass().getName().startsWith(DecodedImageCache.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Image newImage(String uri) {
+        return new ImageBuffered(
+                new ImageInfo(uri, "image/png"), new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB), null);
+    }
+}
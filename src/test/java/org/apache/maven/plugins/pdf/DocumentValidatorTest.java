@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.maven.doxia.parser.ParseException;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test DocumentValidator.
+ */
+public class DocumentValidatorTest extends PlexusTestCase {
+    private static final String XDOC = "<document xmlns=\"http://maven.apache.org/XDOC/2.0\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+            + " xsi:schemaLocation=\"http://maven.apache.org/XDOC/2.0 https://maven.apache.org/xsd/xdoc-2.0.xsd\">"
+            + "<properties><title>Valid</title></properties><body><section name=\"Section\">"
+            + "<p xml:lang=\"en\">Some text.</p><pre xml:space=\"preserve\">verbatim</pre>"
+            + "</section></body></document>";
+
+    /**
+     * Test that the documents are validated against the schemas of the classpath, without network access.
+     *
+     * @throws Exception if any
+     */
+    public void testValidate() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/document-validator");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        File valid = new File(dir, "valid.xml");
+        File invalid = new File(dir, "invalid.xml");
+        File dtd = new File(dir, "dtd.xml");
+        FileUtils.fileWrite(valid, "UTF-8", XDOC);
+        FileUtils.fileWrite(invalid, "UTF-8", XDOC.replace("<p ", "<unknown "));
+        FileUtils.fileWrite(
+                dtd, "UTF-8", "<!DOCTYPE document SYSTEM \"https://example.invalid/document.dtd\"><document/>");
+
+        DocumentValidator validator = new DocumentValidator(new File(dir, "cache"), true);
+        validator.validate(Arrays.asList(valid, valid, valid), 2);
+
+        try {
+            validator.validate(Arrays.asList(valid, invalid, valid), 2);
+            fail("invalid document");
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("unknown"));
+        }
+
+        try {
+            validator.validate(dtd);
+            fail("offline");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("https://example.invalid/document.dtd"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.awt.Point;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.fop.render.intermediate.extensions.GoToXYAction;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test FoChunk.
+ */
+public class FoChunkTest extends PlexusTestCase {
+    /**
+     * Test that the layout of a chunk is restored by a later build.
+     *
+     * @throws Exception if any
+     */
+    public void testSaveLayout() throws Exception {
+        File directory = getTestFile("target/test-output/fo-chunk");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+
+        FoChunk chunk = newChunk(directory);
+        Map<String, String> citations = Collections.singletonMap("./b", "iv");
+        Map<String, GoToXYAction> destinations = new HashMap<>();
+        destinations.put("./a", new GoToXYAction("./a", 1, new Point(72000, 700000), null));
+        chunk.setLaidOut(3, citations, Arrays.asList("3", "4", "5"), Arrays.asList(1, 2), destinations);
+        FileUtils.fileWrite(chunk.getIntermediateFile(), "UTF-8", "<document/>");
+        chunk.saveLayout();
+
+        FoChunk restored = newChunk(directory);
+        assertFalse(restored.isLaidOut());
+        assertTrue(restored.loadLayout());
+        assertTrue(restored.isLaidOutWith(3, citations));
+        assertFalse(restored.isLaidOutWith(4, citations));
+        assertEquals(Arrays.asList("3", "4", "5"), restored.getPageNames());
+        assertEquals(5, restored.getLastPageNumber(2));
+        assertEquals(1, restored.getDestinationAction("./a").getPageIndex());
+        assertEquals(
+                new Point(72000, 700000), restored.getDestinationAction("./a").getTargetLocation());
+
+        // another fingerprint
+        FoChunk changed = newChunk(directory);
+        changed.setFingerprint("other");
+        assertFalse(changed.loadLayout());
+    }
+
+    private static FoChunk newChunk(File directory) {
+        FoChunk chunk = new FoChunk(
+                new File(directory, "chunk-001.fo"),
+                Arrays.asList("auto", "auto"),
+                Collections.singleton("./b"),
+                Collections.singleton("./a"),
+                Collections.<String>emptySet());
+        chunk.setFingerprint("0123");
+        return chunk;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.swing.text.SimpleAttributeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Test FoLayoutHelper.
+ */
+public class FoLayoutHelperTest extends TestCase {
+    /**
+     * Test the page body of a configured layout, with defaults for the undefined or relative lengths.
+     */
+    public void testPageBody() {
+        SimpleAttributeSet page = new SimpleAttributeSet();
+        page.addAttribute("page-width", "21cm");
+        page.addAttribute("margin-left", "72pt");
+        page.addAttribute("margin-right", "6pc");
+        page.addAttribute("page-height", "297mm");
+        page.addAttribute("margin-top", "1em");
+
+        assertEquals(21 / 2.54 - 1 - 1, FoLayoutHelper.getBodyWidth(page), 1e-9);
+        assertEquals(297 / 25.4 - 0.625 - 0.6, FoLayoutHelper.getBodyHeight(page), 1e-9);
+        assertEquals(1, FoLayoutHelper.getInches(page, "unknown", 1), 0);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test FoSplitter.
+ */
+public class FoSplitterTest extends PlexusTestCase {
+    private static final String FO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">"
+            + "<fo:layout-master-set><fo:simple-page-master master-name=\"body\">"
+            + "<fo:region-body/></fo:simple-page-master></fo:layout-master-set>"
+            + "<fo:bookmark-tree>"
+            + "<fo:bookmark internal-destination=\"./a\"><fo:bookmark-title>A</fo:bookmark-title></fo:bookmark>"
+            + "<fo:bookmark internal-destination=\"./b\"><fo:bookmark-title>B</fo:bookmark-title></fo:bookmark>"
+            + "</fo:bookmark-tree>"
+            + "<fo:page-sequence master-reference=\"body\"><fo:flow flow-name=\"xsl-region-body\">"
+            + "<fo:block>Cover</fo:block></fo:flow></fo:page-sequence>"
+            + "<fo:page-sequence master-reference=\"body\" initial-page-number=\"1\" id=\"./a\">"
+            + "<fo:flow flow-name=\"xsl-region-body\"><fo:block>See "
+            + "<fo:basic-link internal-destination=\"./b\">B</fo:basic-link>, page "
+            + "<fo:page-number-citation ref-id=\"./b\"/></fo:block></fo:flow></fo:page-sequence>"
+            + "<fo:page-sequence master-reference=\"body\" id=\"./b\"><fo:flow flow-name=\"xsl-region-body\">"
+            + "<fo:block>B</fo:block></fo:flow></fo:page-sequence>"
+            + "</fo:root>";
+
+    /**
+     * Test that a chunk starts with each top-level chapter, and that the references between chunks are rewritten.
+     *
+     * @throws Exception if any
+     */
+    public void testSplit() throws Exception {
+        File directory = getTestFile("target/test-output/fo-splitter");
+        FileUtils.deleteDirectory(directory);
+        File fo = new File(directory, "document.fo");
+        directory.mkdirs();
+        FileUtils.fileWrite(fo, "UTF-8", FO);
+
+        List<FoChunk> chunks = FoSplitter.split(fo, new File(directory, "document-chapters"));
+
+        // the cover, then one chunk per chapter
+        assertEquals(3, chunks.size());
+        assertTrue(chunks.get(0).getCitations().isEmpty());
+        assertEquals(Collections.singleton("./b"), chunks.get(1).getCitations());
+        assertTrue(chunks.get(1).getDestinations().isEmpty());
+        assertEquals(Collections.singleton("./b"), chunks.get(2).getDestinations());
+
+        // the first chapter restarts at 1, the second one continues it
+        assertNull(chunks.get(1).getInitialPageNumber(1));
+        assertEquals(Integer.valueOf(2), chunks.get(2).getInitialPageNumber(1));
+
+        String first = FileUtils.fileRead(chunks.get(1).getFoFile(), "UTF-8");
+        assertFalse(first.contains("Cover"));
+        assertFalse(first.contains(">B</fo:block>"));
+        assertTrue(first.contains("external-destination=\"" + FoSplitter.getLinkDestination("./b") + "\""));
+        assertTrue(first.contains("<fo:bookmark-title>A</fo:bookmark-title>"));
+        assertFalse(first.contains("<fo:bookmark-title>B</fo:bookmark-title>"));
+
+        String second = FileUtils.fileRead(chunks.get(2).getFoFile(), "UTF-8");
+        assertTrue(second.contains("simple-page-master"));
+        assertTrue(second.contains("<fox:destination "));
+        assertTrue(second.contains("<fo:bookmark-title>B</fo:bookmark-title>"));
+    }
+
+    /**
+     * Test that the page numbers are computed as FOP does.
+     */
+    public void testGetStartingPageNumber() {
+        assertEquals(1, FoChunk.getStartingPageNumber("0", 10));
+        assertEquals(5, FoChunk.getStartingPageNumber("5", 10));
+        assertEquals(11, FoChunk.getStartingPageNumber("auto", 10));
+        assertEquals(11, FoChunk.getStartingPageNumber(null, 10));
+        assertEquals(11, FoChunk.getStartingPageNumber("auto-odd", 10));
+        assertEquals(13, FoChunk.getStartingPageNumber("auto-odd", 11));
+        assertEquals(12, FoChunk.getStartingPageNumber("auto-even", 10));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import org.apache.fop.apps.FopFactory;
+
+/**
+ * Test FopFactoryPool.
+ */
+public class FopFactoryPoolTest extends TestCase {
+    /**
+     * Test that two modules with the default settings, i.e. with their own font cache file, share their factory.
+     */
+    public void testSharedByModules() throws Exception {
+        File root = new File(System.getProperty("basedir", "."), "target/unit/fop-factory-pool");
+        FopFactoryPool pool = new FopFactoryPool(root);
+        long decodedImageCacheSize = 64 * 1024L * 1024L;
+
+        FopFactory a = pool.getFopFactory(
+                Collections.<Font>emptyList(), new File(root, "a/target/pdf/fop-fonts.cache"), decodedImageCacheSize);
+        FopFactory b = pool.getFopFactory(
+                Collections.<Font>emptyList(), new File(root, "b/target/pdf/fop-fonts.cache"), decodedImageCacheSize);
+        assertSame(a, b);
+
+        Font font = new Font();
+        font.setFile(new File(root, "font.ttf"));
+        font.setFamily("Test");
+        FopFactory c = pool.getFopFactory(
+                Collections.singletonList(font), new File(root, "a/target/pdf/fop-fonts.cache"), decodedImageCacheSize);
+        assertNotSame(a, c);
+    }
+}
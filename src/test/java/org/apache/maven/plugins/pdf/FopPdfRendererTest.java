@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+import org.apache.fop.apps.FOPException;
+import org.apache.maven.doxia.parser.Parser;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test FopPdfRenderer.
+ */
+public class FopPdfRendererTest extends PlexusTestCase {
+    /**
+     * Test the generated FOP configuration.
+     *
+     * @throws Exception if any
+     */
+    public void testGetFopConfiguration() throws Exception {
+        Font font = new Font();
+        font.setFile(new File("fonts/DejaVuSans-Bold.ttf"));
+        font.setFamily("DejaVu Sans");
+        font.setWeight("bold");
+
+        String configuration = FopPdfRenderer.getFopConfiguration(Collections.singletonList(font));
+
+        assertTrue(configuration.contains("<renderer mime=\"application/pdf\">"));
+        assertTrue(configuration.contains(
+                "embed-url=\"" + font.getFile().getAbsoluteFile().toURI() + "\""));
+        assertTrue(configuration.contains("<font-triplet name=\"DejaVu Sans\" style=\"normal\" weight=\"bold\"/>"));
+        assertFalse(configuration.contains("auto-detect"));
+
+        font.setFamily(null);
+        try {
+            FopPdfRenderer.getFopConfiguration(Collections.singletonList(font));
+            fail("A font without family should be rejected");
+        } catch (FOPException e) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Test that the PDF rendered from the streamed FO document is the same as the one rendered from the FO file.
+     *
+     * @throws Exception if any
+     */
+    public void testStreamFo() throws Exception {
+        File siteDirectory = getTestFile("src/test/resources/unit/pdf/src/site");
+        File fileDirectory = getTestFile("target/test-output/fop-pdf-renderer/file");
+        File streamDirectory = getTestFile("target/test-output/fop-pdf-renderer/stream");
+        FileUtils.deleteDirectory(fileDirectory);
+        FileUtils.deleteDirectory(streamDirectory);
+
+        FopPdfRenderer renderer = (FopPdfRenderer) lookup(FopPdfRenderer.class.getName());
+        renderer.render(siteDirectory, fileDirectory, new File(siteDirectory, "pdf.xml"));
+        renderer.setStreamFo(true);
+        try {
+            renderer.render(siteDirectory, streamDirectory, new File(siteDirectory, "pdf.xml"));
+        } finally {
+            renderer.setStreamFo(false);
+        }
+
+        assertTrue(new File(fileDirectory, "maven-pdf-plugin-doc.fo").isFile());
+        assertFalse(new File(streamDirectory, "maven-pdf-plugin-doc.fo").exists());
+
+        PdfReader expected = new PdfReader(new File(fileDirectory, "maven-pdf-plugin-doc.pdf").getAbsolutePath());
+        PdfReader actual = new PdfReader(new File(streamDirectory, "maven-pdf-plugin-doc.pdf").getAbsolutePath());
+        try {
+            assertTrue(expected.getNumberOfPages() > 2);
+            assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+            assertEquals(SimpleBookmark.getBookmark(expected), SimpleBookmark.getBookmark(actual));
+            for (int page = 1; page <= expected.getNumberOfPages(); page++) {
+                assertTrue("page " + page, Arrays.equals(expected.getPageContent(page), actual.getPageContent(page)));
+            }
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    /**
+     * Test that the failure to read a source while the FO document is streamed is reported, rather than the
+     * failure of FOP on the truncated document.
+     *
+     * @throws Exception if any
+     */
+    public void testStreamFoSourceFailure() throws Exception {
+        File siteDirectory = getTestFile("src/test/resources/unit/pdf/src/site");
+        File directory = getTestFile("target/test-output/fop-pdf-renderer/failure");
+        FileUtils.deleteDirectory(directory);
+
+        FopPdfRenderer renderer = (FopPdfRenderer) lookup(FopPdfRenderer.class.getName());
+        renderer.setStreamFo(true);
+        renderer.setSinkEventCache(new SinkEventCache(null) {
+            @Override
+            String getKey(File source, Parser parser, String settings) throws IOException {
+                if (source.getName().startsWith("links.")) {
+                    throw new IOException("Unable to read " + source.getName());
+                }
+                return super.getKey(source, parser, settings);
+            }
+        });
+        try {
+            renderer.render(siteDirectory, directory, new File(siteDirectory, "pdf.xml"));
+            fail("source failure expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to read links."));
+        } finally {
+            renderer.setStreamFo(false);
+            renderer.setSinkEventCache(null);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test GeneratedPdfHelper.
+ */
+public class GeneratedPdfHelperTest extends PlexusTestCase {
+    /**
+     * Test that the generated PDFs are recorded by language.
+     *
+     * @throws Exception if any
+     */
+    public void testRecordGeneratedPdf() throws Exception {
+        File directory = getTestFile("target/test-output/generated-pdf-helper");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+
+        File pdf = new File(directory, "doc.pdf");
+        FileUtils.fileWrite(pdf, "UTF-8", "%PDF");
+
+        assertNull(GeneratedPdfHelper.getGeneratedPdf(directory, Locale.ENGLISH));
+        GeneratedPdfHelper.recordGeneratedPdf(directory, Locale.ENGLISH, pdf);
+        assertEquals(pdf.getAbsoluteFile(), GeneratedPdfHelper.getGeneratedPdf(directory, Locale.ENGLISH));
+        assertNull(GeneratedPdfHelper.getGeneratedPdf(directory, Locale.FRENCH));
+
+        pdf.delete();
+        assertNull(GeneratedPdfHelper.getGeneratedPdf(directory, Locale.ENGLISH));
+    }
+
+    /**
+     * Test that the fingerprint of a directory changes with its files.
+     *
+     * @throws Exception if any
+     */
+    public void testAppendFingerprint() throws Exception {
+        File directory = getTestFile("target/test-output/generated-pdf-helper-fingerprint");
+        FileUtils.deleteDirectory(directory);
+        new File(directory, "sub").mkdirs();
+        File file = new File(directory, "sub/index.apt");
+        FileUtils.fileWrite(file, "UTF-8", "content");
+
+        String fingerprint = getFingerprint(directory);
+        assertEquals(fingerprint, getFingerprint(directory));
+
+        FileUtils.fileWrite(file, "UTF-8", "changed content");
+        assertFalse(fingerprint.equals(getFingerprint(directory)));
+
+        GeneratedPdfHelper.saveFingerprint(directory, fingerprint);
+        assertEquals(fingerprint, GeneratedPdfHelper.loadFingerprint(directory));
+        GeneratedPdfHelper.deleteFingerprint(directory);
+        assertNull(GeneratedPdfHelper.loadFingerprint(directory));
+    }
+
+    private static String getFingerprint(File directory) {
+        StringBuilder inputs = new StringBuilder();
+        GeneratedPdfHelper.appendFingerprint(inputs, directory);
+        return inputs.toString();
+    }
+
+    /**
+     * Test that a generated PDF is moved with its checksums.
+     *
+     * @throws Exception if any
+     */
+    public void testMove() throws Exception {
+        File directory = getTestFile("target/test-output/generated-pdf-helper-move");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+
+        File source = new File(directory, "working/doc.pdf");
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite(source, "UTF-8", "abc");
+        File target = new File(directory, "output/doc.pdf");
+
+        Map<String, String> checksums = GeneratedPdfHelper.move(source, target, Arrays.asList("SHA-256", "SHA-512"));
+        assertFalse(source.exists());
+        assertEquals("abc", FileUtils.fileRead(target, "UTF-8"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", checksums.get("SHA-256"));
+        assertTrue(checksums.get("SHA-512").startsWith("ddaf35a193617aba"));
+        assertEquals(checksums, GeneratedPdfHelper.digest(target, Arrays.asList("SHA-256", "SHA-512")));
+    }
+
+    /**
+     * Test that the checksum files written for the algorithms which are not configured anymore are deleted, and
+     * only those.
+     *
+     * @throws Exception if any
+     */
+    public void testWriteChecksums() throws Exception {
+        File directory = getTestFile("target/test-output/generated-pdf-helper-checksums");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        File pdf = new File(directory, "doc.pdf");
+        FileUtils.fileWrite(pdf, "UTF-8", "abc");
+        File other = new File(directory, "doc.pdf.txt");
+        FileUtils.fileWrite(other, "UTF-8", "not a checksum");
+        // named like a checksum, but not written by the plugin
+        File foreign = new File(directory, "doc.pdf.sha512");
+        FileUtils.fileWrite(foreign, "UTF-8", "published checksum");
+        File workingDirectory = new File(directory, "work");
+        workingDirectory.mkdirs();
+
+        GeneratedPdfHelper.writeChecksums(
+                workingDirectory, pdf, GeneratedPdfHelper.digest(pdf, Arrays.asList("MD5", "SHA-1")));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", FileUtils.fileRead(new File(directory, "doc.pdf.md5")));
+        assertTrue(new File(directory, "doc.pdf.sha1").isFile());
+
+        GeneratedPdfHelper.writeChecksums(
+                workingDirectory, pdf, GeneratedPdfHelper.digest(pdf, Arrays.asList("sha-256")));
+        assertFalse(new File(directory, "doc.pdf.md5").exists());
+        assertFalse(new File(directory, "doc.pdf.sha1").exists());
+        assertEquals(
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                FileUtils.fileRead(new File(directory, "doc.pdf.sha256")));
+        assertTrue(other.isFile());
+        assertTrue(foreign.isFile());
+        assertTrue(pdf.isFile());
+
+        GeneratedPdfHelper.writeChecksums(workingDirectory, pdf, Collections.<String, String>emptyMap());
+        assertFalse(new File(directory, "doc.pdf.sha256").exists());
+        assertTrue(foreign.isFile());
+    }
+}
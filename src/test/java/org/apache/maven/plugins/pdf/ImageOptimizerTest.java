@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test ImageOptimizer.
+ */
+public class ImageOptimizerTest extends PlexusTestCase {
+    /**
+     * Test that a large image is downscaled to the target resolution of the page body, and that the cached
+     * result is reused.
+     *
+     * @throws Exception if any
+     */
+    public void testOptimize() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/image-optimizer");
+        FileUtils.deleteDirectory(dir);
+        File images = new File(dir, "site/resources/images");
+        images.mkdirs();
+
+        // 40 inches wide at the default 72 dpi
+        BufferedImage image = new BufferedImage(2880, 1440, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(
+                        x, y, (x * 255 / image.getWidth()) << 16 | (y * 255 / image.getHeight()) << 8 | (x ^ y) & 0xff);
+            }
+        }
+        File png = new File(images, "screenshot.png");
+        ImageIO.write(image, "png", png);
+        long length = png.length();
+
+        File cache = new File(dir, "cache");
+        ImageOptimizer optimizer = new ImageOptimizer(cache, 6, 9, 100, 0.85f, new SystemStreamLog());
+        optimizer.optimize(new File(dir, "site"));
+
+        // scaled down to fit 6 inches, at 100 dpi
+        BufferedImage optimized = ImageIO.read(png);
+        assertEquals(600, optimized.getWidth());
+        assertEquals(300, optimized.getHeight());
+        assertTrue(png.length() < length);
+        assertEquals(1, cache.list().length);
+
+        ImageIO.write(image, "png", png);
+        optimizer.optimize(png);
+        assertEquals(600, ImageIO.read(png).getWidth());
+        assertEquals(1, cache.list().length);
+    }
+
+    /**
+     * Test that the images with an ICC color profile or an EXIF orientation are kept as is, as their re-encoding
+     * would lose them.
+     *
+     * @throws Exception if any
+     */
+    public void testKeepColorProfileAndOrientation() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/image-optimizer-metadata");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        // 40 inches wide at the default 72 dpi, downscaled otherwise
+        BufferedImage image = new BufferedImage(2880, 1440, BufferedImage.TYPE_INT_RGB);
+
+        File png = new File(dir, "profile.png");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(png)) {
+            IIOMetadata metadata =
+                    writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+            IIOMetadataNode iCCP = new IIOMetadataNode("iCCP");
+            iCCP.setAttribute("profileName", "sRGB");
+            iCCP.setAttribute("compressionMethod", "deflate");
+            iCCP.setUserObject(ICC_Profile.getInstance(ColorSpace.CS_sRGB).getData());
+            IIOMetadataNode root = new IIOMetadataNode("javax_imageio_png_1.0");
+            root.appendChild(iCCP);
+            metadata.mergeTree("javax_imageio_png_1.0", root);
+            writer.setOutput(out);
+            writer.write(new IIOImage(image, null, metadata));
+        } finally {
+            writer.dispose();
+        }
+
+        // an EXIF segment with orientation 6, i.e. rotated 90 degrees clockwise, after the JFIF segment
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", jpeg);
+        byte[] encoded = jpeg.toByteArray();
+        byte[] exif = {
+            (byte) 0xff,
+            (byte) 0xe1,
+            0,
+            34,
+            'E',
+            'x',
+            'i',
+            'f',
+            0,
+            0,
+            'M',
+            'M',
+            0,
+            42,
+            0,
+            0,
+            0,
+            8,
+            0,
+            1,
+            0x01,
+            0x12,
+            0,
+            3,
+            0,
+            0,
+            0,
+            1,
+            0,
+            6,
+            0,
+            0,
+            0,
+            0,
+            0,
+            0
+        };
+        assertEquals(6, ImageOptimizer.getExifOrientation(Arrays.copyOfRange(exif, 4, exif.length)));
+        File jpg = new File(dir, "rotated.jpg");
+        int jfifEnd = 4 + ((encoded[4] & 0xff) << 8 | encoded[5] & 0xff);
+        try (OutputStream out = new FileOutputStream(jpg)) {
+            out.write(encoded, 0, jfifEnd);
+            out.write(exif);
+            out.write(encoded, jfifEnd, encoded.length - jfifEnd);
+        }
+
+        byte[] pngContent = Files.readAllBytes(png.toPath());
+        byte[] jpgContent = Files.readAllBytes(jpg.toPath());
+        new ImageOptimizer(new File(dir, "cache"), 6, 9, 100, 0.85f, new SystemStreamLog()).optimize(dir);
+
+        assertTrue(Arrays.equals(pngContent, Files.readAllBytes(png.toPath())));
+        assertTrue(Arrays.equals(jpgContent, Files.readAllBytes(jpg.toPath())));
+    }
+}
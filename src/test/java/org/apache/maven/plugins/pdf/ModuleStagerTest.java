@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test ModuleStager.
+ */
+public class ModuleStagerTest extends PlexusTestCase {
+    /**
+     * Test that only changed modules are staged again, and that former modules are removed.
+     *
+     * @throws Exception if any
+     */
+    public void testStage() throws Exception {
+        File directory = getTestFile("target/test-output/module-stager");
+        FileUtils.deleteDirectory(directory);
+        File moduleSiteTmp = new File(directory, "module/site.tmp");
+        File siteTmp = new File(directory, "aggregator/site.tmp");
+        File manifests = new File(directory, "aggregator/staged-modules");
+        new File(moduleSiteTmp, "apt").mkdirs();
+        FileUtils.fileWrite(new File(moduleSiteTmp, "apt/index.apt"), "UTF-8", "index");
+        FileUtils.fileWrite(new File(moduleSiteTmp, "apt/usage.apt"), "UTF-8", "usage");
+
+        ModuleStager stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.COPY, new SystemStreamLog());
+        assertTrue(stager.stage("parent/module", moduleSiteTmp));
+        File stagedIndex = new File(siteTmp, "apt/parent/module/index.apt");
+        File stagedUsage = new File(siteTmp, "apt/parent/module/usage.apt");
+        assertTrue(stagedIndex.isFile());
+        assertTrue(stagedUsage.isFile());
+
+        stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.COPY, new SystemStreamLog());
+        assertFalse(stager.stage("parent/module", moduleSiteTmp));
+
+        // a deleted file is not staged anymore
+        new File(moduleSiteTmp, "apt/usage.apt").delete();
+        stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.COPY, new SystemStreamLog());
+        assertTrue(stager.stage("parent/module", moduleSiteTmp));
+        assertTrue(stagedIndex.isFile());
+        assertFalse(stagedUsage.exists());
+
+        // a former module is removed
+        stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.COPY, new SystemStreamLog());
+        stager.removeOtherModules();
+        assertFalse(stagedIndex.exists());
+        assertFalse(new File(manifests, "parent/module.manifest").exists());
+    }
+
+    /**
+     * Test that the files are linked instead of copied.
+     *
+     * @throws Exception if any
+     */
+    public void testLink() throws Exception {
+        File directory = getTestFile("target/test-output/module-stager-link");
+        FileUtils.deleteDirectory(directory);
+        File moduleSiteTmp = new File(directory, "module/site.tmp");
+        File source = new File(moduleSiteTmp, "apt/index.apt");
+        source.getParentFile().mkdirs();
+        FileUtils.fileWrite(source, "UTF-8", "index");
+
+        File siteTmp = new File(directory, "hardlink/site.tmp");
+        File manifests = new File(directory, "hardlink/staged-modules");
+        ModuleStager stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.HARDLINK, new SystemStreamLog());
+        assertTrue(stager.stage("module", moduleSiteTmp));
+        File staged = new File(siteTmp, "apt/module/index.apt");
+        assertTrue(Files.isSameFile(source.toPath(), staged.toPath()));
+
+        siteTmp = new File(directory, "symlink/site.tmp");
+        manifests = new File(directory, "symlink/staged-modules");
+        stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.SYMLINK, new SystemStreamLog());
+        assertTrue(stager.stage("module", moduleSiteTmp));
+        staged = new File(siteTmp, "apt/module/index.apt");
+        assertEquals("index", FileUtils.fileRead(staged, "UTF-8"));
+
+        // a former module removes the links, not the files of the module
+        stager = new ModuleStager(siteTmp, manifests, ModuleStager.Mode.SYMLINK, new SystemStreamLog());
+        stager.removeOtherModules();
+        assertFalse(staged.exists());
+        assertTrue(source.isFile());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStamper;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.SimpleBookmark;
+import org.apache.maven.doxia.document.DocumentCover;
+import org.apache.maven.doxia.document.DocumentModel;
+import org.apache.maven.doxia.document.DocumentTOC;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test PdfMerger.
+ */
+public class PdfMergerTest extends PlexusTestCase {
+    /**
+     * Test that the module PDFs are merged after a cover and a table of contents, with their bookmarks.
+     *
+     * @throws Exception if any
+     */
+    public void testMerge() throws Exception {
+        File directory = getTestFile("target/test-output/pdf-merger");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+
+        File moduleA = writePdf(new File(directory, "a.pdf"), "Intro", "Usage");
+        File moduleB = writePdf(new File(directory, "b.pdf"), "Overview");
+
+        DocumentModel model = new DocumentModel();
+        DocumentCover cover = new DocumentCover();
+        cover.setCoverTitle("Aggregated");
+        model.setCover(cover);
+        model.setToc(new DocumentTOC());
+
+        PdfMerger merger = new PdfMerger(model);
+        merger.addModule("Module A", moduleA, Arrays.asList(tocItem("Intro"), tocItem("Usage"), tocItem("Missing")));
+        merger.addModule("Module B", moduleB, Arrays.asList(tocItem("Overview")));
+        File merged = new File(directory, "merged.pdf");
+        merger.merge(merged);
+
+        PdfReader reader = new PdfReader(merged.getAbsolutePath());
+        try {
+            // cover, table of contents, then 2 + 1 pages
+            assertEquals(5, reader.getNumberOfPages());
+
+            List<Map<String, Object>> bookmarks = SimpleBookmark.getBookmark(reader);
+            assertEquals(2, bookmarks.size());
+            assertEquals("Module A", bookmarks.get(0).get("Title"));
+            assertEquals("3 Fit", bookmarks.get(0).get("Page"));
+
+            List<Map<String, Object>> kids =
+                    (List<Map<String, Object>>) bookmarks.get(0).get("Kids");
+            assertEquals(3, kids.size());
+            assertTrue(((String) kids.get(0).get("Page")).startsWith("3 "));
+            assertTrue(((String) kids.get(1).get("Page")).startsWith("4 "));
+            // not found in the module PDF: the first page of the module
+            assertEquals("3 Fit", kids.get(2).get("Page"));
+
+            kids = (List<Map<String, Object>>) bookmarks.get(1).get("Kids");
+            assertEquals("Overview", kids.get(0).get("Title"));
+            assertTrue(((String) kids.get(0).get("Page")).startsWith("5 "));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param file not null
+     * @param chapters the chapter titles, one page each.
+     * @return a PDF with a bookmark for each chapter.
+     * @throws Exception if any
+     */
+    private static File writePdf(File file, String... chapters) throws Exception {
+        try (OutputStream out = new FileOutputStream(file)) {
+            Document document = new Document();
+            PdfWriter.getInstance(document, out);
+            document.open();
+            for (String chapter : chapters) {
+                document.newPage();
+                document.add(new Paragraph(chapter));
+            }
+            document.close();
+        }
+
+        // add the bookmarks, as FOP does
+        PdfReader reader = new PdfReader(file.getAbsolutePath());
+        List<Map<String, Object>> bookmarks = new ArrayList<>();
+        for (int i = 0; i < chapters.length; i++) {
+            Map<String, Object> bookmark = new HashMap<>();
+            bookmark.put("Title", chapters[i]);
+            bookmark.put("Action", "GoTo");
+            bookmark.put("Page", (i + 1) + " XYZ 72 747 null");
+            bookmarks.add(bookmark);
+        }
+        File withBookmarks = new File(file.getParentFile(), "bookmarked-" + file.getName());
+        try (OutputStream out = new FileOutputStream(withBookmarks)) {
+            PdfStamper stamper = new PdfStamper(reader, out);
+            stamper.setOutlines(bookmarks);
+            stamper.close();
+        }
+        return withBookmarks;
+    }
+
+    private static Map<String, Object> tocItem(String name) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("ref", name.toLowerCase());
+        item.put("items", new ArrayList<>());
+        return item;
+    }
+}
@@ -39,8 +39,36 @@ package org.apache.maven.plugins.pdf;
 
 import java.io.File;
 import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.document.DocumentModel;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Reporting;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReport;
+import org.apache.maven.reporting.exec.MavenReportExecution;
+import org.codehaus.doxia.sink.Sink;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
@@ -73,6 +101,381 @@ public class PdfMojoTest extends AbstractMojoTestCase {
         executePdfMojo("no_docdescriptor_pom.xml", "no/unnamed.pdf");
     }
 
+    /**
+     * Tests that modules with different locales, built in parallel, get the messages of their own locale,
+     * whatever the default locale of the JVM is.
+     *
+     * @throws Exception if any.
+     */
+    public void testConcurrentLocales() throws Exception {
+        final Map<Locale, String> expected = new LinkedHashMap<>();
+        expected.put(Locale.GERMAN, "Inhaltsverzeichnis");
+        expected.put(Locale.FRENCH, "Table des mati\u00e8res");
+        expected.put(new Locale("es", "ES"), "Tabla de contenido");
+        expected.put(new Locale("pt", "BR"), "Lista de Conte\u00fados");
+        // no messages: the default ones, not the ones of the default locale
+        expected.put(Locale.ITALIAN, "Table Of Content");
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMAN);
+        ExecutorService executor = Executors.newFixedThreadPool(expected.size());
+        try {
+            final Date date = new Date(0);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int module = 0; module < 4 * expected.size(); module++) {
+                for (final Map.Entry<Locale, String> entry : expected.entrySet()) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            assertEquals(entry.getValue(), PdfMojo.getBundleString(entry.getKey(), "toc.title"));
+                            assertEquals("1970-01-01T00:00:00Z", new DateBean(date).getDateTime());
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            assertEquals(Locale.GERMAN, Locale.getDefault());
+        } finally {
+            executor.shutdownNow();
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /**
+     * Tests that the reports and their plugin class loaders are kept for the locales after the first one, and not
+     * retained once their xdoc is generated for the last locale, only their output name and name being kept for
+     * the TOC.
+     *
+     * @throws Exception if any.
+     */
+    public void testReportsReleased() throws Exception {
+        File workingDirectory = getTestFile("target/test-output/pdf/reports-released");
+        FileUtils.deleteDirectory(workingDirectory);
+
+        PdfMojo mojo = newReportsMojo(workingDirectory, Locale.ENGLISH, Locale.FRENCH);
+        WeakReference<?>[] references = addReportExecution(mojo);
+
+        Method generateMavenReports = PdfMojo.class.getDeclaredMethod("generateMavenReports", Locale.class);
+        generateMavenReports.setAccessible(true);
+        generateMavenReports.invoke(mojo, Locale.ENGLISH);
+
+        // still available for the second locale
+        assertTrue(new File(workingDirectory, "generated-site.tmp/xdoc/retained.xml").isFile());
+        List<?> reportExecutions = (List<?>) getVariableValueFromObject(mojo.getReportGenerator(), "reportExecutions");
+        assertEquals(1, reportExecutions.size());
+        assertSame(references[0].get(), ((MavenReportExecution) reportExecutions.get(0)).getMavenReport());
+        reportExecutions = null;
+
+        generateMavenReports.invoke(mojo, Locale.FRENCH);
+
+        assertTrue(new File(workingDirectory, "generated-site.tmp/fr/xdoc/retained.xml").isFile());
+        assertFalse(mojo.getReportGenerator().hasReportExecutions());
+        for (Locale locale : Arrays.asList(Locale.ENGLISH, Locale.FRENCH)) {
+            List<GeneratedReport> generatedReports = mojo.getReportGenerator().getGeneratedReports(locale);
+            assertEquals(1, generatedReports.size());
+            assertEquals("retained", generatedReports.get(0).getOutputName());
+            assertEquals("Retained Report", generatedReports.get(0).getName());
+        }
+
+        for (int i = 0; i < 50 && (references[0].get() != null || references[1].get() != null); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("report retained", references[0].get());
+        assertNull("report class loader retained", references[1].get());
+    }
+
+    /**
+     * Tests that a report that timed out for the first locale is not run again for the other locales.
+     *
+     * @throws Exception if any.
+     */
+    public void testReportTimeoutSkipsOtherLocales() throws Exception {
+        File workingDirectory = getTestFile("target/test-output/pdf/report-timeout");
+        FileUtils.deleteDirectory(workingDirectory);
+
+        PdfMojo mojo = newReportsMojo(workingDirectory, Locale.ENGLISH, Locale.FRENCH);
+        setVariableValueToObject(mojo, "reportTimeout", 1);
+        RetainedReport report = new RetainedReport(10000);
+        addReportExecution(mojo, report);
+
+        Method generateMavenReports = PdfMojo.class.getDeclaredMethod("generateMavenReports", Locale.class);
+        generateMavenReports.setAccessible(true);
+        try {
+            generateMavenReports.invoke(mojo, Locale.ENGLISH);
+            generateMavenReports.invoke(mojo, Locale.FRENCH);
+        } finally {
+            mojo.getReportGenerator().shutdown();
+        }
+
+        assertEquals(1, report.generations.get());
+        assertTrue(mojo.getReportGenerator().getGeneratedReports(Locale.ENGLISH).isEmpty());
+        assertTrue(mojo.getReportGenerator().getGeneratedReports(Locale.FRENCH).isEmpty());
+        assertFalse(new File(workingDirectory, "generated-site.tmp/fr/xdoc/retained.xml").exists());
+    }
+
+    /**
+     * Tests that a locale-neutral report is generated once, its xdoc being copied for the other locales with the
+     * name of the report in each locale.
+     *
+     * @throws Exception if any.
+     */
+    public void testLocaleNeutralReports() throws Exception {
+        File workingDirectory = getTestFile("target/test-output/pdf/locale-neutral-reports");
+        FileUtils.deleteDirectory(workingDirectory);
+
+        PdfMojo mojo = newReportsMojo(workingDirectory, Locale.ENGLISH, Locale.FRENCH);
+        setVariableValueToObject(mojo, "localeNeutralReports", Collections.singletonList("retained"));
+        RetainedReport report = new RetainedReport(0) {
+            @Override
+            public String getName(Locale locale) {
+                return Locale.FRENCH.equals(locale) ? "Rapport retenu" : super.getName(locale);
+            }
+        };
+        addReportExecution(mojo, report);
+
+        Method generateMavenReports = PdfMojo.class.getDeclaredMethod("generateMavenReports", Locale.class);
+        generateMavenReports.setAccessible(true);
+        generateMavenReports.invoke(mojo, Locale.ENGLISH);
+        generateMavenReports.invoke(mojo, Locale.FRENCH);
+
+        assertEquals(1, report.generations.get());
+        File xdoc = new File(workingDirectory, "generated-site.tmp/xdoc/retained.xml");
+        File frenchXdoc = new File(workingDirectory, "generated-site.tmp/fr/xdoc/retained.xml");
+        assertTrue(frenchXdoc.isFile());
+        assertEquals(FileUtils.fileRead(xdoc, "UTF-8"), FileUtils.fileRead(frenchXdoc, "UTF-8"));
+
+        List<GeneratedReport> generatedReports = mojo.getReportGenerator().getGeneratedReports(Locale.ENGLISH);
+        assertEquals(1, generatedReports.size());
+        assertEquals("Retained Report", generatedReports.get(0).getName());
+        generatedReports = mojo.getReportGenerator().getGeneratedReports(Locale.FRENCH);
+        assertEquals(1, generatedReports.size());
+        assertEquals("retained", generatedReports.get(0).getOutputName());
+        assertEquals("Rapport retenu", generatedReports.get(0).getName());
+    }
+
+    /**
+     * Tests that the imported report xdocs referenced by the TOC are added to the generated reports, and that
+     * the invalid or not referenced ones are ignored.
+     *
+     * @throws Exception if any.
+     */
+    public void testImportReports() throws Exception {
+        File workingDirectory = getTestFile("target/test-output/pdf/imported-reports");
+        FileUtils.deleteDirectory(workingDirectory);
+        File importDir = new File(workingDirectory, "imported/xdoc");
+        importDir.mkdirs();
+        String xdoc = "<document><properties><title>%s</title></properties>"
+                + "<body><section name=\"%s\"><p>%s</p></section></body></document>";
+        FileUtils.fileWrite(
+                new File(importDir, "dependencies.xml"),
+                "UTF-8",
+                String.format(xdoc, "Project Dependencies", "Dependencies", "junit"));
+        FileUtils.fileWrite(
+                new File(importDir, "summary.xml"), "UTF-8", String.format(xdoc, "Project Summary", "Summary", "pdf"));
+        FileUtils.fileWrite(
+                new File(importDir, "broken.xml"), "UTF-8", "<document><body><section name=\"Broken\"></body>");
+        FileUtils.fileWrite(
+                new File(workingDirectory, "pdf.xml"),
+                "UTF-8",
+                "<document outputName=\"imported\"><meta><title>Imported</title></meta><toc name=\"TOC\">"
+                        + "<item name=\"Dependencies\" ref=\"dependencies.html\"/>"
+                        + "<item name=\"Broken\" ref=\"./broken.html\"/></toc></document>");
+
+        PdfMojo mojo = newReportsMojo(workingDirectory, Locale.ENGLISH);
+        setVariableValueToObject(mojo, "importedReportsDirectory", new File(workingDirectory, "imported"));
+        setVariableValueToObject(mojo, "tocReportsOnly", true);
+
+        Method generateMavenReports = PdfMojo.class.getDeclaredMethod("generateMavenReports", Locale.class);
+        generateMavenReports.setAccessible(true);
+        generateMavenReports.invoke(mojo, Locale.ENGLISH);
+
+        List<GeneratedReport> generatedReports = mojo.getReportGenerator().getGeneratedReports(Locale.ENGLISH);
+        assertEquals(1, generatedReports.size());
+        assertEquals("dependencies", generatedReports.get(0).getOutputName());
+        assertEquals("Project Dependencies", generatedReports.get(0).getName());
+        assertTrue(new File(workingDirectory, "generated-site.tmp/xdoc/dependencies.xml").isFile());
+        assertTrue(new File(workingDirectory, "site.tmp/xdoc/dependencies.xml").isFile());
+        // invalid
+        assertFalse(new File(workingDirectory, "generated-site.tmp/xdoc/broken.xml").exists());
+        // not referenced by the TOC
+        assertFalse(new File(workingDirectory, "generated-site.tmp/xdoc/summary.xml").exists());
+    }
+
+    /**
+     * Tests that two modules with different default locales, built in parallel, get the cover and the TOC of
+     * the locale of each PDF, rather than of their default locale or of the default locale of the JVM.
+     *
+     * @throws Exception if any.
+     */
+    public void testConcurrentModuleLocales() throws Exception {
+        final Map<Locale, String[]> expected = new LinkedHashMap<>();
+        expected.put(Locale.ENGLISH, new String[] {"Project Documentation", "Table Of Content", "Project Reports"});
+        expected.put(
+                Locale.FRENCH, new String[] {"Documentation du projet", "Table des mati\u00e8res", "Rapports Projet"});
+
+        final Method generateMavenReports = PdfMojo.class.getDeclaredMethod("generateMavenReports", Locale.class);
+        generateMavenReports.setAccessible(true);
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMAN);
+        ExecutorService executor = Executors.newFixedThreadPool(expected.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int build = 0; build < 4; build++) {
+                for (Locale moduleLocale : expected.keySet()) {
+                    final File workingDirectory =
+                            getTestFile("target/test-output/pdf/module-locales/" + build + "/" + moduleLocale);
+                    FileUtils.deleteDirectory(workingDirectory);
+                    // the default locale of the module first, then the other one
+                    final List<Locale> locales = new ArrayList<>(expected.keySet());
+                    locales.remove(moduleLocale);
+                    locales.add(0, moduleLocale);
+                    final PdfMojo mojo = newReportsMojo(workingDirectory, locales.toArray(new Locale[0]));
+                    addReportExecution(mojo);
+
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (Locale locale : locales) {
+                                generateMavenReports.invoke(mojo, locale);
+                                DocumentModel model = mojo.getDocumentModel(locale);
+
+                                assertEquals(
+                                        locale.getLanguage(), model.getMeta().getLanguage());
+                                assertEquals(
+                                        expected.get(locale)[0],
+                                        model.getCover().getCoverType());
+                                assertEquals(
+                                        expected.get(locale)[1], model.getToc().getName());
+                                assertEquals(1, model.getToc().getItems().size());
+                                assertEquals(
+                                        expected.get(locale)[2],
+                                        model.getToc().getItems().get(0).getName());
+                            }
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /**
+     * Tests that the fingerprint of the up to date check changes with the fonts, so that the PDFs are generated
+     * again, even when a font file is replaced by one with the same size and modification time.
+     *
+     * @throws Exception if any.
+     */
+    public void testFingerprintFonts() throws Exception {
+        File workingDirectory = getTestFile("target/test-output/pdf/fingerprint-fonts");
+        FileUtils.deleteDirectory(workingDirectory);
+        workingDirectory.mkdirs();
+        File fontFile = new File(workingDirectory, "font.ttf");
+        FileUtils.fileWrite(fontFile, "UTF-8", "font 1");
+
+        PdfMojo mojo = newReportsMojo(workingDirectory, Locale.ENGLISH);
+        setVariableValueToObject(mojo, "outputDirectory", workingDirectory);
+        String withoutFonts = getFingerprint(mojo);
+        assertEquals(withoutFonts, getFingerprint(mojo));
+
+        Font font = new Font();
+        font.setFile(fontFile);
+        font.setFamily("Test");
+        setVariableValueToObject(mojo, "fonts", Collections.singletonList(font));
+        String withFont = getFingerprint(mojo);
+        assertFalse(withoutFonts.equals(withFont));
+
+        font.setWeight("bold");
+        String withBoldFont = getFingerprint(mojo);
+        assertFalse(withFont.equals(withBoldFont));
+
+        font.setKerning(false);
+        String withoutKerning = getFingerprint(mojo);
+        assertFalse(withBoldFont.equals(withoutKerning));
+
+        long lastModified = fontFile.lastModified();
+        FileUtils.fileWrite(fontFile, "UTF-8", "font 2");
+        fontFile.setLastModified(lastModified);
+        assertFalse(withoutKerning.equals(getFingerprint(mojo)));
+    }
+
+    /**
+     * @param mojo not null
+     * @return the fingerprint of the inputs of the mojo.
+     * @throws Exception if any.
+     */
+    private static String getFingerprint(PdfMojo mojo) throws Exception {
+        Method newUpToDateCheck = PdfMojo.class.getDeclaredMethod("newUpToDateCheck");
+        newUpToDateCheck.setAccessible(true);
+        return ((UpToDateCheck) newUpToDateCheck.invoke(mojo)).getFingerprint();
+    }
+
+    /**
+     * @param workingDirectory not null
+     * @param locales the locales of the module, the first one being its default locale.
+     * @return a pdf mojo including the reports, without document descriptor.
+     * @throws Exception if any.
+     */
+    private PdfMojo newReportsMojo(File workingDirectory, Locale... locales) throws Exception {
+        PdfMojo mojo = new PdfMojo();
+        Model model = new Model();
+        model.setReporting(new Reporting());
+        MavenProject project = new MavenProject(model);
+        project.setFile(new File(workingDirectory, "pom.xml"));
+        setVariableValueToObject(mojo, "project", project);
+        setVariableValueToObject(mojo, "reporting", model.getReporting());
+        setVariableValueToObject(mojo, "includeReports", true);
+        setVariableValueToObject(mojo, "localesList", Arrays.asList(locales));
+        setVariableValueToObject(mojo, "defaultLocale", locales[0]);
+        setVariableValueToObject(mojo, "workingDirectory", workingDirectory);
+        setVariableValueToObject(mojo, "siteDirectory", new File(workingDirectory, "site"));
+        setVariableValueToObject(mojo, "generatedSiteDirectory", new File(workingDirectory, "generated-site"));
+        setVariableValueToObject(mojo, "siteDirectoryTmp", new File(workingDirectory, "site.tmp"));
+        setVariableValueToObject(mojo, "docDescriptor", new File(workingDirectory, "pdf.xml"));
+        setVariableValueToObject(mojo, "doxia", lookup(Doxia.class));
+        setVariableValueToObject(mojo, "siteTool", lookup(SiteTool.class));
+        return mojo;
+    }
+
+    /**
+     * @param mojo not null
+     * @return weak references to the report and to its class loader, added to the report executions of the mojo.
+     * @throws Exception if any.
+     */
+    private WeakReference<?>[] addReportExecution(PdfMojo mojo) throws Exception {
+        return addReportExecution(mojo, new RetainedReport(0));
+    }
+
+    /**
+     * @param mojo not null
+     * @param report not null
+     * @return weak references to the report and to its class loader, added to the report executions of the mojo.
+     * @throws Exception if any.
+     */
+    private WeakReference<?>[] addReportExecution(PdfMojo mojo, MavenReport report) throws Exception {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        Plugin plugin = new Plugin();
+        plugin.setArtifactId("retained-plugin");
+        plugin.setVersion("1.0");
+
+        List<MavenReportExecution> reportExecutions = new ArrayList<>();
+        reportExecutions.add(new MavenReportExecution("retained", plugin, report, classLoader));
+        mojo.getReportGenerator().setReportExecutions(reportExecutions);
+
+        return new WeakReference<?>[] {new WeakReference<>(report), new WeakReference<>(classLoader)};
+    }
+
     /**
      * @throws Exception if any.
      */
@@ -133,4 +536,83 @@ public class PdfMojoTest extends AbstractMojoTestCase {
         assertTrue( "FO: Pdf file has no content!", pdfFile.length() > 0 );
         */
     }
+
+    /**
+     * A report generating a single section, optionally after a delay.
+     */
+    private static class RetainedReport implements MavenReport {
+        private final long delay;
+
+        private final AtomicInteger generations = new AtomicInteger();
+
+        /**
+         * @param delay the time the report takes in milliseconds, until interrupted.
+         */
+        RetainedReport(long delay) {
+            this.delay = delay;
+        }
+
+        /** {@inheritDoc} */
+        public void generate(Sink sink, Locale locale) {
+            generations.incrementAndGet();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sink.head();
+            sink.title();
+            sink.text("Retained Report");
+            sink.title_();
+            sink.head_();
+            sink.body();
+            sink.section1();
+            sink.sectionTitle1();
+            sink.text("Retained Report");
+            sink.sectionTitle1_();
+            sink.section1_();
+            sink.body_();
+            sink.flush();
+        }
+
+        /** {@inheritDoc} */
+        public String getOutputName() {
+            return "retained";
+        }
+
+        /** {@inheritDoc} */
+        public String getCategoryName() {
+            return CATEGORY_PROJECT_REPORTS;
+        }
+
+        /** {@inheritDoc} */
+        public String getName(Locale locale) {
+            return "Retained Report";
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription(Locale locale) {
+            return "Retained Report";
+        }
+
+        /** {@inheritDoc} */
+        public void setReportOutputDirectory(File outputDirectory) {}
+
+        /** {@inheritDoc} */
+        public File getReportOutputDirectory() {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isExternalReport() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public boolean canGenerateReport() {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test PdfWatchMojo.
+ */
+public class PdfWatchMojoTest extends AbstractMojoTestCase {
+    /**
+     * Test the staging of the changed files, like the first generation stages them.
+     *
+     * @throws Exception if any
+     */
+    public void testStage() throws Exception {
+        File directory = getTestFile("target/test-output/pdf-watch/stage");
+        FileUtils.deleteDirectory(directory);
+        File site = new File(directory, "site");
+        File generatedSite = new File(directory, "generated-site");
+        File staged = new File(directory, "site.tmp");
+        write(new File(site, "apt/index.apt"), "site index");
+        write(new File(site, "apt/index.apt~"), "backup");
+        write(new File(site, "apt/other.apt"), "site other");
+        write(new File(generatedSite, "apt/index.apt"), "generated index");
+        write(new File(generatedSite, "apt/generated.apt"), "generated");
+        write(new File(generatedSite, "fr/apt/generated.apt"), "generated fr");
+        write(new File(staged, "apt/stale.apt"), "stale");
+        PdfWatchMojo mojo = newWatchMojo(directory, Locale.ENGLISH, Locale.FRENCH);
+
+        // changes that could not be tracked
+        mojo.stage(site.toPath(), Paths.get(""));
+        assertEquals("site index", read(new File(staged, "apt/index.apt")));
+        assertEquals("generated", read(new File(staged, "apt/generated.apt")));
+        assertEquals("generated fr", read(new File(staged, "fr/apt/generated.apt")));
+        assertFalse(new File(staged, "apt/index.apt~").exists());
+        assertFalse(new File(staged, "apt/stale.apt").exists());
+
+        write(new File(site, "apt/other.apt"), "site other changed");
+        mojo.stage(new File(site, "apt/other.apt").toPath(), Paths.get("apt/other.apt"));
+        assertEquals("site other changed", read(new File(staged, "apt/other.apt")));
+
+        new File(site, "apt/other.apt").delete();
+        mojo.stage(new File(site, "apt/other.apt").toPath(), Paths.get("apt/other.apt"));
+        assertFalse(new File(staged, "apt/other.apt").exists());
+
+        // the generated-site file is not shadowed anymore
+        new File(site, "apt/index.apt").delete();
+        mojo.stage(new File(site, "apt/index.apt").toPath(), Paths.get("apt/index.apt"));
+        assertEquals("generated index", read(new File(staged, "apt/index.apt")));
+    }
+
+    /**
+     * Test the locale of the changed files.
+     *
+     * @throws Exception if any
+     */
+    public void testGetLocale() throws Exception {
+        PdfWatchMojo mojo =
+                newWatchMojo(getTestFile("target/test-output/pdf-watch/locale"), Locale.ENGLISH, Locale.FRENCH);
+
+        assertEquals(Locale.ENGLISH, mojo.getLocale(Paths.get("apt", "index.apt")));
+        assertEquals(Locale.FRENCH, mojo.getLocale(Paths.get("fr", "apt", "index.apt")));
+        assertEquals(Locale.ENGLISH, mojo.getLocale(Paths.get("fr")));
+        assertEquals(Locale.ENGLISH, mojo.getLocale(Paths.get("de", "apt", "index.apt")));
+    }
+
+    /**
+     * Test the detection of the document descriptors and of their locales.
+     *
+     * @throws Exception if any
+     */
+    public void testDocDescriptor() throws Exception {
+        File directory = getTestFile("target/test-output/pdf-watch/descriptor");
+        PdfWatchMojo mojo = newWatchMojo(directory, Locale.ENGLISH, Locale.FRENCH);
+        Path site = new File(directory, "site").toPath();
+
+        assertTrue(mojo.isDocDescriptor(site.resolve("pdf.xml")));
+        assertTrue(mojo.isDocDescriptor(site.resolve("pdf_fr.xml")));
+        assertFalse(mojo.isDocDescriptor(site.resolve("pdf.txt")));
+        assertFalse(mojo.isDocDescriptor(site.resolve("pdfs.xml")));
+        assertFalse(mojo.isDocDescriptor(site.resolve("xdoc/pdf.xml")));
+
+        assertEquals(Collections.singleton(Locale.FRENCH), mojo.getDescriptorLocales(site.resolve("pdf_fr.xml")));
+        assertEquals(
+                new LinkedHashSet<>(Arrays.asList(Locale.ENGLISH, Locale.FRENCH)),
+                mojo.getDescriptorLocales(site.resolve("pdf.xml")));
+    }
+
+    /**
+     * Test that the default excludes, like editor backup files, are not staged.
+     */
+    public void testIsExcluded() {
+        assertTrue(PdfWatchMojo.isExcluded(Paths.get("apt", "index.apt~")));
+        assertTrue(PdfWatchMojo.isExcluded(Paths.get(".svn", "entries")));
+        assertFalse(PdfWatchMojo.isExcluded(Paths.get("apt", "index.apt")));
+    }
+
+    /**
+     * Test that a burst of changes is collected until none occurs during the watch delay.
+     *
+     * @throws Exception if any
+     */
+    public void testWaitForChanges() throws Exception {
+        final File directory = getTestFile("target/test-output/pdf-watch/changes");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        PdfWatchMojo mojo = newWatchMojo(directory, Locale.ENGLISH);
+        setVariableValueToObject(mojo, "watchDelay", 500L);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            mojo.registerRecursive(watchService, directory.toPath());
+
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        write(new File(directory, "first.apt"), "first");
+                        Thread.sleep(200);
+                        write(new File(directory, "second.apt"), "second");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            writer.start();
+
+            Set<Path> changes = mojo.waitForChanges(watchService);
+            writer.join();
+
+            assertTrue(changes.toString(), changes.contains(new File(directory, "first.apt").toPath()));
+            assertTrue(changes.toString(), changes.contains(new File(directory, "second.apt").toPath()));
+        }
+    }
+
+    /**
+     * @param directory the base directory of the sources and of the output, not null.
+     * @param locales the locales, the first one being the default one.
+     * @return a watch mojo.
+     * @throws Exception if any
+     */
+    private PdfWatchMojo newWatchMojo(File directory, Locale... locales) throws Exception {
+        PdfWatchMojo mojo = new PdfWatchMojo();
+        setVariableValueToObject(mojo, "siteDirectory", new File(directory, "site"));
+        setVariableValueToObject(mojo, "generatedSiteDirectory", new File(directory, "generated-site"));
+        setVariableValueToObject(mojo, "siteDirectoryTmp", new File(directory, "site.tmp"));
+        setVariableValueToObject(mojo, "workingDirectory", directory);
+        setVariableValueToObject(mojo, "docDescriptor", new File(directory, "site/pdf.xml"));
+        setVariableValueToObject(mojo, "localesList", Arrays.asList(locales));
+        setVariableValueToObject(mojo, "defaultLocale", locales[0]);
+        return mojo;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite(file, "UTF-8", content);
+    }
+
+    private static String read(File file) throws Exception {
+        return FileUtils.fileRead(file, "UTF-8");
+    }
+}
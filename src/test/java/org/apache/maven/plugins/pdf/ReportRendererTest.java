@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.reporting.MavenReport;
+import org.apache.maven.reporting.exec.MavenReportExecution;
+import org.codehaus.doxia.sink.Sink;
+
+/**
+ * Test ReportRenderer.
+ */
+public class ReportRendererTest extends TestCase {
+    /**
+     * Test that a report that times out does not affect the next one, even if it ignores the interruption.
+     *
+     * @throws Exception if any
+     */
+    public void testTimeout() throws Exception {
+        ReportRenderer renderer = new ReportRenderer(0, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        TextReport stuck = new TextReport("Stuck", release);
+        TextReport next = new TextReport("Next", null);
+
+        try {
+            renderer.renderXdoc(getReportExecution(stuck), Locale.ENGLISH, 100);
+            fail("timeout expected");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue(stuck.started.await(1, TimeUnit.SECONDS));
+
+        String xdoc = renderer.renderXdoc(getReportExecution(next), Locale.ENGLISH, 10000);
+        assertTrue(xdoc.contains("Next"));
+        assertFalse(xdoc.contains("Stuck"));
+        assertNotSame("timed out worker reused", stuck.thread, next.thread);
+
+        // the stuck report writes to its own sink, the rendering of the next one is not affected
+        release.countDown();
+        stuck.thread.join(1000);
+        assertFalse(stuck.thread.isAlive());
+        assertNull(stuck.failure);
+        renderer.shutdown();
+    }
+
+    /**
+     * Test that the time budget for all reports starts anew with each generation of the reports.
+     *
+     * @throws Exception if any
+     */
+    public void testTimeBudget() throws Exception {
+        ReportRenderer renderer = new ReportRenderer(10, 1);
+        assertEquals(10000, renderer.getTimeoutMillis());
+
+        renderer.startTimeBudget();
+        long timeout = renderer.getTimeoutMillis();
+        assertTrue(timeout > 0 && timeout <= 1000);
+
+        Thread.sleep(1100);
+        assertEquals(0, renderer.getTimeoutMillis());
+
+        renderer.startTimeBudget();
+        assertTrue(renderer.getTimeoutMillis() > 0);
+    }
+
+    private static MavenReportExecution getReportExecution(MavenReport report) {
+        Plugin plugin = new Plugin();
+        plugin.setArtifactId("text-plugin");
+        plugin.setVersion("1.0");
+        return new MavenReportExecution("text", plugin, report, null);
+    }
+
+    /**
+     * A report writing a text, optionally once released, ignoring the interruptions.
+     */
+    private static class TextReport implements MavenReport {
+        private final String text;
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private volatile Thread thread;
+
+        private volatile Throwable failure;
+
+        TextReport(String text, CountDownLatch release) {
+            this.text = text;
+            this.release = release;
+        }
+
+        /** {@inheritDoc} */
+        public void generate(Sink sink, Locale locale) {
+            thread = Thread.currentThread();
+            started.countDown();
+            try {
+                while (release != null && release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // ignored, like a report not checking for interruption
+                    }
+                }
+                sink.body();
+                sink.paragraph();
+                sink.text(text);
+                sink.paragraph_();
+                sink.body_();
+                sink.flush();
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        /** {@inheritDoc} */
+        public String getOutputName() {
+            return "text";
+        }
+
+        /** {@inheritDoc} */
+        public String getCategoryName() {
+            return CATEGORY_PROJECT_REPORTS;
+        }
+
+        /** {@inheritDoc} */
+        public String getName(Locale locale) {
+            return text;
+        }
+
+        /** {@inheritDoc} */
+        public String getDescription(Locale locale) {
+            return text;
+        }
+
+        /** {@inheritDoc} */
+        public void setReportOutputDirectory(File outputDirectory) {}
+
+        /** {@inheritDoc} */
+        public File getReportOutputDirectory() {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isExternalReport() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public boolean canGenerateReport() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Test SectionPageSequenceSink.
+ */
+public class SectionPageSequenceSinkTest extends TestCase {
+    /**
+     * Test that a new page sequence is started every given number of top-level sections.
+     */
+    public void testSections() {
+        StringWriter writer = new StringWriter();
+        SectionPageSequenceSink sink = new SectionPageSequenceSink(writer, 2);
+        sink.beginDocument();
+        sink.setDocumentName("doc");
+        sink.setDocumentTitle("Doc");
+        sink.body();
+        for (int i = 1; i <= 5; i++) {
+            sink.section1();
+            sink.sectionTitle1();
+            sink.text("Section " + i);
+            sink.sectionTitle1_();
+            sink.section2();
+            sink.sectionTitle2();
+            sink.text("Subsection " + i);
+            sink.sectionTitle2_();
+            sink.section2_();
+            sink.section1_();
+        }
+        sink.body_();
+        sink.endDocument();
+
+        String fo = writer.toString();
+        assertEquals(3, StringUtils.countMatches(fo, "<fo:page-sequence "));
+        assertEquals(3, StringUtils.countMatches(fo, "</fo:page-sequence>"));
+        assertEquals(3, StringUtils.countMatches(fo, "<fo:flow "));
+        assertEquals(
+                StringUtils.countMatches(fo, "<fo:block") - StringUtils.countMatches(fo, "<fo:block/>"),
+                StringUtils.countMatches(fo, "</fo:block>"));
+        // the sections keep their numbers
+        assertTrue(fo.contains("1.5   Section 5"));
+    }
+}
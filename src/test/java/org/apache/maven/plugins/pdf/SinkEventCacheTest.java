@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.maven.doxia.Doxia;
+import org.apache.maven.doxia.module.xdoc.XdocSinkFactory;
+import org.apache.maven.doxia.sink.Sink;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test SinkEventCache.
+ */
+public class SinkEventCacheTest extends PlexusTestCase {
+    private static final String XDOC = "<document><properties><title>Cached</title></properties><body>"
+            + "<section name=\"Section é\"><p>Some <b>bold</b> text, a <a href=\"other.html\">link</a>"
+            + " and an <img src=\"images/logo.png\" alt=\"logo\"/>.</p>"
+            + "<table><tr><th>A</th></tr><tr><td>1</td></tr></table>"
+            + "<source>verbatim\n  text</source></section></body></document>";
+
+    /**
+     * Test that the replayed events of a document are the parsed ones, and that documents using macros are not
+     * cached.
+     *
+     * @throws Exception if any
+     */
+    public void testReplay() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/sink-event-cache");
+        FileUtils.deleteDirectory(dir);
+        File xdoc = new File(dir, "xdoc/index.xml");
+        xdoc.getParentFile().mkdirs();
+        FileUtils.fileWrite(xdoc, "UTF-8", XDOC);
+
+        Doxia doxia = lookup(Doxia.class);
+        File cache = new File(dir, "cache");
+        SinkEventCache sinkEventCache = new SinkEventCache(cache);
+
+        String parsed = parse(doxia, new SinkEventCache(null), xdoc);
+        assertTrue(parsed, parsed.contains("<title>Cached</title>"));
+        assertFalse(cache.exists());
+
+        assertEquals(parsed, parse(doxia, sinkEventCache, xdoc));
+        assertEquals(1, cache.list().length);
+
+        // replayed
+        assertEquals(parsed, parse(doxia, sinkEventCache, xdoc));
+        assertEquals(1, cache.list().length);
+
+        FileUtils.fileWrite(xdoc, "UTF-8", XDOC.replace("</body>", "<macro name=\"toc\"/></body>"));
+        assertNull(sinkEventCache.getKey(xdoc, doxia.getParser("xdoc"), "xml"));
+        parse(doxia, sinkEventCache, xdoc);
+        assertEquals(1, cache.list().length);
+    }
+
+    /**
+     * Test that the recordings not used since the cache was created are deleted.
+     *
+     * @throws Exception if any
+     */
+    public void testPrune() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/sink-event-cache-prune");
+        FileUtils.deleteDirectory(dir);
+        File index = new File(dir, "xdoc/index.xml");
+        File other = new File(dir, "xdoc/other.xml");
+        index.getParentFile().mkdirs();
+        FileUtils.fileWrite(index, "UTF-8", XDOC);
+        FileUtils.fileWrite(other, "UTF-8", XDOC.replace("Cached", "Other"));
+
+        Doxia doxia = lookup(Doxia.class);
+        File cache = new File(dir, "cache");
+        File unrelated = new File(cache, "unrelated.txt");
+        SinkEventCache previousBuild = new SinkEventCache(cache);
+        parse(doxia, previousBuild, index);
+        parse(doxia, previousBuild, other);
+        FileUtils.fileWrite(unrelated, "UTF-8", "not a recording");
+        assertEquals(0, previousBuild.prune());
+        assertEquals(3, cache.list().length);
+
+        // other.xml changed: its previous recording is not used anymore
+        FileUtils.fileWrite(other, "UTF-8", XDOC.replace("Cached", "Changed"));
+        SinkEventCache build = new SinkEventCache(cache);
+        parse(doxia, build, index);
+        parse(doxia, build, other);
+        assertEquals(4, cache.list().length);
+        assertEquals(1, build.prune());
+        assertEquals(3, cache.list().length);
+        assertTrue(unrelated.isFile());
+
+        // other.xml removed
+        build = new SinkEventCache(cache);
+        parse(doxia, build, index);
+        assertEquals(1, build.prune());
+        assertEquals(2, cache.list().length);
+        assertTrue(new File(cache, build.getKey(index, doxia.getParser("xdoc"), "xml") + ".events").isFile());
+
+        assertEquals(0, new SinkEventCache(null).prune());
+    }
+
+    private static String parse(Doxia doxia, SinkEventCache sinkEventCache, File xdoc) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sink sink = new XdocSinkFactory().createSink(out, "UTF-8");
+        sinkEventCache.parse(doxia, xdoc, "xdoc", sink);
+        sink.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test SvgRasterizer.
+ */
+public class SvgRasterizerTest extends PlexusTestCase {
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"144\" height=\"72\""
+            + " viewBox=\"0 0 100 50\"><rect x=\"5\" y=\"5\" width=\"90\" height=\"40\" fill=\"#36c\"/></svg>";
+
+    /**
+     * Test that an SVG is replaced by a PNG at the target resolution, and that the cached result is reused.
+     *
+     * @throws Exception if any
+     */
+    public void testRasterize() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/svg-rasterizer");
+        FileUtils.deleteDirectory(dir);
+        File svg = new File(dir, "site/resources/images/diagram.svg");
+        svg.getParentFile().mkdirs();
+        FileUtils.fileWrite(svg, "UTF-8", SVG);
+
+        File cache = new File(dir, "cache");
+        SvgRasterizer rasterizer = new SvgRasterizer(cache, 144, new SystemStreamLog());
+        rasterizer.rasterize(new File(dir, "site"));
+
+        // 2 x 1 inches, as FOP gives 72 dpi to the SVG pixels
+        BufferedImage image = ImageIO.read(svg);
+        assertNotNull(image);
+        assertEquals(288, image.getWidth());
+        assertEquals(144, image.getHeight());
+        assertEquals(1, cache.list().length);
+
+        FileUtils.fileWrite(svg, "UTF-8", SVG);
+        rasterizer.rasterize(svg);
+        assertEquals(288, ImageIO.read(svg).getWidth());
+        assertEquals(1, cache.list().length);
+    }
+}
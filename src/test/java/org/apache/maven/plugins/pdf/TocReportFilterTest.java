@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import org.apache.maven.doxia.document.DocumentTOC;
+import org.apache.maven.doxia.document.DocumentTOCItem;
+
+/**
+ * Test TocReportFilter.
+ */
+public class TocReportFilterTest extends TestCase {
+    /**
+     * Test that only the reports referenced by the TOC, at any level, or whitelisted are accepted.
+     */
+    public void testAccept() {
+        DocumentTOC toc = new DocumentTOC();
+        toc.addItem(tocItem("index.html"));
+        DocumentTOCItem projectInfo = tocItem(null);
+        projectInfo.addItem(tocItem("./dependencies.html#Transitive"));
+        projectInfo.addItem(tocItem("apidocs/index"));
+        toc.addItem(projectInfo);
+
+        TocReportFilter filter = new TocReportFilter(toc, Collections.singletonList("team.html"));
+
+        assertTrue(filter.accept("dependencies"));
+        assertTrue(filter.accept("apidocs/index"));
+        assertTrue(filter.accept("team"));
+        assertFalse(filter.accept("plugins"));
+        assertFalse(filter.accept("apidocs"));
+    }
+
+    private static DocumentTOCItem tocItem(String ref) {
+        DocumentTOCItem item = new DocumentTOCItem();
+        item.setName(ref);
+        item.setRef(ref);
+        return item;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.pdf;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Locale;
+
+import org.apache.maven.doxia.docrenderer.DocumentRendererContext;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test VelocityTemplates.
+ */
+public class VelocityTemplatesTest extends PlexusTestCase {
+    /**
+     * Test that a template is evaluated with the values of the base context and of each locale, without changing
+     * the base context, and that a changed template is compiled again.
+     *
+     * @throws Exception if any
+     */
+    public void testMerge() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/velocity-templates");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        File template = new File(dir, "index.apt.vm");
+        FileUtils.fileWrite(template, "UTF-8", "#set( $name = \"${project} ${locale}\" )$name");
+
+        DocumentRendererContext base = new DocumentRendererContext();
+        base.put("project", "pdf");
+        base.put("name", "base");
+
+        VelocityTemplates templates = new VelocityTemplates();
+        for (Locale locale : new Locale[] {Locale.ENGLISH, Locale.FRENCH}) {
+            DocumentRendererContext context = new OverlayRendererContext(base);
+            context.put("locale", locale);
+            assertEquals("pdf " + locale, templates.merge(template, "UTF-8", context));
+            assertEquals(locale, context.get("locale"));
+            assertEquals("pdf", context.get("project"));
+        }
+        assertEquals("base", base.get("name"));
+        assertFalse(base.containsKey("locale"));
+
+        FileUtils.fileWrite(template, "UTF-8", "${project}");
+        assertEquals("pdf", templates.merge(template, "UTF-8", new OverlayRendererContext(base)));
+    }
+
+    /**
+     * Test that <code>#parse</code> and <code>#include</code> resolve relative paths against the including template,
+     * like Doxia, and not against the working directory.
+     *
+     * @throws Exception if any
+     */
+    public void testParse() throws Exception {
+        File dir = new File(getBasedir(), "target/unit/velocity-templates-parse");
+        FileUtils.deleteDirectory(dir);
+        new File(dir, "inc").mkdirs();
+        FileUtils.fileWrite(new File(dir, "inc/header.vm"), "UTF-8", "header of ${project}");
+        FileUtils.fileWrite(new File(dir, "inc/footer.txt"), "UTF-8", "footer");
+        File template = new File(dir, "index.apt.vm");
+        FileUtils.fileWrite(template, "UTF-8", "#parse( \"inc/header.vm\" ) #include( \"inc/footer.txt\" )");
+
+        DocumentRendererContext context = new DocumentRendererContext();
+        context.put("project", "pdf");
+        assertEquals("header of pdf footer", new VelocityTemplates().merge(template, "UTF-8", context));
+    }
+}